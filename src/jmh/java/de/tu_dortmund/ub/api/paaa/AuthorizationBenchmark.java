@@ -0,0 +1,61 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.auth.AuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.auth.CachingAuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.auth.TimedAuthorizationInterface;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the token check chain around the Authorization Service (here: {@link StubAuthorizationInterface}):
+ * timing and the token cache, for cache hits and for tokens that are always missed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizationBenchmark {
+
+    private AuthorizationInterface stub;
+    private AuthorizationInterface timed;
+    private AuthorizationInterface cached;
+    private AuthorizationInterface uncachable;
+
+    @Setup
+    public void setup() {
+
+        this.stub = new StubAuthorizationInterface();
+        this.timed = new TimedAuthorizationInterface(this.stub);
+        this.cached = new CachingAuthorizationInterface(this.timed, 10000, 300000, 5000);
+
+        // no TTL: every check goes through to the Authorization Service
+        this.uncachable = new CachingAuthorizationInterface(this.timed, 10000, 0, 0);
+    }
+
+    @Benchmark
+    public boolean stub() throws Exception {
+
+        return this.stub.isTokenValid(null, "newpatron", "4711", StubAuthorizationInterface.TOKEN);
+    }
+
+    @Benchmark
+    public boolean timed() throws Exception {
+
+        return this.timed.isTokenValid(null, "newpatron", "4711", StubAuthorizationInterface.TOKEN);
+    }
+
+    @Benchmark
+    public boolean cacheHit() throws Exception {
+
+        return this.cached.isTokenValid(null, "newpatron", "4711", StubAuthorizationInterface.TOKEN);
+    }
+
+    @Benchmark
+    public boolean cacheMiss() throws Exception {
+
+        return this.uncachable.isTokenValid(null, "newpatron", "4711", StubAuthorizationInterface.TOKEN);
+    }
+}
@@ -0,0 +1,73 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Writes a 'paaa.properties' (plus log4j and mailer configuration) for the benchmarks into a temporary directory.
+ * Logging is reduced to errors, so the benchmarks do not measure log output.
+ */
+final class BenchmarkEnvironment {
+
+    static final String ENDPOINT = "/paaa";
+
+    private BenchmarkEnvironment() {
+    }
+
+    static Properties config() {
+
+        Properties config = new Properties();
+
+        config.setProperty("service.name", "PaaaService-Benchmark");
+        config.setProperty("service.port", "0");
+        config.setProperty("service.endpoint", ENDPOINT);
+        config.setProperty("service.endpoint.ping", "/ping");
+        config.setProperty("service.endpoint.health", "/health");
+        config.setProperty("service.endpoint.metrics", "/metrics");
+
+        for (int status : new int[] { 400, 401, 403, 404, 405, 413, 429, 500, 501, 503, 504 }) {
+
+            config.setProperty("error." + status, "error_" + status);
+            config.setProperty("error." + status + ".description", "Description of error " + status);
+            config.setProperty("error." + status + ".uri", "https://api.ub.tu-dortmund.de/errors/" + status);
+        }
+
+        return config;
+    }
+
+    /**
+     * @return the path of the written 'paaa.properties'
+     */
+    static String write(Properties config) throws IOException {
+
+        File directory = Files.createTempDirectory("paaa-benchmark").toFile();
+        directory.deleteOnExit();
+
+        Properties log4j = new Properties();
+        log4j.setProperty("log4j.rootLogger", "ERROR, console");
+        log4j.setProperty("log4j.appender.console", "org.apache.log4j.ConsoleAppender");
+        log4j.setProperty("log4j.appender.console.layout", "org.apache.log4j.PatternLayout");
+        log4j.setProperty("log4j.appender.console.layout.ConversionPattern", "%d %-5p %c - %m%n");
+
+        config.setProperty("service.log4j-conf", store(log4j, new File(directory, "log4j.properties")));
+        config.setProperty("service.mailer.conf", store(new Properties(), new File(directory, "mailer.properties")));
+
+        return store(config, new File(directory, "paaa.properties"));
+    }
+
+    private static String store(Properties properties, File file) throws IOException {
+
+        file.deleteOnExit();
+
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+
+            properties.store(outputStream, null);
+        }
+
+        return file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,113 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full request throughput: PaaaEndpoint on an embedded Jetty (built by {@link ServerFactory}, as in production)
+ * with the in-memory {@link StubIntegratedLibrarySystem} and {@link StubAuthorizationInterface}, driven over
+ * HTTP/1.1 keep-alive connections. Run with e.g. '-t 8' for concurrent clients.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    private static final byte[] PATRON_BODY = JsonMapperBenchmark.PATRON_JSON.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FEE_BODY = JsonMapperBenchmark.FEE_JSON.getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong accounts = new AtomicLong();
+
+    private Server server;
+    private String baseUrl;
+
+    @Setup
+    public void setup() throws Exception {
+
+        Properties config = BenchmarkEnvironment.config();
+        String conffile = BenchmarkEnvironment.write(config);
+
+        ServletContextHandler context = new ServletContextHandler();
+
+        ServletHolder holderPaaa = new ServletHolder(new PaaaEndpoint(conffile));
+        holderPaaa.setAsyncSupported(true);
+        context.addServlet(holderPaaa, BenchmarkEnvironment.ENDPOINT + "/*");
+
+        this.server = ServerFactory.create(config, context);
+        this.server.start();
+
+        this.baseUrl = "http://localhost:" + ((ServerConnector) this.server.getConnectors()[0]).getLocalPort() + BenchmarkEnvironment.ENDPOINT;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+
+        this.server.stop();
+    }
+
+    @Benchmark
+    public int newpatron() throws IOException {
+
+        return this.post("/" + this.accounts.incrementAndGet() + "/newpatron", PATRON_BODY, StubAuthorizationInterface.TOKEN);
+    }
+
+    @Benchmark
+    public int newfee() throws IOException {
+
+        return this.post("/4711/newfee", FEE_BODY, StubAuthorizationInterface.TOKEN);
+    }
+
+    @Benchmark
+    public int unauthorized() throws IOException {
+
+        return this.post("/4711/newpatron", PATRON_BODY, "invalid-token");
+    }
+
+    private int post(String path, byte[] body, String token) throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setRequestProperty("Authorization", token);
+
+        try (OutputStream outputStream = connection.getOutputStream()) {
+
+            outputStream.write(body);
+        }
+
+        int status = connection.getResponseCode();
+
+        // read the response completely, so the connection is reused
+        try (InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+
+            if (inputStream != null) {
+
+                byte[] buffer = new byte[4096];
+                while (inputStream.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+
+        return status;
+    }
+}
@@ -0,0 +1,71 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.model.RequestError;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of an error response body: rendered per request (RequestError from the 'error.&lt;status&gt;' properties,
+ * serialized as JSON or XML) compared to the bodies prepared by {@link ErrorResponses}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorRenderingBenchmark {
+
+    @Param({ "401", "503" })
+    public int status;
+
+    private Properties config;
+    private ErrorResponses errorResponses;
+
+    @Setup
+    public void setup() {
+
+        this.config = BenchmarkEnvironment.config();
+        this.errorResponses = new ErrorResponses(this.config);
+    }
+
+    @Benchmark
+    public byte[] json() throws Exception {
+
+        return JsonMapper.REQUEST_ERROR_WRITER.writeValueAsBytes(this.requestError());
+    }
+
+    @Benchmark
+    public byte[] xml() throws Exception {
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream(512);
+        XmlMapper.write(this.requestError(), xml);
+        return xml.toByteArray();
+    }
+
+    @Benchmark
+    public ErrorResponses.Body preparedJson() {
+
+        return this.errorResponses.get(this.status, "json");
+    }
+
+    @Benchmark
+    public ErrorResponses.Body preparedXml() {
+
+        return this.errorResponses.get(this.status, "xml");
+    }
+
+    private RequestError requestError() {
+
+        RequestError requestError = new RequestError();
+        requestError.setError(this.config.getProperty("error." + Integer.toString(this.status)));
+        requestError.setCode(this.status);
+        requestError.setDescription(this.config.getProperty("error." + Integer.toString(this.status) + ".description"));
+        requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(this.status) + ".uri"));
+
+        return requestError;
+    }
+}
@@ -0,0 +1,106 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import de.tu_dortmund.ub.api.paaa.model.RequestError;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request JSON cost: a new ObjectMapper per request (as before) vs. the shared readers and writers of
+ * {@link JsonMapper}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonMapperBenchmark {
+
+    static final String PATRON_JSON = "{\"account\":\"4711\",\"name\":\"Mustermann, Max\",\"givenname\":\"Max\",\"surname\":\"Mustermann\","
+            + "\"dateofbirth\":\"1990-01-31\",\"email\":\"max.mustermann@tu-dortmund.de\",\"country\":\"DE\",\"city\":\"Dortmund\","
+            + "\"postalcode\":\"44227\",\"street\":\"Vogelpothsweg 76\",\"usergroup\":\"1\",\"externalid\":\"sm4711\","
+            + "\"faculty\":\"Informatik\",\"status\":\"student\"}";
+
+    static final String FEE_JSON = "{\"amount\":\"2.50 EUR\",\"about\":\"Mahngebuehr\",\"item\":\"4711\",\"feetype\":\"1\"}";
+
+    private Patron patron;
+    private RequestError requestError;
+
+    @Setup
+    public void setup() throws Exception {
+
+        this.patron = JsonMapper.PATRON_READER.readValue(PATRON_JSON);
+
+        this.requestError = new RequestError();
+        this.requestError.setError("unauthorized");
+        this.requestError.setCode(401);
+        this.requestError.setDescription("Access token invalid or missing");
+    }
+
+    @Benchmark
+    public Object readPatronWithNewMapper() throws Exception {
+
+        return new ObjectMapper().readValue(PATRON_JSON, Patron.class);
+    }
+
+    @Benchmark
+    public Object readPatronWithSharedReader() throws Exception {
+
+        return JsonMapper.PATRON_READER.readValue(PATRON_JSON);
+    }
+
+    @Benchmark
+    public String writePatronWithNewMapper() throws Exception {
+
+        StringWriter json = new StringWriter();
+        new ObjectMapper().writeValue(json, this.patron);
+        return json.toString();
+    }
+
+    @Benchmark
+    public String writePatronWithSharedWriter() throws Exception {
+
+        StringWriter json = new StringWriter();
+        JsonMapper.PATRON_WRITER.writeValue(json, this.patron);
+        return json.toString();
+    }
+
+    @Benchmark
+    public String roundtripFeeWithNewMapper() throws Exception {
+
+        Fee fee = new ObjectMapper().readValue(FEE_JSON, Fee.class);
+        StringWriter json = new StringWriter();
+        new ObjectMapper().writeValue(json, fee);
+        return json.toString();
+    }
+
+    @Benchmark
+    public String roundtripFeeWithSharedMapper() throws Exception {
+
+        Fee fee = JsonMapper.FEE_READER.readValue(FEE_JSON);
+        StringWriter json = new StringWriter();
+        JsonMapper.FEE_WRITER.writeValue(json, fee);
+        return json.toString();
+    }
+
+    @Benchmark
+    public String writeRequestErrorWithNewMapper() throws Exception {
+
+        StringWriter json = new StringWriter();
+        new ObjectMapper().writeValue(json, this.requestError);
+        return json.toString();
+    }
+
+    @Benchmark
+    public String writeRequestErrorWithSharedWriter() throws Exception {
+
+        StringWriter json = new StringWriter();
+        JsonMapper.REQUEST_ERROR_WRITER.writeValue(json, this.requestError);
+        return json.toString();
+    }
+}
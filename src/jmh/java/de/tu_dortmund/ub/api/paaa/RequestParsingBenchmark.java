@@ -0,0 +1,71 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import de.tu_dortmund.ub.util.impl.LimitedInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request parsing before the ILS is called: route lookup for the path and reading the Patron from the request body
+ * (as PaaaEndpoint does, through a {@link LimitedInputStream}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestParsingBenchmark {
+
+    private static final byte[] PATRON_BODY = JsonMapperBenchmark.PATRON_JSON.getBytes(StandardCharsets.UTF_8);
+
+    private Router router;
+
+    @Setup
+    public void setup() {
+
+        this.router = new Router()
+                .route("POST", "newpatron", true, Patron.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, patron) -> patron)
+                .route("POST", "updatepatron", true, Patron.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, patron) -> patron)
+                .route("GET", "patron", true, Void.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, none) -> null)
+                .defaultService("GET", "patron")
+                .bulk("POST", "newpatron");
+    }
+
+    @Benchmark
+    public Object matchService() {
+
+        return this.router.match("POST", "/4711/newpatron");
+    }
+
+    @Benchmark
+    public Object matchDefaultService() {
+
+        return this.router.match("GET", "/4711");
+    }
+
+    @Benchmark
+    public Object matchBulk() {
+
+        return this.router.match("POST", "/bulk/newpatron");
+    }
+
+    @Benchmark
+    public Object matchUnknownService() {
+
+        return this.router.match("POST", "/4711/unknown");
+    }
+
+    @Benchmark
+    public Object readPatronBody() throws Exception {
+
+        try (InputStream inputStream = new LimitedInputStream(new ByteArrayInputStream(PATRON_BODY), 1048576)) {
+
+            return JsonMapper.PATRON_READER.readValue(inputStream);
+        }
+    }
+}
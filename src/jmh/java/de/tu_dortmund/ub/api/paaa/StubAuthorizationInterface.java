@@ -0,0 +1,36 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.auth.AuthorizationException;
+import de.tu_dortmund.ub.api.paaa.auth.AuthorizationInterface;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Properties;
+
+/**
+ * Token check for the benchmarks, registered via META-INF/services in src/jmh/resources: {@link #TOKEN} is
+ * valid for every service and patron, any other token is not.
+ */
+public class StubAuthorizationInterface implements AuthorizationInterface {
+
+    public static final String TOKEN = "benchmark-token";
+
+    @Override
+    public void init(Properties properties) {
+    }
+
+    @Override
+    public HashMap<String, String> health(Properties properties) {
+
+        HashMap<String, String> health = new HashMap<>();
+        health.put("auth", "ok");
+
+        return health;
+    }
+
+    @Override
+    public boolean isTokenValid(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+
+        return TOKEN.equals(access_token);
+    }
+}
@@ -0,0 +1,105 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.ils.ILSException;
+import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
+import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.FeeList;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory ILS for the benchmarks, registered via META-INF/services in src/jmh/resources. Answers immediately,
+ * so the benchmarks measure PaaaService and not the ILS.
+ */
+public class StubIntegratedLibrarySystem implements IntegratedLibrarySystem {
+
+    private final Map<String, Patron> patrons = new ConcurrentHashMap<>();
+    private final Map<String, ArrayList<Fee>> fees = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(Properties properties) {
+    }
+
+    @Override
+    public HashMap<String, String> health(Properties properties) {
+
+        HashMap<String, String> health = new HashMap<>();
+        health.put("ils", "ok");
+
+        return health;
+    }
+
+    @Override
+    public Patron signup(Patron patron) throws ILSException {
+
+        return this.newpatron(patron);
+    }
+
+    @Override
+    public Patron newpatron(Patron patron) throws ILSException {
+
+        this.patrons.put(patron.getAccount(), patron);
+
+        return patron;
+    }
+
+    @Override
+    public Patron updatepatron(Patron patron) throws ILSException {
+
+        Patron stored = this.patrons.computeIfAbsent(patron.getAccount(), account -> patron);
+        stored.merge(patron);
+
+        return stored;
+    }
+
+    @Override
+    public Patron blockpatron(Patron patron, Block block) throws ILSException {
+
+        return this.patron(patron);
+    }
+
+    @Override
+    public Patron unblockpatron(Patron patron, Block block) throws ILSException {
+
+        return this.patron(patron);
+    }
+
+    @Override
+    public Patron deletepatron(Patron patron) throws ILSException {
+
+        Patron deleted = this.patrons.remove(patron.getAccount());
+
+        return deleted != null ? deleted : patron;
+    }
+
+    @Override
+    public Fee newfee(Patron patron, Fee fee) throws ILSException {
+
+        this.fees.computeIfAbsent(patron.getAccount(), account -> new ArrayList<>()).add(fee);
+
+        return fee;
+    }
+
+    @Override
+    public Patron patron(Patron patron) throws ILSException {
+
+        Patron stored = this.patrons.get(patron.getAccount());
+
+        return stored != null ? stored : patron;
+    }
+
+    @Override
+    public FeeList fees(Patron patron) throws ILSException {
+
+        FeeList feeList = new FeeList();
+        feeList.setFee(this.fees.getOrDefault(patron.getAccount(), new ArrayList<>()));
+
+        return feeList;
+    }
+}
@@ -0,0 +1,65 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request XML cost of Patron and Fee with the shared JAXBContext and the per-thread (un)marshallers of
+ * {@link XmlMapper}; see {@link JsonMapperBenchmark} for JSON.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlMapperBenchmark {
+
+    private Patron patron;
+    private Fee fee;
+    private byte[] patronXml;
+    private byte[] feeXml;
+
+    @Setup
+    public void setup() throws Exception {
+
+        this.patron = JsonMapper.PATRON_READER.readValue(JsonMapperBenchmark.PATRON_JSON);
+        this.fee = JsonMapper.FEE_READER.readValue(JsonMapperBenchmark.FEE_JSON);
+
+        this.patronXml = this.writePatron();
+        this.feeXml = this.writeFee();
+    }
+
+    @Benchmark
+    public byte[] writePatron() throws Exception {
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream(1024);
+        XmlMapper.write(this.patron, xml);
+        return xml.toByteArray();
+    }
+
+    @Benchmark
+    public Object readPatron() throws Exception {
+
+        return XmlMapper.read(new ByteArrayInputStream(this.patronXml), Patron.class);
+    }
+
+    @Benchmark
+    public byte[] writeFee() throws Exception {
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream(512);
+        XmlMapper.write(this.fee, xml);
+        return xml.toByteArray();
+    }
+
+    @Benchmark
+    public Object readFee() throws Exception {
+
+        return XmlMapper.read(new ByteArrayInputStream(this.feeXml), Fee.class);
+    }
+}
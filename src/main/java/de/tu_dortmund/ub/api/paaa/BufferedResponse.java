@@ -0,0 +1,282 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response which keeps status, headers and body until {@link #replay(HttpServletResponse)}.
+ *
+ * Used for requests with an 'Idempotency-Key': the response of the first execution is kept for duplicates, see
+ * {@link IdempotencyCache}.
+ */
+public class BufferedResponse extends HttpServletResponseWrapper {
+
+    /**
+     * A recorded call on the response.
+     */
+    private interface Action {
+
+        void apply(HttpServletResponse httpServletResponse) throws IOException;
+    }
+
+    private final List<Action> actions = new ArrayList<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+    private int status = HttpServletResponse.SC_OK;
+    private String contentType;
+    private boolean bodyAllowed = true;
+
+    public BufferedResponse(HttpServletResponse httpServletResponse) {
+
+        super(httpServletResponse);
+    }
+
+    /**
+     * Writes everything recorded so far to the given response.
+     */
+    public void replay(HttpServletResponse httpServletResponse) throws IOException {
+
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+
+        for (Action action : this.actions) {
+            action.apply(httpServletResponse);
+        }
+
+        if (this.bodyAllowed && this.body.size() > 0) {
+            this.body.writeTo(httpServletResponse.getOutputStream());
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+
+        if (this.outputStream == null) {
+
+            this.outputStream = new ServletOutputStream() {
+
+                @Override
+                public void write(int b) {
+
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+
+                    body.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+
+                    // the buffer never blocks
+                    try {
+
+                        writeListener.onWritePossible();
+                    }
+                    catch (IOException e) {
+
+                        writeListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        return this.outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+
+        if (this.writer == null) {
+            this.writer = new PrintWriter(new OutputStreamWriter(this.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        return this.writer;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+
+        this.status = sc;
+        this.actions.add(response -> response.setStatus(sc));
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+
+        this.setStatus(sc);
+    }
+
+    @Override
+    public int getStatus() {
+
+        return this.status;
+    }
+
+    @Override
+    public void sendError(int sc) {
+
+        this.sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+
+        this.status = sc;
+        this.bodyAllowed = false;
+        this.actions.add(response -> response.sendError(sc, msg));
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+
+        this.status = HttpServletResponse.SC_FOUND;
+        this.bodyAllowed = false;
+        this.actions.add(response -> response.sendRedirect(location));
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+
+        this.actions.add(response -> response.setHeader(name, value));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+
+        this.actions.add(response -> response.addHeader(name, value));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+
+        this.actions.add(response -> response.setIntHeader(name, value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+
+        this.actions.add(response -> response.addIntHeader(name, value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+
+        this.actions.add(response -> response.setDateHeader(name, date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+
+        this.actions.add(response -> response.addDateHeader(name, date));
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+
+        this.actions.add(response -> response.addCookie(cookie));
+    }
+
+    @Override
+    public void setContentType(String type) {
+
+        this.contentType = type;
+        this.actions.add(response -> response.setContentType(type));
+    }
+
+    @Override
+    public String getContentType() {
+
+        return this.contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+
+        this.actions.add(response -> response.setCharacterEncoding(charset));
+    }
+
+    @Override
+    public void setContentLength(int len) {
+
+        this.actions.add(response -> response.setContentLength(len));
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+
+        this.actions.add(response -> response.setContentLengthLong(len));
+    }
+
+    @Override
+    public void flushBuffer() {
+    }
+
+    @Override
+    public boolean isCommitted() {
+
+        return false;
+    }
+
+    @Override
+    public void resetBuffer() {
+
+        this.body.reset();
+    }
+
+    @Override
+    public void reset() {
+
+        this.actions.clear();
+        this.body.reset();
+        this.status = HttpServletResponse.SC_OK;
+        this.contentType = null;
+        this.bodyAllowed = true;
+    }
+}
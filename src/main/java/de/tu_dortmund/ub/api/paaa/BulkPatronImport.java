@@ -0,0 +1,600 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
+import de.tu_dortmund.ub.api.paaa.model.BulkResult;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import de.tu_dortmund.ub.util.impl.LimitedInputStream;
+import de.tu_dortmund.ub.util.impl.ProviderRegistry;
+import de.tu_dortmund.ub.util.impl.ServiceLogger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk import of patrons: POST /bulk/newpatron and POST /bulk/updatepatron.
+ *
+ * The request body contains one Patron (JSON) per line. The records are read as a stream, collected into
+ * batches and written to the ILS by {@link IntegratedLibrarySystem#newpatrons(List)} resp.
+ * {@link IntegratedLibrarySystem#updatepatrons(List)} on a shared thread pool. The response is streamed back as
+ * well: one {@link BulkResult} (JSON) per line, each carrying the line number of its record. Results are written
+ * batch by batch, so records rejected while reading may appear before the results of earlier batches.
+ *
+ * An import runs asynchronously (Servlet 3.1) on one of the 'bulk.imports' threads, so that large imports do not
+ * occupy Jetty's worker threads. The token is checked once per import, for the service, before the import starts.
+ * With 'bulk.patron-token-check' it has to be valid for the account of every record as well: these checks run on
+ * the 'bulk.threads' together with the batch, once per account and batch; other records are rejected with 401.
+ *
+ * With 'Content-Type: application/x-jackson-smile' the request body is a sequence of Smile Patron values instead,
+ * with 'format=smile' (resp. 'Accept') the results are a sequence of Smile BulkResult values; the "line" is then the
+ * position of the record in the sequence. A malformed Smile record ends the import, as the rest of the stream
+ * cannot be read reliably.
+ *
+ * Configuration in 'paaa.properties':
+ *
+ * <pre>
+ * bulk.imports        imports read and answered at the same time (default: 4)
+ * bulk.queue-size     imports waiting for one of these threads; beyond that the service answers 503 (default: 16)
+ * bulk.threads        threads writing batches to the ILS, shared by all imports (default: 4)
+ * bulk.parallelism    batches of one import in progress at the same time (default: bulk.threads)
+ * bulk.batch-size     records per batch (default: 100)
+ * bulk.max-body-size  maximum size of the request body in bytes (default: 104857600)
+ * bulk.patron-token-check  check the token for the account of every record (default: true)
+ * </pre>
+ */
+public class BulkPatronImport {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private static final byte[] NEWLINE = { '\n' };
+
+    private final Properties config;
+    private final ServiceLogger logger;
+
+    private final ThreadPoolExecutor importer;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int batchSize;
+    private final long maxBodySize;
+    private final boolean patronTokenCheck;
+
+    public BulkPatronImport(Properties config) {
+
+        this.config = config;
+        this.logger = ServiceLogger.getLogger(BulkPatronImport.class, config.getProperty("service.name"));
+
+        int threads = Integer.parseInt(config.getProperty("bulk.threads", "4"));
+        this.parallelism = Integer.parseInt(config.getProperty("bulk.parallelism", Integer.toString(threads)));
+        this.batchSize = Integer.parseInt(config.getProperty("bulk.batch-size", "100"));
+        this.maxBodySize = Long.parseLong(config.getProperty("bulk.max-body-size", "104857600"));
+        this.patronTokenCheck = Boolean.parseBoolean(config.getProperty("bulk.patron-token-check", "true"));
+
+        int imports = Integer.parseInt(config.getProperty("bulk.imports", "4"));
+        int queueSize = Integer.parseInt(config.getProperty("bulk.queue-size", "16"));
+
+        AtomicInteger importCount = new AtomicInteger();
+        this.importer = new ThreadPoolExecutor(imports, imports, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+
+            Thread thread = new Thread(runnable, "bulk-reader-" + importCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.importer.allowCoreThreadTimeOut(true);
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+
+            Thread thread = new Thread(runnable, "bulk-import-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks the token of an import for the account of a record; called on the 'bulk.threads', so it must neither
+     * touch the response of the import nor block longer than the check itself.
+     */
+    public interface TokenCheck {
+
+        boolean isTokenValid(String patronid);
+    }
+
+    /**
+     * Runs the import asynchronously: reads the records from the request and streams the results to the response.
+     * Falls back to the calling thread if the request does not support async processing.
+     *
+     * @param lease the ILS; closed when the import is done, so that a reload does not stop the ILS meanwhile
+     * @param format 'smile' for Smile results, NDJSON otherwise
+     * @param errorHandler writes the 503 if 'bulk.queue-size' imports are already waiting
+     * @throws RequestBodyException 413 if the declared Content-Length exceeds 'bulk.max-body-size'
+     */
+    public void execute(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, ProviderRegistry.Lease<IntegratedLibrarySystem> lease, String operation, String token, TokenCheck tokenCheck, String format, ServiceExecutor.ErrorHandler errorHandler) throws IOException, RequestBodyException {
+
+        boolean started = false;
+
+        try {
+
+            if (httpServletRequest.getContentLengthLong() > this.maxBodySize) {
+
+                throw new RequestBodyException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body exceeds " + this.maxBodySize + " bytes", null);
+            }
+
+            if (!httpServletRequest.isAsyncSupported()) {
+
+                this.process(httpServletRequest, httpServletResponse, lease.get(), operation, token, tokenCheck, format);
+                return;
+            }
+
+            AsyncContext asyncContext = httpServletRequest.startAsync(httpServletRequest, httpServletResponse);
+            asyncContext.setTimeout(0); // an import takes as long as the client keeps sending
+
+            try {
+
+                this.importer.execute(() -> {
+
+                    try {
+
+                        this.process(httpServletRequest, httpServletResponse, lease.get(), operation, token, tokenCheck, format);
+                    }
+                    catch (IOException e) {
+
+                        this.logger.error("Bulk '{}' aborted: {}", operation, e.getMessage());
+                    }
+                    catch (RuntimeException e) {
+
+                        this.logger.error("Bulk '{}' failed: {}", operation, e.getMessage(), e);
+                    }
+                    finally {
+
+                        lease.close();
+                        asyncContext.complete();
+                    }
+                });
+
+                started = true;
+            }
+            catch (RejectedExecutionException e) {
+
+                this.logger.error("{}: No free thread for bulk '{}'!", HttpServletResponse.SC_SERVICE_UNAVAILABLE, operation);
+
+                try {
+
+                    errorHandler.sendError(httpServletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                }
+                finally {
+
+                    asyncContext.complete();
+                }
+            }
+        }
+        finally {
+
+            if (!started) {
+                lease.close();
+            }
+        }
+    }
+
+    private void process(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, IntegratedLibrarySystem integratedLibrarySystem, String operation, String token, TokenCheck tokenCheck, String format) throws IOException {
+
+        long start = System.currentTimeMillis();
+
+        httpServletResponse.setStatus(HttpServletResponse.SC_OK);
+
+        JsonGenerator smile = null;
+
+        if (format.equals("smile")) {
+
+            httpServletResponse.setContentType(SmileMapper.CONTENT_TYPE);
+            smile = SmileMapper.MAPPER.getFactory().createGenerator(httpServletResponse.getOutputStream());
+        }
+        else {
+
+            httpServletResponse.setContentType(CONTENT_TYPE + ";charset=UTF-8");
+        }
+
+        Import anImport = new Import(httpServletResponse.getOutputStream(), smile, integratedLibrarySystem, operation, this.patronTokenCheck ? tokenCheck : null);
+
+        InputStream inputStream = new LimitedInputStream(httpServletRequest.getInputStream(), this.maxBodySize);
+
+        try {
+
+            if (SmileMapper.isSmile(httpServletRequest.getContentType())) {
+                this.readSmile(inputStream, anImport);
+            }
+            else {
+                this.readJson(inputStream, anImport);
+            }
+        }
+        catch (LimitedInputStream.LimitExceededException e) {
+
+            // the response is already committed: report as last result
+            BulkResult bulkResult = BulkResult.failure(null, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            bulkResult.setLine(anImport.line);
+            anImport.reject(bulkResult);
+        }
+        finally {
+
+            anImport.finish();
+        }
+
+        this.logger.info(() -> token + " performed bulk '" + operation + "' event for " + anImport.records + " patrons (" + anImport.failures + " failed) in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void readJson(InputStream inputStream, Import anImport) throws IOException {
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                anImport.line++;
+
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                anImport.add(line);
+            }
+        }
+    }
+
+    private void readSmile(InputStream inputStream, Import anImport) throws IOException {
+
+        try (MappingIterator<Patron> records = SmileMapper.PATRON_READER.readValues(inputStream)) {
+
+            while (records.hasNextValue()) {
+
+                Patron patron = records.nextValue();
+
+                anImport.line++;
+                anImport.add(patron);
+            }
+        }
+        catch (JsonProcessingException e) {
+
+            BulkResult bulkResult = BulkResult.failure(null, HttpServletResponse.SC_BAD_REQUEST, "Malformed record: " + e.getOriginalMessage());
+            bulkResult.setLine(anImport.line + 1);
+            anImport.reject(bulkResult);
+        }
+    }
+
+    /**
+     * Waits for running batches and stops the thread pools.
+     */
+    public void shutdown() {
+
+        this.importer.shutdown();
+        this.executor.shutdown();
+
+        try {
+
+            if (!this.executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * State of one import. Only used by the reading thread; the batches run on the pool.
+     */
+    private class Import {
+
+        private final OutputStream outputStream;
+        private final JsonGenerator smile;
+        private final IntegratedLibrarySystem integratedLibrarySystem;
+        private final boolean update;
+        private final TokenCheck tokenCheck;
+
+        private final Semaphore permits = new Semaphore(BulkPatronImport.this.parallelism);
+        private final Deque<Batch> pending = new ArrayDeque<>();
+
+        private Batch batch;
+        private long line = 0;
+        private long records = 0;
+        private long failures = 0;
+
+        private Import(OutputStream outputStream, JsonGenerator smile, IntegratedLibrarySystem integratedLibrarySystem, String operation, TokenCheck tokenCheck) {
+
+            this.outputStream = outputStream;
+            this.smile = smile;
+            this.integratedLibrarySystem = integratedLibrarySystem;
+            this.update = operation.equals("updatepatron");
+            this.tokenCheck = tokenCheck;
+            this.batch = new Batch();
+        }
+
+        private void add(String json) throws IOException {
+
+            Patron patron;
+
+            try {
+
+                patron = JsonMapper.PATRON_READER.readValue(json);
+            }
+            catch (JsonProcessingException e) {
+
+                BulkResult bulkResult = BulkResult.failure(null, HttpServletResponse.SC_BAD_REQUEST, "Malformed record: " + e.getOriginalMessage());
+                bulkResult.setLine(this.line);
+                this.reject(bulkResult);
+                return;
+            }
+
+            this.add(patron);
+        }
+
+        private void add(Patron patron) throws IOException {
+
+            if (patron == null || (this.update && (patron.getAccount() == null || patron.getAccount().equals("")))) {
+
+                BulkResult bulkResult = BulkResult.failure(null, HttpServletResponse.SC_BAD_REQUEST, "Missing patron account");
+                bulkResult.setLine(this.line);
+                this.reject(bulkResult);
+                return;
+            }
+
+            this.batch.patrons.add(patron);
+            this.batch.lines.add(this.line);
+
+            if (this.batch.patrons.size() >= BulkPatronImport.this.batchSize) {
+                this.submit();
+            }
+        }
+
+        private void reject(BulkResult bulkResult) throws IOException {
+
+            this.write(bulkResult);
+            this.flush();
+        }
+
+        private void submit() throws IOException {
+
+            // write what is done while waiting for a free slot
+            this.writeCompleted(false);
+
+            try {
+
+                while (!this.permits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    this.writeCompleted(false);
+                }
+            }
+            catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                throw new IOException("Bulk import interrupted", e);
+            }
+
+            Batch batch = this.batch;
+            this.batch = new Batch();
+
+            try {
+
+                batch.future = BulkPatronImport.this.executor.submit(() -> {
+
+                    try {
+
+                        return this.importBatch(batch);
+                    }
+                    finally {
+
+                        this.permits.release();
+                    }
+                });
+            }
+            catch (RuntimeException e) {
+
+                this.permits.release();
+                throw e;
+            }
+
+            this.pending.add(batch);
+        }
+
+        /**
+         * Runs on one of the 'bulk.threads': checks the token for the accounts of the batch (records without an
+         * account: already checked for the service) and writes the records it is valid for to the ILS.
+         *
+         * @return the results of the batch in the order of its records, with their line numbers
+         */
+        private List<BulkResult> importBatch(Batch batch) {
+
+            BulkResult[] rejected = new BulkResult[batch.patrons.size()];
+            List<Patron> accepted = batch.patrons;
+
+            if (this.tokenCheck != null) {
+
+                Map<String, Boolean> valid = new HashMap<>();
+                accepted = new ArrayList<>(batch.patrons.size());
+
+                for (int i = 0; i < batch.patrons.size(); i++) {
+
+                    Patron patron = batch.patrons.get(i);
+
+                    if (patron.getAccount() == null || patron.getAccount().equals("") || valid.computeIfAbsent(patron.getAccount(), this.tokenCheck::isTokenValid)) {
+                        accepted.add(patron);
+                    }
+                    else {
+                        rejected[i] = BulkResult.failure(patron.getAccount(), HttpServletResponse.SC_UNAUTHORIZED, "Token not valid for this patron");
+                    }
+                }
+            }
+
+            List<BulkResult> written = new ArrayList<>();
+
+            if (!accepted.isEmpty()) {
+                written = this.update ? this.integratedLibrarySystem.updatepatrons(accepted) : this.integratedLibrarySystem.newpatrons(accepted);
+            }
+
+            List<BulkResult> results = new ArrayList<>(batch.patrons.size());
+            int next = 0;
+
+            for (int i = 0; i < batch.patrons.size(); i++) {
+
+                BulkResult bulkResult = rejected[i] != null ? rejected[i] : next < written.size() ? written.get(next++) : null;
+
+                if (bulkResult != null) {
+
+                    bulkResult.setLine(batch.lines.get(i));
+                    results.add(bulkResult);
+                }
+            }
+
+            return results;
+        }
+
+        private void finish() throws IOException {
+
+            try {
+
+                if (!this.batch.patrons.isEmpty()) {
+                    this.submit();
+                }
+
+                this.writeCompleted(true);
+                this.flush();
+            }
+            finally {
+
+                // client gone or import failed: do not start the remaining batches
+                for (Batch batch : this.pending) {
+                    batch.future.cancel(false);
+                }
+            }
+        }
+
+        private void writeCompleted(boolean wait) throws IOException {
+
+            boolean written = false;
+
+            while (!this.pending.isEmpty() && (wait || this.pending.peek().future.isDone())) {
+
+                Batch batch = this.pending.peek();
+                List<BulkResult> results;
+
+                try {
+
+                    results = batch.future.get();
+                }
+                catch (ExecutionException e) {
+
+                    logger.error("Bulk batch failed: " + e.getCause().getMessage(), e.getCause());
+
+                    results = new ArrayList<>(batch.patrons.size());
+                    for (int i = 0; i < batch.patrons.size(); i++) {
+
+                        BulkResult bulkResult = BulkResult.failure(batch.patrons.get(i).getAccount(), HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getCause().getMessage());
+                        bulkResult.setLine(batch.lines.get(i));
+                        results.add(bulkResult);
+                    }
+                }
+                catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Bulk import interrupted", e);
+                }
+
+                this.pending.poll();
+
+                for (BulkResult bulkResult : results) {
+                    this.write(bulkResult);
+                }
+
+                written = true;
+            }
+
+            if (written) {
+                this.flush();
+            }
+        }
+
+        private void write(BulkResult bulkResult) throws IOException {
+
+            this.records++;
+
+            if (bulkResult.getCode() != HttpServletResponse.SC_OK) {
+                this.failures++;
+            }
+
+            if (this.smile != null) {
+
+                SmileMapper.BULK_RESULT_WRITER.writeValue(this.smile, bulkResult);
+                return;
+            }
+
+            this.outputStream.write(JsonMapper.BULK_RESULT_WRITER.writeValueAsBytes(bulkResult));
+            this.outputStream.write(NEWLINE);
+        }
+
+        private void flush() throws IOException {
+
+            if (this.smile != null) {
+                this.smile.flush();
+            }
+            else {
+                this.outputStream.flush();
+            }
+        }
+    }
+
+    private static class Batch {
+
+        private final List<Patron> patrons = new ArrayList<>();
+        private final List<Long> lines = new ArrayList<>();
+        private Future<List<BulkResult>> future;
+    }
+}
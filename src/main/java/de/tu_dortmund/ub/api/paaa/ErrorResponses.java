@@ -0,0 +1,172 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.model.RequestError;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The RequestError bodies of the service, rendered once.
+ *
+ * The content of an error response only depends on the status code: 'error.&lt;status&gt;',
+ * 'error.&lt;status&gt;.description' and 'error.&lt;status&gt;.uri'. All configured status codes are serialized as
+ * JSON, XML and Smile at startup; an error response is then a single write of the prepared bytes. Status codes without
+ * configuration are rendered on first use and kept as well.
+ */
+public class ErrorResponses {
+
+    /**
+     * One prepared response body.
+     */
+    public static final class Body {
+
+        private final String contentType;
+        private final byte[] bytes;
+
+        private Body(String contentType, byte[] bytes) {
+
+            this.contentType = contentType;
+            this.bytes = bytes;
+        }
+
+        public String getContentType() {
+
+            return this.contentType;
+        }
+
+        public int getContentLength() {
+
+            return this.bytes.length;
+        }
+
+        public void write(HttpServletResponse httpServletResponse) throws IOException {
+
+            httpServletResponse.setContentType(this.contentType);
+            httpServletResponse.setContentLength(this.bytes.length);
+            httpServletResponse.getOutputStream().write(this.bytes);
+        }
+    }
+
+    private final Properties config;
+    private final Map<Integer, Body> json = new ConcurrentHashMap<>();
+    private final Map<Integer, Body> xml = new ConcurrentHashMap<>();
+    private final Map<Integer, Body> smile = new ConcurrentHashMap<>();
+
+    public ErrorResponses(Properties config) {
+
+        this.config = config;
+
+        for (String key : config.stringPropertyNames()) {
+
+            if (key.matches("error\\.[0-9]{3}")) {
+
+                int status = Integer.parseInt(key.substring(6));
+
+                this.json.put(status, this.renderJson(status));
+                this.xml.put(status, this.renderXml(status));
+                this.smile.put(status, this.renderSmile(status));
+            }
+        }
+    }
+
+    /**
+     * @param format 'json', 'xml' or 'smile'
+     * @return the RequestError for the status code in the format, or null if the format is unknown
+     */
+    public Body get(int status, String format) {
+
+        if (format.equals("json")) {
+            return this.json.computeIfAbsent(status, this::renderJson);
+        }
+        if (format.equals("xml")) {
+            return this.xml.computeIfAbsent(status, this::renderXml);
+        }
+        if (format.equals("smile")) {
+            return this.smile.computeIfAbsent(status, this::renderSmile);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the RequestError for the status code as configured in 'error.&lt;status&gt;'
+     */
+    public RequestError requestError(int status) {
+
+        RequestError requestError = new RequestError();
+        requestError.setError(this.config.getProperty("error." + Integer.toString(status)));
+        requestError.setCode(status);
+        requestError.setDescription(this.config.getProperty("error." + Integer.toString(status) + ".description"));
+        requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(status) + ".uri"));
+
+        return requestError;
+    }
+
+    private Body renderJson(int status) {
+
+        try {
+
+            return new Body("application/json;charset=UTF-8", JsonMapper.REQUEST_ERROR_WRITER.writeValueAsBytes(this.requestError(status)));
+        }
+        catch (IOException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Body renderSmile(int status) {
+
+        try {
+
+            return new Body(SmileMapper.CONTENT_TYPE, SmileMapper.REQUEST_ERROR_WRITER.writeValueAsBytes(this.requestError(status)));
+        }
+        catch (IOException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Body renderXml(int status) {
+
+        try {
+
+            ByteArrayOutputStream xml = new ByteArrayOutputStream(512);
+            XmlMapper.write(this.requestError(status), xml);
+
+            return new Body("application/xml;charset=UTF-8", xml.toByteArray());
+        }
+        catch (JAXBException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Response of a service racing against its timeout, see {@link ServiceExecutor}.
+ *
+ * The first call which changes the response claims it by setting the shared <code>done</code> flag. If the service
+ * gets there first, it writes status, headers and body straight to the real response and the timeout no longer
+ * fires; if the timeout was first, everything the service writes afterwards is discarded.
+ */
+public class GuardedResponse extends HttpServletResponseWrapper {
+
+    private final AtomicBoolean done;
+
+    private boolean claimed = false;
+    private ServletOutputStream discarded;
+    private PrintWriter discardedWriter;
+
+    public GuardedResponse(HttpServletResponse httpServletResponse, AtomicBoolean done) {
+
+        super(httpServletResponse);
+        this.done = done;
+    }
+
+    /**
+     * @return true if the response belongs to the service, false if the timeout has answered the request
+     */
+    public boolean claim() {
+
+        if (!this.claimed) {
+            this.claimed = this.done.compareAndSet(false, true);
+        }
+
+        return this.claimed;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+
+        if (this.claim()) {
+            return super.getOutputStream();
+        }
+
+        if (this.discarded == null) {
+
+            this.discarded = new ServletOutputStream() {
+
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+
+                @Override
+                public boolean isReady() {
+
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+
+                    try {
+
+                        writeListener.onWritePossible();
+                    }
+                    catch (IOException e) {
+
+                        writeListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        return this.discarded;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+
+        if (this.claim()) {
+            return super.getWriter();
+        }
+
+        if (this.discardedWriter == null) {
+            this.discardedWriter = new PrintWriter(new OutputStreamWriter(this.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        return this.discardedWriter;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+
+        if (this.claim()) {
+            super.setStatus(sc);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+
+        if (this.claim()) {
+            super.setStatus(sc, sm);
+        }
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+
+        if (this.claim()) {
+            super.sendError(sc);
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+
+        if (this.claim()) {
+            super.sendError(sc, msg);
+        }
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+
+        if (this.claim()) {
+            super.sendRedirect(location);
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+
+        if (this.claim()) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+
+        if (this.claim()) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+
+        if (this.claim()) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+
+        if (this.claim()) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+
+        if (this.claim()) {
+            super.setDateHeader(name, date);
+        }
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+
+        if (this.claim()) {
+            super.addDateHeader(name, date);
+        }
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+
+        if (this.claim()) {
+            super.addCookie(cookie);
+        }
+    }
+
+    @Override
+    public void setContentType(String type) {
+
+        if (this.claim()) {
+            super.setContentType(type);
+        }
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+
+        if (this.claim()) {
+            super.setCharacterEncoding(charset);
+        }
+    }
+
+    @Override
+    public void setContentLength(int len) {
+
+        if (this.claim()) {
+            super.setContentLength(len);
+        }
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+
+        if (this.claim()) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+
+        if (this.claim()) {
+            super.setLocale(loc);
+        }
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+
+        if (this.claim()) {
+            super.setBufferSize(size);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+
+        if (this.claim()) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+
+        if (this.claim()) {
+            super.resetBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+
+        if (this.claim()) {
+            super.reset();
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package de.tu_dortmund.ub.api.paaa;
 
 import de.tu_dortmund.ub.api.paaa.auth.AuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.auth.CachingAuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.ils.CachingIntegratedLibrarySystem;
 import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
-import de.tu_dortmund.ub.util.impl.Lookup;
+import de.tu_dortmund.ub.api.paaa.ils.ResilientIntegratedLibrarySystem;
+import de.tu_dortmund.ub.util.impl.Configuration;
+import de.tu_dortmund.ub.util.impl.ConfigurationStore;
+import de.tu_dortmund.ub.util.impl.LogConfigurator;
 import org.apache.log4j.Logger;
-import org.apache.log4j.PropertyConfigurator;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -22,7 +26,8 @@ import java.util.Properties;
 public class HealthEndpoint extends HttpServlet {
 
     private String conffile  = "";
-    private Properties config = new Properties();
+    private Properties config;
+    private ConfigurationStore configurationStore;
     private Logger logger = Logger.getLogger(HealthEndpoint.class.getName());
 
     public HealthEndpoint() throws IOException {
@@ -34,93 +39,160 @@ public class HealthEndpoint extends HttpServlet {
 
         this.conffile = conffile;
 
-        // Init properties
-        try {
-            InputStream inputStream = new FileInputStream(this.conffile);
-
-            try {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-
-                try {
-                    this.config.load(reader);
-
-                } finally {
-                    reader.close();
-                }
-            }
-            finally {
-                inputStream.close();
-            }
-        }
-        catch (IOException e) {
-            System.out.println("FATAL ERROR: Die Datei '" + this.conffile + "' konnte nicht geöffnet werden!");
-        }
+        // Init properties (shared snapshot, see ConfigurationStore)
+        this.configurationStore = ConfigurationStore.of(this.conffile);
+        this.config = this.configurationStore.get().getProperties();
 
         // init logger
-        PropertyConfigurator.configure(this.config.getProperty("service.log4j-conf"));
+        LogConfigurator.configure(this.config);
 
         this.logger.info("Starting 'HealthEndpoint' ...");
         this.logger.info("conf-file = " + this.conffile);
         this.logger.info("log4j-conf-file = " + this.config.getProperty("service.log4j-conf"));
+
+        // init ILS and Authorization Service once
+        ServiceProviders.init(this.configurationStore);
+
+        // dependencies are checked in the background
+        HealthMonitor.init(this.config);
+    }
+
+    /**
+     * Releases the health monitor, ILS and Authorization Service when the servlet context shuts down.
+     */
+    public void destroy() {
+
+        this.logger.info("Stopping 'HealthEndpoint' ...");
+
+        HealthMonitor.release();
+        ServiceProviders.shutdown();
+
+        super.destroy();
     }
 
     public void doOptions(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-        response.setHeader("Access-Control-Allow-Methods", config.getProperty("Access-Control-Allow-Methods"));
-        response.addHeader("Access-Control-Allow-Headers", config.getProperty("Access-Control-Allow-Headers"));
-        response.setHeader("Accept", config.getProperty("Accept"));
-        response.setHeader("Access-Control-Allow-Origin", config.getProperty("Access-Control-Allow-Origin"));
+        Configuration configuration = this.configurationStore.get();
+
+        response.setHeader("Access-Control-Allow-Methods", configuration.getAccessControlAllowMethods());
+        response.addHeader("Access-Control-Allow-Headers", configuration.getAccessControlAllowHeaders());
+        response.setHeader("Accept", configuration.getAccept());
+        response.setHeader("Access-Control-Allow-Origin", configuration.getAccessControlAllowOrigin());
 
         response.getWriter().println();
     }
 
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-        response.setHeader("Access-Control-Allow-Origin", config.getProperty("Access-Control-Allow-Origin"));
-        response.setHeader("Cache-Control", config.getProperty("Cache-Control"));
+        Configuration configuration = this.configurationStore.get();
+
+        response.setHeader("Access-Control-Allow-Origin", configuration.getAccessControlAllowOrigin());
+        response.setHeader("Cache-Control", configuration.getCacheControl());
 
         try {
 
-            HashMap<String,String> health = null;
+            // latest result of the background checks
+            HealthMonitor.Snapshot snapshot = HealthMonitor.latest();
+            HashMap<String,String> health = snapshot.getDependencies();
+
+            AuthorizationInterface authorizationInterface = ServiceProviders.authorizationInterface();
+
+            String json = "{ ";
 
-            // Wenn via META-INF/services eine Implementierung zum interface "IntegratedLibrarySystem" erfolgt ist, dann frage das System ab.
-            if (Lookup.lookupAll(IntegratedLibrarySystem.class).size() > 0) {
+            json += "\"name\" : \"" + configuration.getServiceName() + "\",";
+            json += "\"timestamp\" : \"" + LocalDateTime.now() + "\"";
 
-                IntegratedLibrarySystem integratedLibrarySystem = Lookup.lookup(IntegratedLibrarySystem.class);
-                // init ILS
-                integratedLibrarySystem.init(this.config);
+            if (health != null && health.size() > 0) {
 
-                health = integratedLibrarySystem.health(this.config);
+                json += ", \"dependencies\" : { ";
+
+                for (String dependency : health.keySet()) {
+
+                    json += "\"" + dependency + "\" : \"" + health.get(dependency) + "\", ";
+                }
+
+                json = json.substring(0, json.length() - 2);
+
+                json += "}";
+            }
+
+            if (snapshot.getProbes().size() > 0) {
+
+                json += ", \"checks\" : { ";
+
+                for (HealthMonitor.Probe probe : snapshot.getProbes().values()) {
+
+                    json += "\"" + probe.getName() + "\" : { ";
+                    json += "\"status\" : \"" + probe.getStatus() + "\", ";
+                    json += "\"latency\" : " + probe.getLatency() + ", ";
+                    json += "\"age\" : " + probe.getAge();
+                    json += " }, ";
+                }
+
+                json = json.substring(0, json.length() - 2);
+
+                json += "}";
+            }
+
+            IntegratedLibrarySystem integratedLibrarySystem = ServiceProviders.integratedLibrarySystem();
+            CachingIntegratedLibrarySystem patronCache = null;
+
+            if (integratedLibrarySystem instanceof CachingIntegratedLibrarySystem) {
+
+                patronCache = (CachingIntegratedLibrarySystem) integratedLibrarySystem;
+                integratedLibrarySystem = patronCache.getDelegate();
             }
-            // OAuth 2.0
-            if (Lookup.lookupAll(AuthorizationInterface.class).size() > 0) {
 
-                AuthorizationInterface authorizationInterface = Lookup.lookup(AuthorizationInterface.class);
-                // init Authorization Service
-                authorizationInterface.init(this.config);
+            if (authorizationInterface instanceof CachingAuthorizationInterface || patronCache != null) {
+
+                json += ", \"caches\" : { ";
 
-                if (health == null) {
+                if (authorizationInterface instanceof CachingAuthorizationInterface) {
 
-                    health = authorizationInterface.health(this.config);
+                    CachingAuthorizationInterface cache = (CachingAuthorizationInterface) authorizationInterface;
+
+                    json += "\"authorization\" : { ";
+                    json += "\"size\" : " + cache.size() + ", ";
+                    json += "\"hits\" : " + cache.getHits() + ", ";
+                    json += "\"misses\" : " + cache.getMisses() + ", ";
+                    json += "\"evictions\" : " + cache.getEvictions();
+                    json += " }, ";
                 }
-                else {
 
-                    health.putAll(authorizationInterface.health(this.config));
+                if (patronCache != null) {
+
+                    json += "\"patron\" : { ";
+                    json += "\"size\" : " + patronCache.size() + ", ";
+                    json += "\"hits\" : " + patronCache.getHits() + ", ";
+                    json += "\"misses\" : " + patronCache.getMisses() + ", ";
+                    json += "\"invalidations\" : " + patronCache.getInvalidations();
+                    json += " }, ";
                 }
+
+                json = json.substring(0, json.length() - 2);
+
+                json += "}";
             }
 
-            String json = "{ ";
+            if (integratedLibrarySystem instanceof ResilientIntegratedLibrarySystem) {
 
-            json += "\"name\" : \"" + config.getProperty("service.name") + "\",";
-            json += "\"timestamp\" : \"" + LocalDateTime.now() + "\"";
+                ResilientIntegratedLibrarySystem resilientIntegratedLibrarySystem = (ResilientIntegratedLibrarySystem) integratedLibrarySystem;
 
-            if (health != null && health.size() > 0) {
+                json += ", \"circuits\" : { ";
 
-                json += ", \"dependencies\" : { ";
+                for (ResilientIntegratedLibrarySystem.Circuit circuit : resilientIntegratedLibrarySystem.getCircuits().values()) {
 
-                for (String dependency : health.keySet()) {
+                    json += "\"" + circuit.getOperation() + "\" : { ";
+                    json += "\"state\" : \"" + circuit.getState().name().toLowerCase().replace('_', '-') + "\", ";
+                    json += "\"failures\" : " + circuit.getFailures() + ", ";
+                    json += "\"inflight\" : " + circuit.getInFlight() + ", ";
+                    json += "\"rejected\" : " + circuit.getRejected();
 
-                    json += "\"" + dependency + "\" : \"" + health.get(dependency) + "\", ";
+                    if (circuit.getLastTransition() != null) {
+                        json += ", \"since\" : \"" + circuit.getLastTransition() + "\"";
+                    }
+
+                    json += " }, ";
                 }
 
                 json = json.substring(0, json.length() - 2);
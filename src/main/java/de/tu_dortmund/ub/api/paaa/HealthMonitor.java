@@ -0,0 +1,406 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.auth.AuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
+import de.tu_dortmund.ub.util.impl.ProviderRegistry;
+import de.tu_dortmund.ub.util.impl.ServiceLogger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the health of ILS and OAuth server in the background and keeps the latest result for /health and /ping,
+ * so that probes of load balancers do not reach the dependencies. Configuration in 'paaa.properties':
+ *
+ * <pre>
+ * health.interval  milliseconds between two checks (default: 10000)
+ * health.timeout   milliseconds a single check may take (default: 5000)
+ * health.max-age   milliseconds after which a result is too old to be trusted (default: 3 * health.interval)
+ * </pre>
+ *
+ * The monitor is shared by all servlets: each one calls {@link #init(Properties)} when it starts and {@link #release()}
+ * when it is destroyed, the last one stops the checks. Requests read the result via {@link #latest()}.
+ */
+public class HealthMonitor {
+
+    /**
+     * Result of one check of one dependency.
+     */
+    public static class Probe {
+
+        private final String name;
+        private final Map<String, String> dependencies;
+        private final String status;
+        private final long latency;
+        private final long timestamp;
+
+        Probe(String name, Map<String, String> dependencies, String status, long latency, long timestamp) {
+
+            this.name = name;
+            this.dependencies = Collections.unmodifiableMap(dependencies);
+            this.status = status;
+            this.latency = latency;
+            this.timestamp = timestamp;
+        }
+
+        public String getName() {
+
+            return name;
+        }
+
+        /**
+         * @return as reported by 'health(Properties)', or 'failed' for all known dependencies on error or timeout
+         */
+        public Map<String, String> getDependencies() {
+
+            return dependencies;
+        }
+
+        /**
+         * @return 'ok', 'error' or 'timeout'
+         */
+        public String getStatus() {
+
+            return status;
+        }
+
+        /**
+         * @return duration of the check in milliseconds
+         */
+        public long getLatency() {
+
+            return latency;
+        }
+
+        /**
+         * @return time of the check (System.currentTimeMillis())
+         */
+        public long getTimestamp() {
+
+            return timestamp;
+        }
+
+        /**
+         * @return milliseconds since the check
+         */
+        public long getAge() {
+
+            return System.currentTimeMillis() - this.timestamp;
+        }
+    }
+
+    /**
+     * The latest probes of all dependencies; immutable.
+     */
+    public static class Snapshot {
+
+        private final Map<String, Probe> probes;
+        private final long maxAge;
+
+        Snapshot(Map<String, Probe> probes, long maxAge) {
+
+            this.probes = Collections.unmodifiableMap(probes);
+            this.maxAge = maxAge;
+        }
+
+        public Map<String, Probe> getProbes() {
+
+            return probes;
+        }
+
+        /**
+         * @return the reported state of all dependencies
+         */
+        public HashMap<String, String> getDependencies() {
+
+            HashMap<String, String> dependencies = new HashMap<>();
+
+            for (Probe probe : this.probes.values()) {
+                dependencies.putAll(probe.getDependencies());
+            }
+
+            return dependencies;
+        }
+
+        /**
+         * @return false if a dependency has not been checked (successfully) within 'health.max-age'
+         */
+        public boolean isCurrent() {
+
+            if (this.probes.isEmpty()) {
+                return false;
+            }
+
+            for (Probe probe : this.probes.values()) {
+
+                if (probe.getAge() > this.maxAge) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * @return true if no dependency failed
+         */
+        public boolean isHealthy() {
+
+            for (Probe probe : this.probes.values()) {
+
+                if (!probe.getStatus().equals("ok") || probe.getDependencies().containsValue("failed")) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static volatile HealthMonitor instance = null;
+    private static int users = 0;
+
+    private final ServiceLogger logger;
+
+    private final Map<String, Callable<HashMap<String, String>>> checks;
+    private final Map<String, Future<HashMap<String, String>>> running = new HashMap<>();
+    private final Map<String, Long> runningSince = new HashMap<>();
+    private final long interval;
+    private final long timeout;
+    private final long maxAge;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService prober;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Starts the monitor for the configured ILS and OAuth implementations; the first caller wins. Every caller has to
+     * call {@link #release()} once it no longer needs the monitor.
+     */
+    public static synchronized HealthMonitor init(final Properties config) {
+
+        if (instance == null) {
+
+            Map<String, Callable<HashMap<String, String>>> checks = new LinkedHashMap<>();
+
+            // Wenn via META-INF/services eine Implementierung zum interface "IntegratedLibrarySystem" erfolgt ist, dann frage das System ab.
+            checks.put("ils", () -> {
+
+                try (ProviderRegistry.Lease<IntegratedLibrarySystem> lease = ServiceProviders.acquireIntegratedLibrarySystem()) {
+
+                    return lease.get() != null ? lease.get().health(config) : null;
+                }
+            });
+            // OAuth 2.0
+            checks.put("auth", () -> {
+
+                AuthorizationInterface authorizationInterface = ServiceProviders.authorizationInterface();
+                return authorizationInterface != null ? authorizationInterface.health(config) : null;
+            });
+
+            HealthMonitor monitor = new HealthMonitor(config, checks);
+            monitor.start();
+            instance = monitor;
+        }
+
+        users++;
+
+        return instance;
+    }
+
+    /**
+     * Stops the background checks when the last caller of {@link #init(Properties)} releases the monitor.
+     */
+    public static synchronized void release() {
+
+        if (instance != null && --users == 0) {
+
+            instance.stop();
+            instance = null;
+        }
+    }
+
+    /**
+     * @return the latest result of the running monitor; an empty one, which is not current, if it has been stopped
+     */
+    public static Snapshot latest() {
+
+        HealthMonitor monitor = instance;
+
+        return monitor != null ? monitor.getSnapshot() : new Snapshot(new LinkedHashMap<>(), 0);
+    }
+
+    HealthMonitor(Properties config, Map<String, Callable<HashMap<String, String>>> checks) {
+
+        this.logger = ServiceLogger.getLogger(HealthMonitor.class, config.getProperty("service.name"));
+        this.checks = checks;
+
+        this.interval = Long.parseLong(config.getProperty("health.interval", "10000"));
+        this.timeout = Long.parseLong(config.getProperty("health.timeout", "5000"));
+        this.maxAge = Long.parseLong(config.getProperty("health.max-age", Long.toString(3 * this.interval)));
+
+        this.snapshot = new Snapshot(new LinkedHashMap<>(), this.maxAge);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "health-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger count = new AtomicInteger();
+        this.prober = Executors.newCachedThreadPool(runnable -> {
+
+            Thread thread = new Thread(runnable, "health-probe-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules the checks, the first one immediately.
+     */
+    void start() {
+
+        this.scheduler.scheduleWithFixedDelay(this::check, 0, this.interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the latest result; never blocks
+     */
+    public Snapshot getSnapshot() {
+
+        return this.snapshot;
+    }
+
+    /**
+     * Checks all dependencies once; runs on the 'health-monitor' thread.
+     */
+    void check() {
+
+        // start all checks in parallel, unless the previous one still hangs
+        Map<String, Boolean> hanging = new HashMap<>();
+
+        for (Map.Entry<String, Callable<HashMap<String, String>>> check : this.checks.entrySet()) {
+
+            Future<HashMap<String, String>> previous = this.running.get(check.getKey());
+            if (previous == null || previous.isDone()) {
+
+                this.runningSince.put(check.getKey(), System.currentTimeMillis());
+                this.running.put(check.getKey(), this.prober.submit(check.getValue()));
+            }
+            else {
+
+                hanging.put(check.getKey(), true);
+            }
+        }
+
+        Map<String, Probe> probes = new LinkedHashMap<>(this.snapshot.getProbes());
+
+        for (String name : this.checks.keySet()) {
+
+            long start = this.runningSince.get(name);
+            Probe previous = probes.get(name);
+
+            if (hanging.containsKey(name)) {
+
+                probes.put(name, this.failed(name, previous, "timeout", System.currentTimeMillis() - start));
+                continue;
+            }
+
+            try {
+
+                long wait = Math.max(0, start + this.timeout - System.currentTimeMillis());
+                HashMap<String, String> result = this.running.get(name).get(wait, TimeUnit.MILLISECONDS);
+
+                if (result == null) {
+
+                    // not configured
+                    probes.remove(name);
+                }
+                else {
+
+                    probes.put(name, new Probe(name, result, "ok", System.currentTimeMillis() - start, System.currentTimeMillis()));
+                }
+            }
+            catch (TimeoutException e) {
+
+                this.logger.error("Health check '{}' timed out after {} ms!", name, this.timeout);
+                probes.put(name, this.failed(name, previous, "timeout", System.currentTimeMillis() - start));
+            }
+            catch (ExecutionException e) {
+
+                this.logger.error("Health check '{}' failed: {}", name, e.getCause().getMessage());
+                probes.put(name, this.failed(name, previous, "error", System.currentTimeMillis() - start));
+            }
+            catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        this.snapshot = new Snapshot(probes, this.maxAge);
+    }
+
+    private Probe failed(String name, Probe previous, String status, long latency) {
+
+        Map<String, String> dependencies = new HashMap<>();
+
+        if (previous != null && !previous.getDependencies().isEmpty()) {
+
+            for (String dependency : previous.getDependencies().keySet()) {
+                dependencies.put(dependency, "failed");
+            }
+        }
+        else {
+
+            dependencies.put(name, "failed");
+        }
+
+        return new Probe(name, dependencies, status, latency, System.currentTimeMillis());
+    }
+
+    private void stop() {
+
+        this.scheduler.shutdownNow();
+        this.prober.shutdownNow();
+    }
+}
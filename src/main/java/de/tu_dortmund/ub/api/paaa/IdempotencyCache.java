@@ -0,0 +1,209 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Responses of PAAA mutations per 'Idempotency-Key', so that a client retrying e.g. 'newfee' after a timeout gets
+ * the first response again instead of a second fee.
+ *
+ * The first request with a key executes the service and {@link #complete completes} the future registered by
+ * {@link #putIfAbsent}; duplicates arriving meanwhile wait for that future, later ones get the stored response
+ * until it expires. Responses with a status of 500 or above are not kept, so the retry runs again. Executions still
+ * running are never evicted, otherwise a duplicate would run the service a second time.
+ *
+ * <pre>
+ * idempotency.max-size  completed responses kept; the least recently used ones are evicted (default: 10000)
+ * idempotency.ttl       seconds a response is kept (default: 3600)
+ * </pre>
+ */
+public class IdempotencyCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final long ttlMillis;
+    private final Segment[] segments;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public IdempotencyCache(Properties config) {
+
+        this(Integer.parseInt(config.getProperty("idempotency.max-size", "10000")),
+                Long.parseLong(config.getProperty("idempotency.ttl", "3600")) * 1000L);
+    }
+
+    public IdempotencyCache(int maxSize, long ttlMillis) {
+
+        this.ttlMillis = ttlMillis;
+
+        int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * @param key the 'Idempotency-Key', scoped by the caller (token, service, patron)
+     * @param future completed by the caller via {@link #complete} if it is the first one with this key
+     * @return <code>null</code> if the caller has to execute the service, otherwise the (possibly still running)
+     * first execution
+     */
+    public CompletableFuture<BufferedResponse> putIfAbsent(String key, CompletableFuture<BufferedResponse> future) {
+
+        return this.segment(key).putIfAbsent(key, future, System.currentTimeMillis());
+    }
+
+    /**
+     * Hands the response to all waiting duplicates and keeps it for later ones.
+     *
+     * @param response the complete response, or <code>null</code> if the service failed
+     */
+    public void complete(String key, CompletableFuture<BufferedResponse> future, BufferedResponse response) {
+
+        if (response == null || response.getStatus() >= 500) {
+
+            this.segment(key).remove(key, future);
+        }
+        else {
+
+            this.segment(key).expire(key, future, System.currentTimeMillis() + this.ttlMillis);
+        }
+
+        future.complete(response);
+    }
+
+    public long getEvictions() {
+
+        return this.evictions.get();
+    }
+
+    public int size() {
+
+        int size = 0;
+
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    private Segment segment(String key) {
+
+        return this.segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<BufferedResponse> future;
+        private long expires = Long.MAX_VALUE;
+
+        private Entry(CompletableFuture<BufferedResponse> future) {
+
+            this.future = future;
+        }
+    }
+
+    /**
+     * LRU map of the completed responses guarded by its own lock, the running executions are kept apart until
+     * they complete; the cache is split into segments to keep contention low.
+     */
+    private final class Segment {
+
+        private final Map<String, Entry> running = new HashMap<>();
+        private final LinkedHashMap<String, Entry> entries;
+
+        private Segment(final int maxSize) {
+
+            this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+
+                    if (this.size() > maxSize) {
+
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+
+                    return false;
+                }
+            };
+        }
+
+        private synchronized CompletableFuture<BufferedResponse> putIfAbsent(String key, CompletableFuture<BufferedResponse> future, long now) {
+
+            Entry entry = this.running.get(key);
+
+            if (entry == null) {
+                entry = this.entries.get(key);
+            }
+
+            if (entry != null && entry.expires > now) {
+                return entry.future;
+            }
+
+            this.entries.remove(key);
+            this.running.put(key, new Entry(future));
+
+            return null;
+        }
+
+        private synchronized void expire(String key, CompletableFuture<BufferedResponse> future, long expires) {
+
+            Entry entry = this.running.get(key);
+
+            if (entry != null && entry.future == future) {
+
+                this.running.remove(key);
+
+                entry.expires = expires;
+                this.entries.put(key, entry);
+            }
+        }
+
+        private synchronized void remove(String key, CompletableFuture<BufferedResponse> future) {
+
+            Entry entry = this.running.get(key);
+
+            if (entry != null && entry.future == future) {
+                this.running.remove(key);
+            }
+        }
+
+        private synchronized int size() {
+
+            return this.running.size() + this.entries.size();
+        }
+    }
+}
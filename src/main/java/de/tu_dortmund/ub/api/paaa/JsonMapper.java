@@ -0,0 +1,60 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.tu_dortmund.ub.api.paaa.model.*;
+
+/**
+ * The service-wide Jackson configuration.
+ *
+ * ObjectMapper, ObjectReader and ObjectWriter are thread-safe once configured, and they keep their
+ * (de)serializer caches for the lifetime of the service. Use the prepared readers and writers instead of
+ * creating a new ObjectMapper per request.
+ */
+public final class JsonMapper {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final ObjectReader PATRON_READER = MAPPER.reader(Patron.class);
+    public static final ObjectReader BLOCK_READER = MAPPER.reader(Block.class);
+    public static final ObjectReader FEE_READER = MAPPER.reader(Fee.class);
+    public static final ObjectReader FEE_LIST_READER = MAPPER.reader(FeeList.class);
+    public static final ObjectReader LOGIN_RESPONSE_READER = MAPPER.reader(LoginResponse.class);
+    public static final ObjectReader REQUEST_ERROR_READER = MAPPER.reader(RequestError.class);
+
+    public static final ObjectWriter PATRON_WRITER = MAPPER.writerFor(Patron.class);
+    public static final ObjectWriter BLOCK_WRITER = MAPPER.writerFor(Block.class);
+    public static final ObjectWriter FEE_WRITER = MAPPER.writerFor(Fee.class);
+    public static final ObjectWriter FEE_LIST_WRITER = MAPPER.writerFor(FeeList.class);
+    public static final ObjectWriter LOGIN_RESPONSE_WRITER = MAPPER.writerFor(LoginResponse.class);
+    public static final ObjectWriter REQUEST_ERROR_WRITER = MAPPER.writerFor(RequestError.class);
+    public static final ObjectWriter BULK_RESULT_WRITER = MAPPER.writerFor(BulkResult.class);
+
+    private JsonMapper() {
+    }
+}
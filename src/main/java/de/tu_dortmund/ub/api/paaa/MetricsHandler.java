@@ -0,0 +1,115 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.util.impl.MetricsRegistry;
+import org.eclipse.jetty.server.HttpChannelState;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Counts every request by PAAA service and HTTP status ('paaa_requests_total') and records its duration
+ * ('paaa_request_duration_seconds'), including the time asynchronous requests spend on the ILS workers.
+ *
+ * The service is taken from the request attribute {@link #SERVICE_ATTRIBUTE}, set by {@link PaaaEndpoint};
+ * requests without a known service are counted as 'other'.
+ */
+public class MetricsHandler extends HandlerWrapper {
+
+    public static final String SERVICE_ATTRIBUTE = "de.tu_dortmund.ub.api.paaa.service";
+
+    /**
+     * Label values for the service; anything else would let clients create arbitrary time series.
+     */
+    public static final Set<String> SERVICES = new HashSet<>(Arrays.asList(
+            "signup", "newpatron", "updatepatron", "blockpatron", "unblockpatron", "deletepatron", "newfee",
+            "patron", "fees", "bulk/newpatron", "bulk/updatepatron"));
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+
+        HttpChannelState state = baseRequest.getHttpChannelState();
+        long start = System.nanoTime();
+
+        try {
+
+            super.handle(target, baseRequest, request, response);
+        }
+        finally {
+
+            if (state.isSuspended()) {
+
+                // record when the ILS worker (or the timeout) completes the request
+                if (state.isInitial()) {
+
+                    state.addListener(new AsyncListener() {
+
+                        @Override
+                        public void onComplete(AsyncEvent asyncEvent) {
+
+                            record(request, response, start);
+                        }
+
+                        @Override
+                        public void onTimeout(AsyncEvent asyncEvent) {
+                        }
+
+                        @Override
+                        public void onError(AsyncEvent asyncEvent) {
+                        }
+
+                        @Override
+                        public void onStartAsync(AsyncEvent asyncEvent) {
+                        }
+                    });
+                }
+            }
+            else if (state.isInitial()) {
+
+                record(request, response, start);
+            }
+        }
+    }
+
+    private static void record(HttpServletRequest request, HttpServletResponse response, long start) {
+
+        Object service = request.getAttribute(SERVICE_ATTRIBUTE);
+        String label = service != null && SERVICES.contains(service) ? (String) service : "other";
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        metricsRegistry.counter("paaa_requests_total", "Requests by PAAA service and HTTP status", "service", label, "status", Integer.toString(response.getStatus())).increment();
+        metricsRegistry.histogram("paaa_request_duration_seconds", "Duration of requests by PAAA service", "service", label).recordSince(start);
+    }
+}
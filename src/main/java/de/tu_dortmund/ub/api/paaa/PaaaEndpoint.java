@@ -24,32 +24,43 @@ SOFTWARE.
 
 package de.tu_dortmund.ub.api.paaa;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import de.tu_dortmund.ub.api.paaa.auth.AuthorizationException;
 import de.tu_dortmund.ub.api.paaa.auth.AuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.auth.CachingAuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.ils.CachingIntegratedLibrarySystem;
 import de.tu_dortmund.ub.api.paaa.ils.ILSException;
+import de.tu_dortmund.ub.api.paaa.ils.ILSUnavailableException;
 import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
 import de.tu_dortmund.ub.api.paaa.model.*;
-import de.tu_dortmund.ub.util.impl.Lookup;
+import de.tu_dortmund.ub.util.impl.AsyncLogAppender;
+import de.tu_dortmund.ub.util.impl.Configuration;
+import de.tu_dortmund.ub.util.impl.ConfigurationStore;
+import de.tu_dortmund.ub.util.impl.LimitedInputStream;
+import de.tu_dortmund.ub.util.impl.LogConfigurator;
+import de.tu_dortmund.ub.util.impl.MailDispatcher;
 import de.tu_dortmund.ub.util.impl.Mailer;
-import org.apache.log4j.Logger;
-import org.apache.log4j.PropertyConfigurator;
+import de.tu_dortmund.ub.util.impl.MetricsRegistry;
+import de.tu_dortmund.ub.util.impl.ProviderRegistry;
+import de.tu_dortmund.ub.util.impl.ServiceLogger;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 
-import javax.mail.MessagingException;
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 import java.io.*;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Enumeration;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Hans-Georg Becker
@@ -59,9 +70,19 @@ public class PaaaEndpoint extends HttpServlet {
 
     // Configuration
     private String conffile = "";
-    private Properties config = new Properties();
-    private Logger logger = Logger.getLogger(PaaaEndpoint.class.getName());
+    private Properties config;
+    private volatile Configuration configuration;
+    private ServiceLogger logger;
     private Properties apikeys;
+    private long maxBodySize;
+    private BulkPatronImport bulkPatronImport;
+    private ServiceExecutor serviceExecutor;
+    private IdempotencyCache idempotencyCache;
+    private UpdateCoalescer updateCoalescer;
+    private RateLimiter rateLimiter;
+    private Router router;
+    private MailDispatcher mailDispatcher;
+    private volatile ErrorResponses errorResponses;
 
     /**
      * @throws java.io.IOException
@@ -79,569 +100,416 @@ public class PaaaEndpoint extends HttpServlet {
 
         this.conffile = propfile_api;
 
-        // Init properties
-        try {
-            InputStream inputStream = new FileInputStream(propfile_api);
-
-            try {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-
-                try {
-                    this.config.load(reader);
-
-                } finally {
-                    reader.close();
-                }
-            } finally {
-                inputStream.close();
-            }
-        } catch (IOException e) {
-            System.out.println("FATAL ERROR: Die Datei '" + this.conffile + "' konnte nicht geöffnet werden!");
-        }
+        // Init properties: one snapshot for all components, replaced when the file changes
+        ConfigurationStore configurationStore = ConfigurationStore.of(propfile_api);
+        this.configuration = configurationStore.get();
+        this.config = this.configuration.getProperties();
 
         // init logger
-        PropertyConfigurator.configure(this.config.getProperty("service.log4j-conf"));
-
-        this.logger.info("[" + this.config.getProperty("service.name") + "] " + "Starting 'PaaaService' Endpoint ...");
-        this.logger.info("[" + this.config.getProperty("service.name") + "] " + "conf-file = " + this.conffile);
-        this.logger.info("[" + this.config.getProperty("service.name") + "] " + "log4j-conf-file = " + this.config.getProperty("service.log4j-conf"));
-
-        this.apikeys = apikeys;
-    }
-
-    /**
-     * @param httpServletRequest
-     * @param httpServletResponse
-     * @throws ServletException
-     * @throws java.io.IOException
-     */
-    protected void doGet(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException, IOException {
+        LogConfigurator.configure(this.config);
+        this.logger = ServiceLogger.getLogger(PaaaEndpoint.class, this.config.getProperty("service.name"));
 
-        ObjectMapper mapper = new ObjectMapper();
+        this.logger.info("Starting 'PaaaService' Endpoint ...");
+        this.logger.info("conf-file = {}", this.conffile);
+        this.logger.info("log4j-conf-file = {}", this.config.getProperty("service.log4j-conf"));
 
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "PathInfo = " + httpServletRequest.getPathInfo());
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "QueryString = " + httpServletRequest.getQueryString());
+        // init ILS and Authorization Service once
+        ServiceProviders.init(configurationStore);
 
-        String patronid = "";
-        String service = "";
-        String accept = "";
-        String authorization = "";
+        this.maxBodySize = Long.parseLong(this.config.getProperty("service.request.max-body-size", "1048576"));
+        this.bulkPatronImport = new BulkPatronImport(this.config);
+        this.serviceExecutor = new ServiceExecutor(this.config);
+        this.idempotencyCache = new IdempotencyCache(this.config);
+        this.rateLimiter = new RateLimiter(this.config);
 
-        String path = httpServletRequest.getPathInfo();
-        if (path != null) {
-            String[] params = path.substring(1, path.length()).split("/");
-
-            if (params.length == 1) {
-                patronid = params[0];
-                service = "patron";
-            } else if (params.length == 2) {
-                patronid = params[0];
-                service = params[1];
-            }
+        // gleichzeitige 'updatepatron' für dasselbe Konto zusammenfassen, abschaltbar mit 'ils.coalesce.enabled = false'
+        if (Boolean.parseBoolean(this.config.getProperty("ils.coalesce.enabled", "true"))) {
+            this.updateCoalescer = new UpdateCoalescer(this.config);
         }
 
-        // 1. Schritt: Hole 'Accept' und 'Authorization' aus dem Header;
-        Enumeration<String> headerNames = httpServletRequest.getHeaderNames();
-        while (headerNames.hasMoreElements()) {
-
-            String headerNameKey = (String) headerNames.nextElement();
-            this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "headerNameKey = " + headerNameKey + " / headerNameValue = " + httpServletRequest.getHeader(headerNameKey));
-
-            if (headerNameKey.equals("Accept")) {
-                accept = httpServletRequest.getHeader(headerNameKey);
-            }
-            if (headerNameKey.equals("Authorization")) {
-                authorization = httpServletRequest.getHeader(headerNameKey);
-            }
+        // Mails wg. ILS-Fehlern werden im Hintergrund verschickt
+        Mailer mailer = new Mailer(this.config.getProperty("service.mailer.conf"));
+        this.mailDispatcher = new MailDispatcher(mailer::send, this.config);
+
+        // Metriken
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        metricsRegistry.gauge("paaa_ils_executor_active", "Services running on the ILS worker threads", this.serviceExecutor::getActive);
+        metricsRegistry.gauge("paaa_ils_executor_queued", "Services waiting for an ILS worker thread", this.serviceExecutor::getQueued);
+        metricsRegistry.gauge("paaa_mails_total", "ILS error mails by outcome", this.mailDispatcher::getSent, "result", "sent");
+        metricsRegistry.gauge("paaa_mails_total", "ILS error mails by outcome", this.mailDispatcher::getFailed, "result", "failed");
+        metricsRegistry.gauge("paaa_mails_total", "ILS error mails by outcome", this.mailDispatcher::getDropped, "result", "dropped");
+        metricsRegistry.gauge("paaa_mails_total", "ILS error mails by outcome", this.mailDispatcher::getDeduplicated, "result", "deduplicated");
+        metricsRegistry.gauge("paaa_idempotency_cache_size", "Responses kept for 'Idempotency-Key' retries", this.idempotencyCache::size);
+        metricsRegistry.gauge("paaa_ratelimit_buckets", "Clients with a partly used rate limit", this.rateLimiter::size);
+        if (this.updateCoalescer != null) {
+            metricsRegistry.gauge("paaa_updatepatron_coalesced_total", "'updatepatron' requests merged into the ILS call of another request", this.updateCoalescer::getCoalesced);
         }
-
-        if (authorization.equals("") && httpServletRequest.getParameter("access_token") != null && !httpServletRequest.getParameter("access_token").equals("")) {
-            authorization = "Bearer " + httpServletRequest.getParameter("access_token");
+        AsyncLogAppender asyncLogAppender = LogConfigurator.getAsyncAppender();
+        if (asyncLogAppender != null) {
+            metricsRegistry.gauge("paaa_log_events_total", "Log events by outcome", asyncLogAppender::getDropped, "result", "dropped");
+            metricsRegistry.gauge("paaa_log_events_total", "Log events by outcome", asyncLogAppender::getDeduplicated, "result", "deduplicated");
+            metricsRegistry.gauge("paaa_log_queued", "Log events waiting to be written", asyncLogAppender::getQueued);
         }
 
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Patron: " + patronid);
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Service: " + service);
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Accept: " + accept);
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Authorization: " + authorization);
+        this.errorResponses = new ErrorResponses(this.config);
+        this.router = this.routes();
 
+        configurationStore.addListener(this::reconfigure);
+        configurationStore.watch();
 
-        this.logger.error("[" + this.config.getProperty("service.name") + "] " + HttpServletResponse.SC_METHOD_NOT_ALLOWED + ": " + "GET for '" + service + "' not allowed!");
+        this.apikeys = apikeys;
+    }
 
-        httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-        httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAIA Core\"");
-        httpServletResponse.setContentType("application/json");
-        httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+    /**
+     * Applies a changed configuration file: headers and error texts. Everything else needs a restart.
+     */
+    private void reconfigure(Configuration configuration) {
 
-        // Error handling mit suppress_response_codes=true
-        if (httpServletRequest.getParameter("suppress_response_codes") != null && !httpServletRequest.getParameter("suppress_response_codes").equals("")) {
-            httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-        }
-        // Error handling mit suppress_response_codes=false (=default)
-        else {
-            httpServletResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-        }
+        this.errorResponses = new ErrorResponses(configuration.getProperties());
+        this.configuration = configuration;
+    }
 
-        // Json für Response body
-        RequestError requestError = new RequestError();
-        requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED)));
-        requestError.setCode(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-        requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED) + ".description"));
-        requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED) + ".uri"));
+    /**
+     * Releases the ILS and Authorization Service when the servlet context shuts down, see {@link ServiceProviders#shutdown()}.
+     */
+    public void destroy() {
+
+        this.logger.info("Stopping 'PaaaService' Endpoint ...");
 
-        StringWriter json = new StringWriter();
-        mapper.writeValue(json, requestError);
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + json);
+        this.serviceExecutor.shutdown();
+        this.rateLimiter.shutdown();
+        this.mailDispatcher.close();
+        this.bulkPatronImport.shutdown();
+        ServiceProviders.shutdown();
 
-        // send response
-        httpServletResponse.getWriter().println(json);
+        super.destroy();
     }
 
     /**
-     * @param httpServletRequest
-     * @param httpServletResponse
-     * @throws ServletException
-     * @throws java.io.IOException
+     * The PAAA routes: method and service, request body, token requirement and result writer.
      */
-    protected void doPost(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException, IOException {
+    private Router routes() {
 
-        ObjectMapper mapper = new ObjectMapper();
+        Router router = new Router();
 
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "PathInfo = " + httpServletRequest.getPathInfo());
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "QueryString = " + httpServletRequest.getQueryString());
+        router.route("POST", "signup", true, Patron.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, patron) -> {
 
-        String patronid = "";
-        String service = "";
-        String accept = "";
-        String authorization = "";
+            if (patron.getAccount() == null || patron.getAccount().equals("")) {
+                if (!patronid.equals("")) {
+                    patron.setAccount(patronid);
+                } else {
+                    patron.setAccount(UUID.randomUUID().toString());
+                }
+            }
 
-        String format = "json";
+            Patron result = integratedLibrarySystem.signup(patron);
 
-        String path = httpServletRequest.getPathInfo();
-        String[] params = path.substring(1, path.length()).split("/");
+            if (result != null) {
 
-        if (params.length == 1) {
-            patronid = params[0];
-            service = "patron";
-        }
-        else if (params.length == 2) {
-            patronid = params[0];
-            service = params[1];
-        }
+                Block block = new Block();
+                LocalDateTime timePoint = LocalDateTime.now();
+                block.setDate(timePoint.getYear() + "-" + (timePoint.getMonthValue() < 10 ? "0" + timePoint.getMonthValue() : timePoint.getMonthValue()) + "-" + (timePoint.getDayOfMonth() < 10 ? "0" + timePoint.getDayOfMonth() : timePoint.getDayOfMonth()));
+                block.setKey("93");
+                integratedLibrarySystem.blockpatron(result, block);
+            }
 
-        if (patronid.equals("patronid")) {
-            patronid = "";
-        }
+            return result;
+        });
 
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Patron: " + patronid);
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Service: " + service);
+        router.route("POST", "newpatron", true, Patron.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, patron) -> {
 
-        if (httpServletRequest.getParameter("format") != null && !httpServletRequest.getParameter("format").equals("")) {
+            patron.setAccount(patronid);
 
-            format = httpServletRequest.getParameter("format");
-        }
-        else {
+            return integratedLibrarySystem.newpatron(patron);
+        });
 
-            Enumeration<String> headerNames = httpServletRequest.getHeaderNames();
-            while ( headerNames.hasMoreElements() ) {
-                String headerNameKey = headerNames.nextElement();
+        router.route("POST", "updatepatron", true, Patron.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, patron) -> {
 
-                if (headerNameKey.equals("Accept")) {
+            patron.setAccount(patronid);
 
-                    this.logger.debug("headerNameKey = " + httpServletRequest.getHeader( headerNameKey ));
+            // TODO Was tun bei Änderung des 'status'?
 
-                    if (httpServletRequest.getHeader( headerNameKey ).contains("text/html")) {
-                        format = "html";
-                    }
-                    else if (httpServletRequest.getHeader( headerNameKey ).contains("application/xml")) {
-                        format = "xml";
-                    }
-                    else if (httpServletRequest.getHeader( headerNameKey ).contains("application/json")) {
-                        format = "json";
-                    }
-                }
+            if (this.updateCoalescer != null) {
+                return this.updateCoalescer.update(patron, integratedLibrarySystem::updatepatron);
             }
-        }
 
-        this.logger.info("format = " + format);
+            return integratedLibrarySystem.updatepatron(patron);
+        });
 
-        if (!format.equals("json") && !format.equals("xml")) {
+        router.route("POST", "blockpatron", true, Block.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, block) -> {
 
-            this.logger.error("[" + this.config.getProperty("service.name") + "] " + HttpServletResponse.SC_BAD_REQUEST + ": " + format + " not implemented!");
+            Patron patron = new Patron();
+            patron.setAccount(patronid);
 
-            // Error handling mit suppress_response_codes=true
-            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-            }
-            // Error handling mit suppress_response_codes=false (=default)
-            else {
-                httpServletResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            }
+            return integratedLibrarySystem.blockpatron(patron, block);
+        });
 
-            // Json für Response body
-            RequestError requestError = new RequestError();
-            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_BAD_REQUEST)));
-            requestError.setCode(HttpServletResponse.SC_BAD_REQUEST);
-            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_BAD_REQUEST) + ".description"));
-            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_BAD_REQUEST) + ".uri"));
+        router.route("POST", "unblockpatron", true, Block.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, block) -> {
 
-            this.sendRequestError(httpServletResponse, requestError, format);
-        }
-        else {
-            // PAAA - function
-            if (service.equals("signup") || service.equals("newpatron") || service.equals("updatepatron") || service.equals("blockpatron") || service.equals("unblockpatron") || service.equals("newfee")) {
+            Patron patron = new Patron();
+            patron.setAccount(patronid);
 
-                // get 'Accept' and 'Authorization' from Header;
-                Enumeration<String> headerNames = httpServletRequest.getHeaderNames();
-                while (headerNames.hasMoreElements()) {
+            return integratedLibrarySystem.unblockpatron(patron, block);
+        });
 
-                    String headerNameKey = (String) headerNames.nextElement();
-                    this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "headerNameKey = " + headerNameKey + " / headerNameValue = " + httpServletRequest.getHeader(headerNameKey));
+        router.route("POST", "newfee", true, Fee.class, JsonMapper.FEE_WRITER, (integratedLibrarySystem, patronid, fee) -> {
 
-                    if (headerNameKey.equals("Accept")) {
-                        accept = httpServletRequest.getHeader(headerNameKey);
-                    }
-                    if (headerNameKey.equals("Authorization")) {
-                        authorization = httpServletRequest.getHeader(headerNameKey);
-                    }
-                }
+            Patron patron = new Patron();
+            patron.setAccount(patronid);
 
-                this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Accept: " + accept);
-                this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Authorization: " + authorization);
+            return integratedLibrarySystem.newfee(patron, fee);
+        });
 
-                // if not exists token: read request parameter
-                if (authorization.equals("") && httpServletRequest.getParameter("access_token") != null && !httpServletRequest.getParameter("access_token").equals("")) {
-                    authorization = httpServletRequest.getParameter("access_token");
-                }
+        router.route("DELETE", "deletepatron", true, Void.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, none) -> {
 
-                // if not exists token
-                if (authorization.equals("")) {
+            Patron patron = new Patron();
+            patron.setAccount(patronid);
 
-                    // if exists PaiaService-Cookie: read content
-                    Cookie[] cookies = httpServletRequest.getCookies();
+            return integratedLibrarySystem.deletepatron(patron);
+        });
+        router.defaultService("DELETE", "deletepatron");
 
-                    if (cookies != null) {
-                        for (Cookie cookie : cookies) {
-                            if (cookie.getName().equals("PaaaService")) {
+        router.route("GET", "patron", true, Void.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, none) -> {
 
-                                String value = URLDecoder.decode(cookie.getValue(), "UTF-8");
-                                this.logger.info(value);
-                                LoginResponse loginResponse = mapper.readValue(value, LoginResponse.class);
+            Patron patron = new Patron();
+            patron.setAccount(patronid);
 
-                                // A C H T U N G: ggf. andere patronID im Cookie als in Request (UniAccount vs. BibAccount)
-                                if (loginResponse.getPatron().equals(patronid)) {
-                                    authorization = loginResponse.getAccess_token();
-                                }
+            return integratedLibrarySystem.patron(patron);
+        });
+        router.defaultService("GET", "patron");
 
-                                break;
-                            }
-                        }
-                    }
-                }
-
-                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                // check token ...
-                boolean isAuthorized = false;
+        router.route("GET", "fees", true, Void.class, JsonMapper.FEE_LIST_WRITER, (integratedLibrarySystem, patronid, none) -> {
 
-                if (!authorization.equals("")) {
+            Patron patron = new Patron();
+            patron.setAccount(patronid);
 
-                    if (Lookup.lookupAll(AuthorizationInterface.class).size() > 0) {
+            return integratedLibrarySystem.fees(patron);
+        });
 
-                        AuthorizationInterface authorizationInterface = Lookup.lookup(AuthorizationInterface.class);
-                        // init Authorization Service
-                        authorizationInterface.init(this.config);
+        // Bulk-Import: /bulk/newpatron bzw. /bulk/updatepatron
+        router.bulk("POST", "newpatron");
+        router.bulk("POST", "updatepatron");
 
-                        try {
+        return router;
+    }
 
-                            isAuthorized = authorizationInterface.isTokenValid(httpServletResponse, service, patronid, authorization);
-                        }
-                        catch (AuthorizationException e) {
+    /**
+     * @param httpServletRequest
+     * @param httpServletResponse
+     * @throws ServletException
+     * @throws java.io.IOException
+     */
+    protected void doGet(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException, IOException {
 
-                            // TODO correct error handling
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_UNAUTHORIZED + "!");
-                        }
-                    } else {
+        this.dispatch("GET", httpServletRequest, httpServletResponse);
+    }
 
-                        // TODO correct error handling
-                        this.logger.error("[" + this.config.getProperty("service.name") + "] " + HttpServletResponse.SC_INTERNAL_SERVER_ERROR + ": " + "Authorization Interface not implemented!");
-                    }
-                }
+    /**
+     * @param httpServletRequest
+     * @param httpServletResponse
+     * @throws ServletException
+     * @throws java.io.IOException
+     */
+    protected void doPost(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException, IOException {
 
-                this.logger.debug("[" + config.getProperty("service.name") + "] " + "Authorization: " + authorization + " - " + isAuthorized);
+        this.dispatch("POST", httpServletRequest, httpServletResponse);
+    }
 
-                // ... - if not is authorized - against DFN-AAI service
-                if (!isAuthorized) {
+    protected void doDelete(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException, IOException {
 
-                    // TODO if exists OpenAM-Session-Cookie: read content
-                    this.logger.debug("[" + config.getProperty("service.name") + "] " + "Authorization: " + authorization + " - " + isAuthorized);
-                }
+        this.dispatch("DELETE", httpServletRequest, httpServletResponse);
+    }
 
-                if (isAuthorized) {
+    /**
+     * Looks up the route, negotiates the format, checks rate limit and token and hands the service over to the
+     * ILS worker threads resp. the bulk import.
+     */
+    private void dispatch(String method, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
 
-                    // execute query
-                    this.provideService(httpServletRequest, httpServletResponse, format, patronid, authorization, service);
-                }
-                else {
+        this.logger.debug("PathInfo = {}", httpServletRequest.getPathInfo());
+        this.logger.debug("QueryString = {}", httpServletRequest.getQueryString());
 
-                    // Authorization
-                    this.authorize(httpServletRequest, httpServletResponse, format);
-                }
-            }
-            else {
+        Router.Match match = this.router.match(method, httpServletRequest.getPathInfo());
+        String patronid = match.getPatronid();
 
-                this.logger.error("[" + this.config.getProperty("service.name") + "] " + HttpServletResponse.SC_METHOD_NOT_ALLOWED + ": " + "POST for '" + service + "' not allowed!");
+        this.logger.debug("Patron: {}", patronid);
+        this.logger.debug("Service: {}", match.getService());
 
-                httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                httpServletResponse.setContentType("application/json");
+        String format = this.getFormat(httpServletRequest);
 
-                // Error handling mit suppress_response_codes=true
-                if (httpServletRequest.getParameter("suppress_response_codes") != null && !httpServletRequest.getParameter("suppress_response_codes").equals("")) {
-                    httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                }
-                // Error handling mit suppress_response_codes=false (=default)
-                else {
-                    httpServletResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-                }
+        this.logger.debug("format = {}", format);
 
-                // Json für Response body
-                RequestError requestError = new RequestError();
-                requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED)));
-                requestError.setCode(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-                requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED) + ".description"));
-                requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED) + ".uri"));
+        if (!format.equals("json") && !format.equals("xml") && !format.equals("smile")) {
 
-                StringWriter json = new StringWriter();
-                mapper.writeValue(json, requestError);
-                this.logger.debug("[" + this.config.getProperty("service.name") + "] " + json);
+            this.logger.error("{}: {} not implemented!", HttpServletResponse.SC_BAD_REQUEST, format);
 
-                // send response
-                httpServletResponse.getWriter().println(json);
-            }
+            this.sendRequestError(httpServletRequest, httpServletResponse, HttpServletResponse.SC_BAD_REQUEST, format);
+            return;
         }
-    }
 
-    protected void doDelete(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException, IOException {
+        Router.Route<?> route = match.getRoute();
 
-        ObjectMapper mapper = new ObjectMapper();
+        if (route == null) {
 
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "PathInfo = " + httpServletRequest.getPathInfo());
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "QueryString = " + httpServletRequest.getQueryString());
+            this.logger.error("{}: {} for '{}' not allowed!", HttpServletResponse.SC_METHOD_NOT_ALLOWED, method, match.getService());
 
-        String patronid = "";
-        String service = "";
-        String accept = "";
-        String authorization = "";
+            this.sendRequestError(httpServletRequest, httpServletResponse, HttpServletResponse.SC_METHOD_NOT_ALLOWED, format);
+            return;
+        }
+
+        httpServletRequest.setAttribute(MetricsHandler.SERVICE_ATTRIBUTE, route.getName());
+        httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
 
-        String format = "json";
+        String authorization = this.getAccessToken(httpServletRequest, patronid);
 
-        String path = httpServletRequest.getPathInfo();
-        String[] params = path.substring(1, path.length()).split("/");
+        this.logger.debug("Authorization: {}", authorization);
 
-        if (params.length == 1) {
-            patronid = params[0];
-            service = "deletepatron";
-        } else if (params.length == 2) {
-            patronid = params[0];
-            service = params[1];
+        // rate limit per client, before the token is checked
+        if (!this.checkRateLimit(httpServletRequest, httpServletResponse, route.getName(), format)) {
+            return;
         }
 
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Patron: " + patronid);
-        this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Service: " + service);
+        if (route.isBulk()) {
 
-        if (httpServletRequest.getParameter("format") != null && !httpServletRequest.getParameter("format").equals("")) {
+            // execute bulk import; the token is checked once for the service, per record in the import
+            if (!this.isTokenValid(httpServletResponse, route.getService(), "", authorization)) {
+                this.authorize(httpServletRequest, httpServletResponse, format);
+            }
+            else {
+                this.provideBulkService(httpServletRequest, httpServletResponse, format, authorization, route.getService());
+            }
+        }
+        else if (route.isTokenRequired() && !this.isTokenValid(httpServletResponse, route.getService(), patronid, authorization)) {
 
-            format = httpServletRequest.getParameter("format");
+            // Authorization
+            this.authorize(httpServletRequest, httpServletResponse, format);
         }
         else {
 
-            Enumeration<String> headerNames = httpServletRequest.getHeaderNames();
-            while ( headerNames.hasMoreElements() ) {
-                String headerNameKey = headerNames.nextElement();
+            // execute query
+            this.executeService(httpServletRequest, httpServletResponse, format, patronid, authorization, route);
+        }
+    }
 
-                if (headerNameKey.equals("Accept")) {
+    /**
+     * @return the format ('json', 'xml' or 'smile') from the request parameter 'format', otherwise from the 'Accept'
+     *         header; 'json' by default
+     */
+    private String getFormat(HttpServletRequest httpServletRequest) {
 
-                    this.logger.debug("headerNameKey = " + httpServletRequest.getHeader( headerNameKey ));
+        String format = httpServletRequest.getParameter("format");
 
-                    if (httpServletRequest.getHeader( headerNameKey ).contains("text/html")) {
-                        format = "html";
-                    }
-                    else if (httpServletRequest.getHeader( headerNameKey ).contains("application/xml")) {
-                        format = "xml";
-                    }
-                    else if (httpServletRequest.getHeader( headerNameKey ).contains("application/json")) {
-                        format = "json";
-                    }
-                }
-            }
+        if (format != null && !format.equals("")) {
+            return format;
         }
 
-        this.logger.info("format = " + format);
+        String accept = httpServletRequest.getHeader("Accept");
 
-        if (!format.equals("json") && !format.equals("xml")) {
+        this.logger.debug("Accept: {}", accept);
 
-            this.logger.error("[" + this.config.getProperty("service.name") + "] " + HttpServletResponse.SC_BAD_REQUEST + ": " + format + " not implemented!");
+        if (accept != null) {
 
-            // Error handling mit suppress_response_codes=true
-            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
+            if (accept.contains(SmileMapper.CONTENT_TYPE)) {
+                return "smile";
             }
-            // Error handling mit suppress_response_codes=false (=default)
-            else {
-                httpServletResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            else if (accept.contains("text/html")) {
+                return "html";
+            }
+            else if (accept.contains("application/xml")) {
+                return "xml";
             }
-
-            // Json für Response body
-            RequestError requestError = new RequestError();
-            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_BAD_REQUEST)));
-            requestError.setCode(HttpServletResponse.SC_BAD_REQUEST);
-            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_BAD_REQUEST) + ".description"));
-            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_BAD_REQUEST) + ".uri"));
-
-            this.sendRequestError(httpServletResponse, requestError, format);
         }
-        else {
-            // PAAA - function
-            if (service.equals("deletepatron")) {
 
-                // get 'Accept' and 'Authorization' from Header;
-                Enumeration<String> headerNames = httpServletRequest.getHeaderNames();
-                while (headerNames.hasMoreElements()) {
-
-                    String headerNameKey = (String) headerNames.nextElement();
-                    this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "headerNameKey = " + headerNameKey + " / headerNameValue = " + httpServletRequest.getHeader(headerNameKey));
+        return "json";
+    }
 
-                    if (headerNameKey.equals("Accept")) {
-                        accept = httpServletRequest.getHeader(headerNameKey);
-                    }
-                    if (headerNameKey.equals("Authorization")) {
-                        authorization = httpServletRequest.getHeader(headerNameKey);
-                    }
-                }
+    /**
+     * @return the access token from the 'Authorization' header, the request parameter 'access_token' or the
+     *         'PaaaService' cookie; an empty string if there is none
+     */
+    private String getAccessToken(HttpServletRequest httpServletRequest, String patronid) throws IOException {
 
-                this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Accept: " + accept);
-                this.logger.debug("[" + this.config.getProperty("service.name") + "] " + "Authorization: " + authorization);
+        String authorization = httpServletRequest.getHeader("Authorization");
 
-                // if not exists token: read request parameter
-                if (authorization.equals("") && httpServletRequest.getParameter("access_token") != null && !httpServletRequest.getParameter("access_token").equals("")) {
-                    authorization = httpServletRequest.getParameter("access_token");
-                }
+        if (authorization != null && !authorization.equals("")) {
+            return authorization;
+        }
 
-                // if not exists token
-                if (authorization.equals("")) {
+        // if not exists token: read request parameter
+        String accessToken = httpServletRequest.getParameter("access_token");
 
-                    // if exists PaiaService-Cookie: read content
-                    Cookie[] cookies = httpServletRequest.getCookies();
+        if (accessToken != null && !accessToken.equals("")) {
+            return accessToken;
+        }
 
-                    if (cookies != null) {
-                        for (Cookie cookie : cookies) {
-                            if (cookie.getName().equals("PaaaService")) {
+        // if exists PaiaService-Cookie: read content
+        Cookie[] cookies = httpServletRequest.getCookies();
 
-                                String value = URLDecoder.decode(cookie.getValue(), "UTF-8");
-                                this.logger.info(value);
-                                LoginResponse loginResponse = mapper.readValue(value, LoginResponse.class);
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (cookie.getName().equals("PaaaService")) {
 
-                                // A C H T U N G: ggf. andere patronID im Cookie als in Request (UniAccount vs. BibAccount)
-                                if (loginResponse.getPatron().equals(patronid)) {
-                                    authorization = loginResponse.getAccess_token();
-                                }
+                    String value = URLDecoder.decode(cookie.getValue(), "UTF-8");
+                    this.logger.debug("Cookie: {}", value);
+                    LoginResponse loginResponse = JsonMapper.LOGIN_RESPONSE_READER.readValue(value);
 
-                                break;
-                            }
-                        }
+                    // A C H T U N G: ggf. andere patronID im Cookie als in Request (UniAccount vs. BibAccount)
+                    if (loginResponse.getPatron().equals(patronid)) {
+                        return loginResponse.getAccess_token();
                     }
-                }
-
-                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
 
-                // check token ...
-                boolean isAuthorized = false;
-
-                if (!authorization.equals("")) {
-
-                    if (Lookup.lookupAll(AuthorizationInterface.class).size() > 0) {
+                    break;
+                }
+            }
+        }
 
-                        AuthorizationInterface authorizationInterface = Lookup.lookup(AuthorizationInterface.class);
-                        // init Authorization Service
-                        authorizationInterface.init(this.config);
+        return "";
+    }
 
-                        try {
+    /**
+     * Checks the token against the Authorization Service.
+     */
+    private boolean isTokenValid(HttpServletResponse httpServletResponse, String service, String patronid, String authorization) {
 
-                            isAuthorized = authorizationInterface.isTokenValid(httpServletResponse, service, patronid, authorization);
-                        }
-                        catch (AuthorizationException e) {
+        boolean isAuthorized = false;
 
-                            // TODO correct error handling
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_UNAUTHORIZED + "!");
-                        }
-                    } else {
+        if (!authorization.equals("")) {
 
-                        // TODO correct error handling
-                        this.logger.error("[" + this.config.getProperty("service.name") + "] " + HttpServletResponse.SC_INTERNAL_SERVER_ERROR + ": " + "Authorization Interface not implemented!");
-                    }
-                }
+            AuthorizationInterface authorizationInterface = ServiceProviders.authorizationInterface();
 
-                this.logger.debug("[" + config.getProperty("service.name") + "] " + "Authorization: " + authorization + " - " + isAuthorized);
+            if (authorizationInterface != null) {
 
-                // ... - if not is authorized - against DFN-AAI service
-                if (!isAuthorized) {
+                try {
 
-                    // TODO if exists OpenAM-Session-Cookie: read content
-                    this.logger.debug("[" + config.getProperty("service.name") + "] " + "Authorization: " + authorization + " - " + isAuthorized);
+                    isAuthorized = authorizationInterface.isTokenValid(httpServletResponse, service, patronid, authorization);
                 }
+                catch (AuthorizationException e) {
 
-                if (isAuthorized) {
-
-                    // execute query
-                    this.provideService(httpServletRequest, httpServletResponse, format, patronid, authorization, service);
+                    // TODO correct error handling
+                    this.logger.error("{}!", HttpServletResponse.SC_UNAUTHORIZED);
                 }
-                else {
+            } else {
 
-                    // Authorization
-                    this.authorize(httpServletRequest, httpServletResponse, format);
-                }
+                // TODO correct error handling
+                this.logger.error("{}: Authorization Interface not implemented!", HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             }
-            else {
-
-                this.logger.error("[" + this.config.getProperty("service.name") + "] " + HttpServletResponse.SC_METHOD_NOT_ALLOWED + ": " + "DELETE for '" + service + "' not allowed!");
-
-                httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                httpServletResponse.setContentType("application/json");
-                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                // Error handling mit suppress_response_codes=true
-                if (httpServletRequest.getParameter("suppress_response_codes") != null && !httpServletRequest.getParameter("suppress_response_codes").equals("")) {
-                    httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                }
-                // Error handling mit suppress_response_codes=false (=default)
-                else {
-                    httpServletResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-                }
+        }
 
-                // Json für Response body
-                RequestError requestError = new RequestError();
-                requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED)));
-                requestError.setCode(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-                requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED) + ".description"));
-                requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_METHOD_NOT_ALLOWED) + ".uri"));
+        this.logger.debug("Authorization: {} - {}", authorization, isAuthorized);
 
-                StringWriter json = new StringWriter();
-                mapper.writeValue(json, requestError);
-                this.logger.debug("[" + this.config.getProperty("service.name") + "] " + json);
+        // TODO if not is authorized - against DFN-AAI service resp. OpenAM-Session-Cookie
 
-                // send response
-                httpServletResponse.getWriter().println(json);
-            }
-        }
+        return isAuthorized;
     }
 
     protected void doOptions(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws ServletException, IOException {
 
-        httpServletResponse.setHeader("Access-Control-Allow-Methods", this.config.getProperty("Access-Control-Allow-Methods"));
-        httpServletResponse.addHeader("Access-Control-Allow-Headers", this.config.getProperty("Access-Control-Allow-Headers"));
-        httpServletResponse.setHeader("Accept", this.config.getProperty("Accept"));
-        httpServletResponse.setHeader("Access-Control-Allow-Origin", this.config.getProperty("Access-Control-Allow-Origin"));
+        Configuration configuration = this.configuration;
+
+        httpServletResponse.setHeader("Access-Control-Allow-Methods", configuration.getAccessControlAllowMethods());
+        httpServletResponse.addHeader("Access-Control-Allow-Headers", configuration.getAccessControlAllowHeaders());
+        httpServletResponse.setHeader("Accept", configuration.getAccept());
+        httpServletResponse.setHeader("Access-Control-Allow-Origin", configuration.getAccessControlAllowOrigin());
 
         httpServletResponse.getWriter().println();
     }
@@ -654,7 +522,6 @@ public class PaaaEndpoint extends HttpServlet {
      */
     private void authorize(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String format) throws IOException {
 
-        ObjectMapper mapper = new ObjectMapper();
 
         // Error handling mit suppress_response_codes=true
         if (httpServletRequest.getParameter("suppress_response_codes") != null) {
@@ -665,749 +532,510 @@ public class PaaaEndpoint extends HttpServlet {
             httpServletResponse.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
         }
 
-        // Json für Response body
-        RequestError requestError = new RequestError();
-        requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_UNAUTHORIZED)));
-        requestError.setCode(HttpServletResponse.SC_UNAUTHORIZED);
-        requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_UNAUTHORIZED) + ".description"));
-        requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_UNAUTHORIZED) + ".uri"));
+        ErrorResponses.Body body = this.errorResponses.get(HttpServletResponse.SC_UNAUTHORIZED, format);
 
-        // XML-Ausgabe mit JAXB
-        if (format.equals("xml")) {
+        if (body != null) {
+            body.write(httpServletResponse);
+        }
+    }
 
-            try {
+    /**
+     * Answers 429 if the client (remote address) exceeds the rate limit of the service,
+     * see {@link RateLimiter}.
+     *
+     * @return false if the request has been rejected
+     */
+    private boolean checkRateLimit(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String service, String format) {
 
-                JAXBContext context = JAXBContext.newInstance(RequestError.class);
-                Marshaller m = context.createMarshaller();
-                m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        long retryAfter = this.rateLimiter.acquire(httpServletRequest, service);
 
-                // Write to HttpResponse
-                httpServletResponse.setContentType("application/xml;charset=UTF-8");
-                m.marshal(requestError, httpServletResponse.getWriter());
-
-            } catch (JAXBException e) {
-                this.logger.error(e.getMessage(), e.getCause());
-                httpServletResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal Server Error: Error while rendering the results.");
-            }
+        if (retryAfter == 0) {
+            return true;
         }
 
-        // JSON-Ausgabe mit Jackson
-        if (format.equals("json")) {
+        this.logger.warn("{}: rate limit for '{}' exceeded by {}", RateLimiter.SC_TOO_MANY_REQUESTS, service, httpServletRequest.getRemoteAddr());
 
-            httpServletResponse.setContentType("application/json;charset=UTF-8");
-            mapper.writeValue(httpServletResponse.getWriter(), requestError);
-        }
+        MetricsRegistry.getInstance().counter("paaa_ratelimited_total", "Requests rejected with 429 by the rate limit", "service", service).increment();
+
+        httpServletResponse.setHeader("Retry-After", Long.toString((retryAfter + 999) / 1000));
+        this.sendRequestError(httpServletRequest, httpServletResponse, RateLimiter.SC_TOO_MANY_REQUESTS, format);
+
+        return false;
     }
 
     /**
-     * PAAA services
+     * Hands the PAAA service over to the ILS worker threads, see {@link ServiceExecutor}. Too many waiting requests
+     * are answered with 503, a service exceeding 'ils.timeout.&lt;service&gt;' with 504.
+     *
+     * Requests with an 'Idempotency-Key' header are executed once per key, token, service and patron; duplicates get
+     * the response of the first execution, see {@link IdempotencyCache}. Reads matching the ETag of the patron cache
+     * are answered with 304 right away.
      */
-    private void provideService(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String format, String patronid, String token, String service) throws IOException {
+    private void executeService(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String format, String patronid, String token, Router.Route<?> route) throws IOException {
 
-        String baseurl = httpServletRequest.getServerName() + ":" + httpServletRequest.getServerPort();
-        this.logger.info("[" + config.getProperty("service.name") + "] " + "baseurl = " + baseurl);
+        String service = route.getService();
 
-        ObjectMapper mapper = new ObjectMapper();
+        // GET: 'If-None-Match' still valid for the cached read, no ILS worker thread needed
+        if (route.isReadOnly() && this.isNotModified(this.getIfNoneMatch(httpServletRequest), httpServletResponse, this.getCachedETag(service, patronid))) {
 
-        if (Lookup.lookupAll(IntegratedLibrarySystem.class).size() > 0) {
+            this.logger.debug("'{}' for patron '{}' not modified", service, patronid);
+            return;
+        }
 
-            try {
-                IntegratedLibrarySystem integratedLibrarySystem = Lookup.lookup(IntegratedLibrarySystem.class);
-                // init ILS
-                integratedLibrarySystem.init(this.config);
-
-                switch (service) {
-
-                    case "signup": {
-
-                        Patron patron = null;
-
-                        // read Patron
-                        StringBuffer jb = new StringBuffer();
-                        String line = null;
-                        try {
-                            BufferedReader reader = httpServletRequest.getReader();
-                            while ((line = reader.readLine()) != null)
-                                jb.append(line);
-                        } catch (Exception e) { /*report an error*/ }
-
-                        Patron patron2create = mapper.readValue(jb.toString(), Patron.class);
-                        if (patron2create.getAccount() == null || patron2create.getAccount().equals("")) {
-                            if (!patronid.equals("")) {
-                                patron2create.setAccount(patronid);
-                            } else {
-                                patron2create.setAccount(UUID.randomUUID().toString());
-                            }
-                        }
+        // the ILS worker must not read the request, see ServiceRequest
+        ServiceRequest serviceRequest;
 
-                        patron = integratedLibrarySystem.signup(patron2create);
+        try {
 
-                        this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> success!");
+            serviceRequest = this.readServiceRequest(httpServletRequest, route);
+        }
+        catch (RequestBodyException e) {
 
-                        if (patron != null) {
+            this.logger.error("{}: {}", e.getStatus(), e.getMessage());
 
-                            Block block = new Block();
-                            LocalDateTime timePoint = LocalDateTime.now();
-                            block.setDate(timePoint.getYear() + "-" + (timePoint.getMonthValue() < 10 ? "0" + timePoint.getMonthValue() : timePoint.getMonthValue()) + "-" + (timePoint.getDayOfMonth() < 10 ? "0" + timePoint.getDayOfMonth() : timePoint.getDayOfMonth()));
-                            block.setKey("93");
-                            integratedLibrarySystem.blockpatron(patron,block);
+            this.sendRequestError(httpServletRequest, httpServletResponse, e.getStatus(), format);
+            return;
+        }
 
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, patron);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+        ServiceExecutor.ErrorHandler errorHandler = (response, status) -> this.sendRequestError(serviceRequest.isSuppressResponseCodes(), response, status, format);
 
-                            // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
-                            if (httpServletRequest.getParameter("redirect_uri") != null) {
-                                this.logger.debug("[" + config.getProperty("service.name") + "] " + "REDIRECT? " + httpServletRequest.getParameter("redirect_uri"));
+        String idempotencyKey = httpServletRequest.getHeader("Idempotency-Key");
 
-                                httpServletResponse.sendRedirect(httpServletRequest.getParameter("redirect_uri") + "&patron=" + patronid + "&token=" + token);
-                            }
-                            else {
-                                httpServletResponse.setContentType("application/json");
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+        if (idempotencyKey == null || idempotencyKey.equals("") || route.isReadOnly()) {
 
-                                httpServletResponse.getWriter().println(json);
-                            }
-                        }
-                        else {
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_SERVICE_UNAVAILABLE + ": ILS!");
-
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                            httpServletResponse.setContentType("application/json");
-                            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                            // Error handling mit suppress_response_codes=true
-                            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                            }
-                            // Error handling mit suppress_response_codes=false (=default)
-                            else {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            }
-
-                            // Json für Response body
-                            RequestError requestError = new RequestError();
-                            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE)));
-                            requestError.setCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".description"));
-                            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".uri"));
-
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, requestError);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
-
-                            // send response
-                            httpServletResponse.getWriter().println(json);
-                        }
+            this.serviceExecutor.execute(httpServletRequest, httpServletResponse, service,
+                    response -> this.provideService(serviceRequest, response, format, patronid, token, route),
+                    errorHandler);
+            return;
+        }
 
-                        break;
-                    }
-                    case "newpatron": {
+        String key = token + " " + service + " " + patronid + " " + idempotencyKey;
 
-                        Patron patron = null;
+        CompletableFuture<BufferedResponse> execution = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> previous = this.idempotencyCache.putIfAbsent(key, execution);
 
-                        // read Patron
-                        StringBuffer jb = new StringBuffer();
-                        String line = null;
-                        try {
-                            BufferedReader reader = httpServletRequest.getReader();
-                            while ((line = reader.readLine()) != null)
-                                jb.append(line);
-                        } catch (Exception e) { /*report an error*/ }
+        if (previous != null) {
 
-                        Patron patron2create = mapper.readValue(jb.toString(), Patron.class);
-                        patron2create.setAccount(patronid);
+            this.logger.info("Idempotency-Key '{}': replaying '{}' for patron '{}'", idempotencyKey, service, patronid);
 
-                        patron = integratedLibrarySystem.newpatron(patron2create);
+            httpServletResponse.setHeader("Idempotent-Replayed", "true");
+            this.serviceExecutor.await(httpServletRequest, httpServletResponse, service, previous, errorHandler);
+            return;
+        }
 
-                        this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> success!");
+        // rejected (503) or timed out (504) before it started: the service will never complete the execution
+        AtomicBoolean started = new AtomicBoolean(false);
 
-                        if (patron != null) {
+        this.serviceExecutor.execute(httpServletRequest, httpServletResponse, service, response -> {
 
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, patron);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
 
-                            // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
-                            if (httpServletRequest.getParameter("redirect_uri") != null) {
-                                this.logger.debug("[" + config.getProperty("service.name") + "] " + "REDIRECT? " + httpServletRequest.getParameter("redirect_uri"));
+            BufferedResponse bufferedResponse = new BufferedResponse(response);
+            BufferedResponse completed = null;
 
-                                httpServletResponse.sendRedirect(httpServletRequest.getParameter("redirect_uri") + "&patron=" + patronid + "&token=" + token);
-                            }
-                            else {
-                                httpServletResponse.setContentType("application/json");
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+            try {
 
-                                httpServletResponse.getWriter().println(json);
-                            }
-                        }
-                        else {
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_SERVICE_UNAVAILABLE + ": ILS!");
-
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                            httpServletResponse.setContentType("application/json");
-                            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                            // Error handling mit suppress_response_codes=true
-                            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                            }
-                            // Error handling mit suppress_response_codes=false (=default)
-                            else {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            }
-
-                            // Json für Response body
-                            RequestError requestError = new RequestError();
-                            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE)));
-                            requestError.setCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".description"));
-                            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".uri"));
-
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, requestError);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
-
-                            // send response
-                            httpServletResponse.getWriter().println(json);
-                        }
+                this.provideService(serviceRequest, bufferedResponse, format, patronid, token, route);
+                completed = bufferedResponse;
+            }
+            finally {
 
-                        break;
-                    }
-                    case "updatepatron": {
+                // on any failure, Errors included: otherwise the key stays running and its retries wait forever
+                this.idempotencyCache.complete(key, execution, completed);
+            }
 
-                        Patron patron = null;
+            bufferedResponse.replay(response);
+        }, (response, status) -> {
 
-                        // read Patron
-                        StringBuffer jb = new StringBuffer();
-                        String line = null;
-                        try {
-                            BufferedReader reader = httpServletRequest.getReader();
-                            while ((line = reader.readLine()) != null)
-                                jb.append(line);
-                        } catch (Exception e) { /*report an error*/ }
+            if (started.compareAndSet(false, true)) {
+                this.idempotencyCache.complete(key, execution, null);
+            }
 
-                        Patron patron2update = mapper.readValue(jb.toString(), Patron.class);
-                        patron2update.setAccount(patronid);
+            errorHandler.sendError(response, status);
+        });
+    }
 
-                        // TODO Was tun bei Änderung des 'status'?
+    /**
+     * Reads everything the service needs from the request, including the body of the route as JSON or Smile, on the
+     * container thread, see {@link ServiceRequest}.
+     */
+    private ServiceRequest readServiceRequest(HttpServletRequest httpServletRequest, Router.Route<?> route) throws IOException, RequestBodyException {
 
-                        patron = integratedLibrarySystem.updatepatron(patron2update);
+        ObjectReader reader = SmileMapper.isSmile(httpServletRequest.getContentType()) ? route.getSmileReader() : route.getReader();
+        Object body = reader != null ? this.readRequestBody(httpServletRequest, reader) : null;
 
-                        this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> success!");
+        return new ServiceRequest(httpServletRequest.getServerName() + ":" + httpServletRequest.getServerPort(), body,
+                httpServletRequest.getParameter("redirect_uri"), httpServletRequest.getParameter("suppress_response_codes") != null,
+                this.getIfNoneMatch(httpServletRequest));
+    }
 
-                        if (patron != null) {
+    /**
+     * PAAA services: calls the handler of the route with the request body and writes the result. Runs on an ILS
+     * worker thread and therefore gets the request only as {@link ServiceRequest}.
+     */
+    private void provideService(ServiceRequest serviceRequest, HttpServletResponse httpServletResponse, String format, String patronid, String token, Router.Route<?> route) throws IOException {
 
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, patron);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+        this.logger.info("baseurl = {}", serviceRequest.getBaseurl());
 
-                            // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
-                            if (httpServletRequest.getParameter("redirect_uri") != null) {
-                                this.logger.debug("[" + config.getProperty("service.name") + "] " + "REDIRECT? " + httpServletRequest.getParameter("redirect_uri"));
+        // a reload does not stop the ILS while the service is using it
+        try (ProviderRegistry.Lease<IntegratedLibrarySystem> lease = ServiceProviders.acquireIntegratedLibrarySystem()) {
 
-                                httpServletResponse.sendRedirect(httpServletRequest.getParameter("redirect_uri") + "&patron=" + patronid + "&token=" + token);
-                            }
-                            else {
-                                httpServletResponse.setContentType("application/json");
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+            this.provideService(lease.get(), serviceRequest, httpServletResponse, format, patronid, token, route);
+        }
+    }
 
-                                httpServletResponse.getWriter().println(json);
-                            }
-                        }
-                        else {
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_SERVICE_UNAVAILABLE + ": ILS!");
-
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                            httpServletResponse.setContentType("application/json");
-                            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                            // Error handling mit suppress_response_codes=true
-                            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                            }
-                            // Error handling mit suppress_response_codes=false (=default)
-                            else {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            }
-
-                            // Json für Response body
-                            RequestError requestError = new RequestError();
-                            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE)));
-                            requestError.setCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".description"));
-                            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".uri"));
-
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, requestError);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
-
-                            // send response
-                            httpServletResponse.getWriter().println(json);
-                        }
+    private void provideService(IntegratedLibrarySystem integratedLibrarySystem, ServiceRequest serviceRequest, HttpServletResponse httpServletResponse, String format, String patronid, String token, Router.Route<?> route) throws IOException {
 
-                        break;
-                    }
-                    case "blockpatron": {
+        String service = route.getService();
 
-                        Patron patron = null;
+        if (integratedLibrarySystem != null) {
 
-                        // read Patron
-                        StringBuffer jb = new StringBuffer();
-                        String line = null;
-                        try {
-                            BufferedReader reader = httpServletRequest.getReader();
-                            while ((line = reader.readLine()) != null)
-                                jb.append(line);
-                        } catch (Exception e) { /*report an error*/ }
+            try {
 
-                        Patron patron2block = new Patron();
-                        patron2block.setAccount(patronid);
-                        Block block = mapper.readValue(jb.toString(), Block.class);
+                Object result = route.handle(integratedLibrarySystem, patronid, serviceRequest.getBody());
 
-                        patron = integratedLibrarySystem.blockpatron(patron2block, block);
+                this.logger.info("{} performed '{}' event for patron '{}' >>> success!", token, service, patronid);
 
-                        this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> success!");
+                if (result == null) {
 
-                        if (patron != null) {
+                    this.logger.error("{}: ILS!", HttpServletResponse.SC_SERVICE_UNAVAILABLE);
 
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, patron);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+                    this.sendRequestError(serviceRequest.isSuppressResponseCodes(), httpServletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, format);
+                }
+                // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
+                else if (serviceRequest.getRedirectUri() != null) {
 
-                            // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
-                            if (httpServletRequest.getParameter("redirect_uri") != null) {
-                                this.logger.debug("[" + config.getProperty("service.name") + "] " + "REDIRECT? " + httpServletRequest.getParameter("redirect_uri"));
+                    this.logger.debug("REDIRECT? {}", serviceRequest.getRedirectUri());
 
-                                httpServletResponse.sendRedirect(httpServletRequest.getParameter("redirect_uri") + "&patron=" + patronid + "&token=" + token);
-                            }
-                            else {
-                                httpServletResponse.setContentType("application/json");
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+                    httpServletResponse.sendRedirect(serviceRequest.getRedirectUri() + "&patron=" + patronid + "&token=" + token);
+                }
+                else {
 
-                                httpServletResponse.getWriter().println(json);
-                            }
-                        }
-                        else {
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_SERVICE_UNAVAILABLE + ": ILS!");
-
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                            httpServletResponse.setContentType("application/json");
-                            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                            // Error handling mit suppress_response_codes=true
-                            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                            }
-                            // Error handling mit suppress_response_codes=false (=default)
-                            else {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            }
-
-                            // Json für Response body
-                            RequestError requestError = new RequestError();
-                            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE)));
-                            requestError.setCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".description"));
-                            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".uri"));
-
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, requestError);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
-
-                            // send response
-                            httpServletResponse.getWriter().println(json);
+                    if (route.isReadOnly()) {
+
+                        String etag = this.getETag(integratedLibrarySystem, service, patronid, result);
+
+                        if (this.isNotModified(serviceRequest.getIfNoneMatch(), httpServletResponse, etag)) {
+                            return;
                         }
 
-                        break;
+                        if (etag != null) {
+                            httpServletResponse.setHeader("ETag", etag);
+                        }
+                        httpServletResponse.setHeader("Cache-Control", "private, no-cache");
                     }
-                    case "unblockpatron": {
 
-                        Patron patron = null;
+                    httpServletResponse.setStatus(HttpServletResponse.SC_OK);
+                    httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
 
-                        // read Patron
-                        StringBuffer jb = new StringBuffer();
-                        String line = null;
-                        try {
-                            BufferedReader reader = httpServletRequest.getReader();
-                            while ((line = reader.readLine()) != null)
-                                jb.append(line);
-                        } catch (Exception e) { /*report an error*/ }
+                    this.sendResult(httpServletResponse, result, route.getWriter(), format);
+                }
+            }
+            catch (ILSUnavailableException e) {
 
-                        Patron patron2unblock = new Patron();
-                        patron2unblock.setAccount(patronid);
-                        Block block = mapper.readValue(jb.toString(), Block.class);
+                // Circuit offen, zu viele ILS-Aufrufe bzw. keine freie Verbindung im Pool: sofort 503, keine Mail
+                this.logger.warn("{}: {}", HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
 
-                        patron = integratedLibrarySystem.unblockpatron(patron2unblock, block);
+                httpServletResponse.setHeader("Retry-After", Long.toString(Math.max(1, (e.getRetryAfter() + 999) / 1000)));
+                this.sendRequestError(serviceRequest.isSuppressResponseCodes(), httpServletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, format);
+            }
+            catch (ILSException e) {
 
-                        this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> success!");
+                this.logger.info("{} performed '{}' event for patron '{}' >>> failed!", token, service, patronid);
+                this.logger.error("{}: ILS Error! {}", HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
 
-                        if (patron != null) {
+                // TODO e.getMessage = 403
+                if ("403".equals(e.getMessage())) {
 
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, patron);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+                    this.sendRequestError(serviceRequest.isSuppressResponseCodes(), httpServletResponse, HttpServletResponse.SC_FORBIDDEN, format);
+                }
+                // read operation not offered by the ILS implementation
+                else if ("501".equals(e.getMessage())) {
 
-                            // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
-                            if (httpServletRequest.getParameter("redirect_uri") != null) {
-                                this.logger.debug("[" + config.getProperty("service.name") + "] " + "REDIRECT? " + httpServletRequest.getParameter("redirect_uri"));
+                    this.sendRequestError(serviceRequest.isSuppressResponseCodes(), httpServletResponse, HttpServletResponse.SC_NOT_IMPLEMENTED, format);
+                }
+                else {
 
-                                httpServletResponse.sendRedirect(httpServletRequest.getParameter("redirect_uri") + "&patron=" + patronid + "&token=" + token);
-                            } else {
-                                httpServletResponse.setContentType("application/json");
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+                    // Mail to Bib-IT wg. Socket-Error (queued, does not delay the response)
+                    StringWriter sw = new StringWriter();
+                    PrintWriter pw = new PrintWriter(sw);
+                    e.printStackTrace(pw);
 
-                                httpServletResponse.getWriter().println(json);
-                            }
-                        }
-                        else {
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_SERVICE_UNAVAILABLE + ": ILS!");
-
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                            httpServletResponse.setContentType("application/json");
-                            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                            // Error handling mit suppress_response_codes=true
-                            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                            }
-                            // Error handling mit suppress_response_codes=false (=default)
-                            else {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            }
-
-                            // Json für Response body
-                            RequestError requestError = new RequestError();
-                            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE)));
-                            requestError.setCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".description"));
-                            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".uri"));
-
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, requestError);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
-
-                            // send response
-                            httpServletResponse.getWriter().println(json);
-                        }
+                    this.mailDispatcher.submit("[" + this.configuration.getServiceName() + "] ILS Error! " + e.getMessage(), sw.toString());
 
-                        break;
-                    }
-                    case "deletepatron": {
+                    this.sendRequestError(serviceRequest.isSuppressResponseCodes(), httpServletResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, format);
+                }
+            }
+        }
+        else {
 
-                        Patron patron = null;
+            this.logger.error("{}: Config Error!", HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 
-                        Patron patron2delete = new Patron();
-                        patron2delete.setAccount(patronid);
+            this.sendRequestError(serviceRequest.isSuppressResponseCodes(), httpServletResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, format);
+        }
+    }
 
-                        patron = integratedLibrarySystem.deletepatron(patron2delete);
+    /**
+     * @return the ETag of the cached read, <code>null</code> if it is not cached
+     */
+    private String getCachedETag(String service, String patronid) {
 
-                        this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> success!");
+        IntegratedLibrarySystem integratedLibrarySystem = ServiceProviders.integratedLibrarySystem();
 
-                        if (patron != null) {
+        if (integratedLibrarySystem instanceof CachingIntegratedLibrarySystem) {
 
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, patron);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+            CachingIntegratedLibrarySystem.Entry entry = ((CachingIntegratedLibrarySystem) integratedLibrarySystem).get(service, patronid);
 
-                            // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
-                            if (httpServletRequest.getParameter("redirect_uri") != null) {
-                                this.logger.debug("[" + config.getProperty("service.name") + "] " + "REDIRECT? " + httpServletRequest.getParameter("redirect_uri"));
+            if (entry != null) {
+                return entry.getETag();
+            }
+        }
 
-                                httpServletResponse.sendRedirect(httpServletRequest.getParameter("redirect_uri") + "&patron=" + patronid + "&token=" + token);
-                            }
-                            else {
-                                httpServletResponse.setContentType("application/json");
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+        return null;
+    }
 
-                                httpServletResponse.getWriter().println(json);
-                            }
-                        }
-                        else {
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_SERVICE_UNAVAILABLE + ": ILS!");
-
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                            httpServletResponse.setContentType("application/json");
-                            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                            // Error handling mit suppress_response_codes=true
-                            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                            }
-                            // Error handling mit suppress_response_codes=false (=default)
-                            else {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            }
-
-                            // Json für Response body
-                            RequestError requestError = new RequestError();
-                            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE)));
-                            requestError.setCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".description"));
-                            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".uri"));
-
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, requestError);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
-
-                            // send response
-                            httpServletResponse.getWriter().println(json);
-                        }
+    /**
+     * @return the ETag of the result; taken from the patron cache if the result came from there
+     */
+    private String getETag(IntegratedLibrarySystem integratedLibrarySystem, String service, String patronid, Object result) {
 
-                        break;
-                    }
-                    case "newfee": {
+        if (integratedLibrarySystem instanceof CachingIntegratedLibrarySystem) {
 
-                        Patron patron = null;
-                        Fee resultFee = null;
+            CachingIntegratedLibrarySystem.Entry entry = ((CachingIntegratedLibrarySystem) integratedLibrarySystem).get(service, patronid);
 
-                        patron = new Patron();
-                        patron.setAccount(patronid);
+            if (entry != null && entry.getValue() == result) {
+                return entry.getETag();
+            }
+        }
 
-                        // read Fee
-                        StringBuffer jb = new StringBuffer();
-                        String line = null;
-                        try {
-                            BufferedReader reader = httpServletRequest.getReader();
-                            while ((line = reader.readLine()) != null)
-                                jb.append(line);
-                        } catch (Exception e) { /*report an error*/ }
+        return CachingIntegratedLibrarySystem.etag(result);
+    }
 
-                        this.logger.debug("[" + config.getProperty("service.name") + "] " + "Fee = " + jb);
+    /**
+     * Answers 304 if the request's 'If-None-Match' matches the ETag (weak comparison).
+     *
+     * @return true if the response has been sent
+     */
+    private boolean isNotModified(String ifNoneMatch, HttpServletResponse httpServletResponse, String etag) {
 
-                        Fee fee = mapper.readValue(jb.toString(), Fee.class);
+        if (etag == null || ifNoneMatch == null) {
+            return false;
+        }
 
-                        resultFee = integratedLibrarySystem.newfee(patron, fee);
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
 
-                        this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> success!");
-                        StringWriter stringWriter = new StringWriter();
-                        mapper.writeValue(stringWriter, resultFee);
-                        this.logger.debug("[" + config.getProperty("service.name") + "] " + "Fee: " + stringWriter.toString());
+        for (String candidate : ifNoneMatch.split(",")) {
 
-                        if (patron != null) {
+            candidate = candidate.trim();
 
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, resultFee);
-                            this.logger.debug(json);
+            if (candidate.equals("*") || candidate.equals(opaqueTag) || (candidate.startsWith("W/") && candidate.substring(2).equals(opaqueTag))) {
 
-                            // If request contains parameter 'redirect_uri', then redirect mit access_token and patronid
-                            if (httpServletRequest.getParameter("redirect_uri") != null) {
-                                this.logger.debug("[" + config.getProperty("service.name") + "] " + "REDIRECT? " + httpServletRequest.getParameter("redirect_uri"));
+                httpServletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                httpServletResponse.setHeader("ETag", etag);
+                httpServletResponse.setHeader("Cache-Control", "private, no-cache");
+                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
 
-                                httpServletResponse.sendRedirect(httpServletRequest.getParameter("redirect_uri") + "&patron=" + patronid + "&token=" + token);
-                            }
-                            else {
-                                httpServletResponse.setContentType("application/json");
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                                httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+                return true;
+            }
+        }
 
-                                httpServletResponse.getWriter().println(json);
-                            }
-                        }
-                        else {
-                            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_SERVICE_UNAVAILABLE + ": ILS!");
-
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                            httpServletResponse.setContentType("application/json");
-                            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                            // Error handling mit suppress_response_codes=true
-                            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                            }
-                            // Error handling mit suppress_response_codes=false (=default)
-                            else {
-                                httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            }
-
-                            // Json für Response body
-                            RequestError requestError = new RequestError();
-                            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE)));
-                            requestError.setCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-                            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".description"));
-                            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_SERVICE_UNAVAILABLE) + ".uri"));
-
-                            StringWriter json = new StringWriter();
-                            mapper.writeValue(json, requestError);
-                            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
-
-                            // send response
-                            httpServletResponse.getWriter().println(json);
-                        }
+        return false;
+    }
 
-                        break;
-                    }
-                    default: {
-                        // TODO: keine gültige Funktion
-                    }
-                }
+    /**
+     * @return the 'If-None-Match' header of the request, <code>null</code> if missing
+     */
+    private String getIfNoneMatch(HttpServletRequest httpServletRequest) {
+
+        // gzip-Antworten tragen das ETag mit Suffix '--gzip'; der GzipHandler legt den Header ohne Suffix ab
+        Object gzipETag = httpServletRequest.getAttribute(GzipHandler.ETAG);
+
+        return gzipETag != null ? gzipETag.toString() : httpServletRequest.getHeader("If-None-Match");
+    }
+
+    /**
+     * PAAA bulk services: the records are read from and the results written to the stream as NDJSON or Smile, see
+     * {@link BulkPatronImport}. The token has already been checked for the single service ('newpatron' resp.
+     * 'updatepatron'); the import checks it for the account of each record, see {@link #isPatronTokenValid}.
+     */
+    private void provideBulkService(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String format, String token, String service) throws IOException {
+
+        ProviderRegistry.Lease<IntegratedLibrarySystem> lease = ServiceProviders.acquireIntegratedLibrarySystem();
+
+        // the Authorization Service must not write to the response, which streams the results meanwhile
+        HttpServletResponse detached = new GuardedResponse(httpServletResponse, new AtomicBoolean(true));
+
+        int status;
+
+        if (lease.get() != null) {
+
+            try {
+
+                // the import closes the lease when it is done
+                this.bulkPatronImport.execute(httpServletRequest, httpServletResponse, lease, service, token,
+                        account -> this.isPatronTokenValid(detached, service, account, token), format,
+                        (response, errorStatus) -> this.sendRequestError(httpServletRequest, response, errorStatus, format));
+                return;
             }
-            catch (ILSException e) {
+            catch (RequestBodyException e) {
 
-                this.logger.info("[" + config.getProperty("service.name") + "] " + token + " performed '" + service + "' event for patron '" + patronid + "' >>> failed!");
-                this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_INTERNAL_SERVER_ERROR + ": ILS Error! " + e.getMessage());
+                this.logger.error("{}: {}", e.getStatus(), e.getMessage());
+                status = e.getStatus();
+            }
+        }
+        else {
 
-                // TODO e.getMessage = 403
-                if (e.getMessage().equals("403")) {
+            this.logger.error("{}: Config Error!", HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
 
-                    // TODO >> properties
-                    httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                    httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                    httpServletResponse.setContentType("application/json");
-                    httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+        this.sendRequestError(httpServletRequest, httpServletResponse, status, format);
+    }
 
-                    // Error handling mit suppress_response_codes=true
-                    if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                        httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                    }
-                    // Error handling mit suppress_response_codes=false (=default)
-                    else {
-                        httpServletResponse.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                    }
+    /**
+     * Checks the token for the account of a record of a bulk import, on one of the 'bulk.threads'. Bypasses the
+     * token cache, which would otherwise fill with one entry per record and evict the tokens of the single services.
+     */
+    private boolean isPatronTokenValid(HttpServletResponse httpServletResponse, String service, String patronid, String authorization) {
 
-                    // Json für Response body
-                    RequestError requestError = new RequestError();
-                    requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_FORBIDDEN)));
-                    requestError.setCode(HttpServletResponse.SC_FORBIDDEN);
-                    requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_FORBIDDEN) + ".description"));
-                    requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_FORBIDDEN) + ".uri"));
+        AuthorizationInterface authorizationInterface = ServiceProviders.authorizationInterface();
 
-                    StringWriter json = new StringWriter();
-                    mapper.writeValue(json, requestError);
-                    this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+        if (authorizationInterface instanceof CachingAuthorizationInterface) {
+            authorizationInterface = ((CachingAuthorizationInterface) authorizationInterface).getDelegate();
+        }
 
-                    // send response
-                    httpServletResponse.getWriter().println(json);
-                }
-                else {
+        if (authorizationInterface == null) {
 
-                    // Mail to Bib-IT wg. Socket-Error
-                    try {
+            this.logger.error("{}: Authorization Interface not implemented!", HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return false;
+        }
 
-                        StringWriter sw = new StringWriter();
-                        PrintWriter pw = new PrintWriter(sw);
-                        e.printStackTrace(pw);
+        try {
 
-                        Mailer mailer = new Mailer(this.config.getProperty("service.mailer.conf"));
-                        mailer.postMail("[" + this.config.getProperty("service.name") + "] ILS Error! " + e.getMessage(), sw.toString());
+            return authorizationInterface.isTokenValid(httpServletResponse, service, patronid, authorization);
+        }
+        catch (AuthorizationException e) {
 
-                    } catch (MessagingException | IOException e1) {
+            this.logger.error("{}: {} - {}", HttpServletResponse.SC_UNAUTHORIZED, patronid, e.getMessage());
+            return false;
+        }
+    }
 
-                        this.logger.error(e1.getMessage(), e1.getCause());
-                    }
+    /**
+     * Parses the request body directly from the request's InputStream.
+     *
+     * @throws RequestBodyException 413 if the body is larger than 'service.request.max-body-size' bytes,
+     *                              400 if it is empty or malformed
+     */
+    private <T> T readRequestBody(HttpServletRequest httpServletRequest, ObjectReader reader) throws IOException, RequestBodyException {
 
-                    // TODO >> properties
-                    httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-                    httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-                    httpServletResponse.setContentType("application/json");
-                    httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+        if (httpServletRequest.getContentLengthLong() > this.maxBodySize) {
 
-                    // Error handling mit suppress_response_codes=true
-                    if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                        httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-                    }
-                    // Error handling mit suppress_response_codes=false (=default)
-                    else {
-                        httpServletResponse.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                    }
+            throw new RequestBodyException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body exceeds " + this.maxBodySize + " bytes", null);
+        }
 
-                    // Json für Response body
-                    RequestError requestError = new RequestError();
-                    requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_INTERNAL_SERVER_ERROR)));
-                    requestError.setCode(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                    requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_INTERNAL_SERVER_ERROR) + ".description"));
-                    requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_INTERNAL_SERVER_ERROR) + ".uri"));
+        try (InputStream inputStream = new LimitedInputStream(httpServletRequest.getInputStream(), this.maxBodySize)) {
 
-                    StringWriter json = new StringWriter();
-                    mapper.writeValue(json, requestError);
-                    this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+            T value = reader.readValue(inputStream);
 
-                    // send response
-                    httpServletResponse.getWriter().println(json);
-                }
+            if (value == null) {
+
+                throw new RequestBodyException(HttpServletResponse.SC_BAD_REQUEST, "Missing request body", null);
             }
+
+            return value;
         }
-        else {
+        catch (LimitedInputStream.LimitExceededException e) {
 
-            this.logger.error("[" + config.getProperty("service.name") + "] " + HttpServletResponse.SC_INTERNAL_SERVER_ERROR + ": Config Error!");
+            throw new RequestBodyException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage(), e);
+        }
+        catch (JsonProcessingException e) {
 
-            httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-            httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-            httpServletResponse.setContentType("application/json");
-            httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+            throw new RequestBodyException(HttpServletResponse.SC_BAD_REQUEST, "Malformed request body: " + e.getOriginalMessage(), e);
+        }
+    }
 
-            // Error handling mit suppress_response_codes=true
-            if (httpServletRequest.getParameter("suppress_response_codes") != null) {
-                httpServletResponse.setStatus(HttpServletResponse.SC_OK);
-            }
-            // Error handling mit suppress_response_codes=false (=default)
-            else {
-                httpServletResponse.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            }
+    /**
+     * Writes the result of a PAAA service as XML (JAXB), Smile or JSON (Jackson).
+     */
+    private void sendResult(HttpServletResponse httpServletResponse, Object result, ObjectWriter jsonWriter, String format) throws IOException {
 
-            // Json für Response body
-            RequestError requestError = new RequestError();
-            requestError.setError(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_INTERNAL_SERVER_ERROR)));
-            requestError.setCode(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            requestError.setDescription(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_INTERNAL_SERVER_ERROR) + ".description"));
-            requestError.setErrorUri(this.config.getProperty("error." + Integer.toString(HttpServletResponse.SC_INTERNAL_SERVER_ERROR) + ".uri"));
+        // XML-Ausgabe mit JAXB
+        if (format.equals("xml")) {
+
+            try {
 
-            StringWriter json = new StringWriter();
-            mapper.writeValue(json, requestError);
-            this.logger.debug("[" + config.getProperty("service.name") + "] " + json);
+                httpServletResponse.setContentType("application/xml;charset=UTF-8");
+                XmlMapper.write(result, httpServletResponse.getOutputStream());
+            }
+            catch (JAXBException e) {
 
-            // send response
-            httpServletResponse.getWriter().println(json);
+                this.logger.error(e.getMessage(), e.getCause());
+                httpServletResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal Server Error: Error while rendering the results.");
+            }
         }
+        // Smile-Ausgabe mit Jackson
+        else if (format.equals("smile")) {
 
+            httpServletResponse.setContentType(SmileMapper.CONTENT_TYPE);
+            SmileMapper.WRITER.writeValue(httpServletResponse.getOutputStream(), result);
+        }
+        // JSON-Ausgabe mit Jackson
+        else {
+
+            this.writeJson(httpServletResponse, jsonWriter, result);
+        }
     }
 
-    private void sendRequestError(HttpServletResponse httpServletResponse, RequestError requestError, String format) {
+    /**
+     * Serializes the value once into UTF-8 bytes and writes them with the exact Content-Length to the
+     * response's OutputStream.
+     */
+    private void writeJson(HttpServletResponse httpServletResponse, ObjectWriter jsonWriter, Object value) throws IOException {
 
-        ObjectMapper mapper = new ObjectMapper();
+        byte[] json = jsonWriter.writeValueAsBytes(value);
 
-        httpServletResponse.setHeader("WWW-Authentificate", "Bearer");
-        httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
-        httpServletResponse.setContentType("application/json");
+        this.logger.debug(() -> new String(json, StandardCharsets.UTF_8));
 
-        try {
+        httpServletResponse.setContentType("application/json;charset=UTF-8");
+        httpServletResponse.setContentLength(json.length);
+        httpServletResponse.getOutputStream().write(json);
+    }
 
-            // XML-Ausgabe mit JAXB
-            if (format.equals("xml")) {
+    /**
+     * Sends the RequestError for the status code as configured in 'error.&lt;status&gt;', see {@link ErrorResponses}.
+     */
+    private void sendRequestError(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, int status, String format) {
 
-                try {
+        this.sendRequestError(httpServletRequest.getParameter("suppress_response_codes") != null, httpServletResponse, status, format);
+    }
 
-                    JAXBContext context = JAXBContext.newInstance(RequestError.class);
-                    Marshaller m = context.createMarshaller();
-                    m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+    /**
+     * @param suppressResponseCodes answer with 200, see {@link ServiceRequest#isSuppressResponseCodes()}
+     */
+    private void sendRequestError(boolean suppressResponseCodes, HttpServletResponse httpServletResponse, int status, String format) {
 
-                    // Write to HttpResponse
-                    httpServletResponse.setContentType("application/xml;charset=UTF-8");
-                    m.marshal(requestError, httpServletResponse.getWriter());
-                } catch (JAXBException e) {
-                    this.logger.error(e.getMessage(), e.getCause());
-                    httpServletResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal Server Error: Error while rendering the results.");
-                }
-            }
+        // Error handling mit suppress_response_codes=true
+        if (suppressResponseCodes) {
+            httpServletResponse.setStatus(HttpServletResponse.SC_OK);
+        }
+        // Error handling mit suppress_response_codes=false (=default)
+        else {
+            httpServletResponse.setStatus(status);
+        }
 
-            // JSON-Ausgabe mit Jackson
-            if (format.equals("json")) {
+        httpServletResponse.setHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setHeader("WWW-Authentificate", "Bearer realm=\"PAAA\"");
+        httpServletResponse.setContentType("application/json");
+
+        ErrorResponses.Body body = this.errorResponses.get(status, format);
+
+        try {
 
-                httpServletResponse.setContentType("application/json;charset=UTF-8");
-                mapper.writeValue(httpServletResponse.getWriter(), requestError);
+            if (body != null) {
+                body.write(httpServletResponse);
             }
         }
         catch (Exception e) {
@@ -24,8 +24,9 @@ SOFTWARE.
 
 package de.tu_dortmund.ub.api.paaa;
 
+import de.tu_dortmund.ub.util.impl.ConfigurationStore;
+import de.tu_dortmund.ub.util.impl.LogConfigurator;
 import org.apache.log4j.Logger;
-import org.apache.log4j.PropertyConfigurator;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.ServletContextHandler;
@@ -48,55 +49,44 @@ public class PaaaService {
             conffile = args[0];
         }
 
-        // Init properties
-        Properties config = new Properties();
-        try {
-            InputStream inputStream = new FileInputStream(conffile);
-
-            try {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-
-                try {
-                    config.load(reader);
-
-                } finally {
-                    reader.close();
-                }
-            }
-            finally {
-                inputStream.close();
-            }
-        }
-        catch (IOException e) {
-            System.out.println("FATAL ERROR: Die Datei '" + conffile + "' konnte nicht geöffnet werden!");
-        }
+        // Init properties: read once, shared with the endpoints (see ConfigurationStore)
+        Properties config = ConfigurationStore.of(conffile).get().getProperties();
 
         // init logger
-        PropertyConfigurator.configure(config.getProperty("service.log4j-conf"));
+        LogConfigurator.configure(config);
         Logger logger = Logger.getLogger(PaaaService.class.getName());
 
         logger.info("[" + config.getProperty("service.name") + "] " + "Starting '" + config.getProperty("service.name") + "' ...");
         logger.info("[" + config.getProperty("service.name") + "] " + "conf-file = " + conffile);
         logger.info("[" + config.getProperty("service.name") + "] " + "log4j-conf-file = " + config.getProperty("service.log4j-conf"));
 
-        // server
-        Server server = new Server(Integer.parseInt(config.getProperty("service.port")));
-
         ServletContextHandler context = new ServletContextHandler();
 
         ServletHolder holderHome = new ServletHolder("static-home", DefaultServlet.class);
         holderHome.setInitParameter("resourceBase", config.getProperty("service.resourceBase"));
+        // vorkomprimierte Varianten (*.gz) ausliefern, statt bei jedem Request zu komprimieren
+        holderHome.setInitParameter("gzip", config.getProperty("service.resource.gzip", "true"));
+        holderHome.setInitParameter("useFileMappedBuffer", config.getProperty("service.resource.file-mapped-buffer", "true"));
         context.addServlet(holderHome,"/*");
 
         context.setContextPath(config.getProperty("service.contextPath"));
 
-        server.setHandler(context);
-
         context.addServlet(new ServletHolder(new PingEndpoint(conffile)), config.getProperty("service.endpoint.ping"));
 
         context.addServlet(new ServletHolder(new HealthEndpoint(conffile)), config.getProperty("service.endpoint.health"));
 
-        context.addServlet(new ServletHolder(new PaaaEndpoint(conffile)), config.getProperty("service.endpoint") + "/*");
+        context.addServlet(new ServletHolder(new MetricsEndpoint()), config.getProperty("service.endpoint.metrics", "/metrics"));
+
+        // PAAA services run asynchronously on their own ILS worker threads
+        ServletHolder holderPaaa = new ServletHolder(new PaaaEndpoint(conffile));
+        holderPaaa.setAsyncSupported(true);
+        context.addServlet(holderPaaa, config.getProperty("service.endpoint") + "/*");
+
+        // server
+        Server server = ServerFactory.create(config, context);
+
+        // stop servlets (and with them the ILS connections) on SIGTERM
+        server.setStopAtShutdown(true);
 
         server.start();
         server.join();
@@ -1,10 +1,9 @@
 package de.tu_dortmund.ub.api.paaa;
 
-import de.tu_dortmund.ub.api.paaa.auth.AuthorizationInterface;
-import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
-import de.tu_dortmund.ub.util.impl.Lookup;
+import de.tu_dortmund.ub.util.impl.Configuration;
+import de.tu_dortmund.ub.util.impl.ConfigurationStore;
+import de.tu_dortmund.ub.util.impl.LogConfigurator;
 import org.apache.log4j.Logger;
-import org.apache.log4j.PropertyConfigurator;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -12,7 +11,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Properties;
 
 /**
@@ -21,7 +19,8 @@ import java.util.Properties;
 public class PingEndpoint extends HttpServlet {
 
     private String conffile  = "";
-    private Properties config = new Properties();
+    private Properties config;
+    private ConfigurationStore configurationStore;
     private Logger logger = Logger.getLogger(PingEndpoint.class.getName());
 
     public PingEndpoint() throws IOException {
@@ -33,82 +32,68 @@ public class PingEndpoint extends HttpServlet {
 
         this.conffile = conffile;
 
-        // Init properties
-        try {
-            InputStream inputStream = new FileInputStream(this.conffile);
-
-            try {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-
-                try {
-                    this.config.load(reader);
-
-                } finally {
-                    reader.close();
-                }
-            }
-            finally {
-                inputStream.close();
-            }
-        }
-        catch (IOException e) {
-            System.out.println("FATAL ERROR: Die Datei '" + this.conffile + "' konnte nicht geöffnet werden!");
-        }
+        // Init properties (shared snapshot, see ConfigurationStore)
+        this.configurationStore = ConfigurationStore.of(this.conffile);
+        this.config = this.configurationStore.get().getProperties();
 
         // init logger
-        PropertyConfigurator.configure(this.config.getProperty("service.log4j-conf"));
+        LogConfigurator.configure(this.config);
 
         this.logger.info("Starting 'PingEndpoint' ...");
         this.logger.info("conf-file = " + this.conffile);
         this.logger.info("log4j-conf-file = " + this.config.getProperty("service.log4j-conf"));
+
+        // init ILS and Authorization Service once
+        ServiceProviders.init(this.configurationStore);
+
+        // dependencies are checked in the background
+        HealthMonitor.init(this.config);
     }
 
-    public void doOptions(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+    /**
+     * Releases the health monitor, ILS and Authorization Service when the servlet context shuts down.
+     */
+    public void destroy() {
 
-        response.setHeader("Access-Control-Allow-Methods", config.getProperty("Access-Control-Allow-Methods"));
-        response.addHeader("Access-Control-Allow-Headers", config.getProperty("Access-Control-Allow-Headers"));
-        response.setHeader("Accept", config.getProperty("Accept"));
-        response.setHeader("Access-Control-Allow-Origin", config.getProperty("Access-Control-Allow-Origin"));
+        this.logger.info("Stopping 'PingEndpoint' ...");
 
-        response.getWriter().println();
+        HealthMonitor.release();
+        ServiceProviders.shutdown();
+
+        super.destroy();
     }
 
-    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+    public void doOptions(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-        response.setHeader("Access-Control-Allow-Origin", config.getProperty("Access-Control-Allow-Origin"));
-        response.setHeader("Cache-Control", config.getProperty("Cache-Control"));
+        Configuration configuration = this.configurationStore.get();
 
-        try {
+        response.setHeader("Access-Control-Allow-Methods", configuration.getAccessControlAllowMethods());
+        response.addHeader("Access-Control-Allow-Headers", configuration.getAccessControlAllowHeaders());
+        response.setHeader("Accept", configuration.getAccept());
+        response.setHeader("Access-Control-Allow-Origin", configuration.getAccessControlAllowOrigin());
 
-            HashMap<String,String> health = null;
+        response.getWriter().println();
+    }
 
-            // Wenn via META-INF/services eine Implementierung zum interface "IntegratedLibrarySystem" erfolgt ist, dann frage das System ab.
-            if (Lookup.lookupAll(IntegratedLibrarySystem.class).size() > 0) {
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-                IntegratedLibrarySystem integratedLibrarySystem = Lookup.lookup(IntegratedLibrarySystem.class);
-                // init ILS
-                integratedLibrarySystem.init(this.config);
+        Configuration configuration = this.configurationStore.get();
 
-                health = integratedLibrarySystem.health(this.config);
-            }
-            // OAuth 2.0
-            if (Lookup.lookupAll(AuthorizationInterface.class).size() > 0) {
+        response.setHeader("Access-Control-Allow-Origin", configuration.getAccessControlAllowOrigin());
+        response.setHeader("Cache-Control", configuration.getCacheControl());
 
-                AuthorizationInterface authorizationInterface = Lookup.lookup(AuthorizationInterface.class);
-                // init Authorization Service
-                authorizationInterface.init(this.config);
+        try {
 
-                if (health == null) {
+            // latest result of the background checks
+            HealthMonitor.Snapshot snapshot = HealthMonitor.latest();
 
-                    health = authorizationInterface.health(this.config);
-                }
-                else {
+            if (!snapshot.isCurrent()) {
 
-                    health.putAll(authorizationInterface.health(this.config));
-                }
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setContentType("text/plain;charset=UTF-8");
+                response.getWriter().println("Could not check system health!");
             }
-
-            if (health.containsValue("failed")) {
+            else if (!snapshot.isHealthy()) {
 
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
                 response.setContentType("text/plain;charset=UTF-8");
@@ -0,0 +1,180 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket rate limits per client (remote address) and PAAA service.
+ *
+ * The limit is checked before the access token is validated, so it must not be keyed on the token: a client sending
+ * random tokens would get a new bucket with every request. Behind a reverse proxy the remote address is the proxy's
+ * unless 'server.forwarded' is set, see {@link ServerFactory}.
+ *
+ * Each bucket is a single AtomicLong holding the theoretical arrival time of the next request (GCRA), updated
+ * with compare-and-set, so checking a request takes no lock. A bucket whose arrival time has passed is full and
+ * equivalent to a new one; such idle buckets are evicted every 'ratelimit.eviction-interval' milliseconds.
+ *
+ * <pre>
+ * ratelimit.rate                   requests per second and client (default: 0, unlimited)
+ * ratelimit.burst                  requests a client may send at once (default: ratelimit.rate, at least 1)
+ * ratelimit.&lt;service&gt;.rate       the same for a single service, e.g. 'ratelimit.newfee.rate' or 'ratelimit.bulk/newpatron.rate'
+ * ratelimit.&lt;service&gt;.burst
+ * ratelimit.eviction-interval      milliseconds between two sweeps for idle buckets (default: 60000)
+ * </pre>
+ */
+public class RateLimiter {
+
+    public static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static final Limit UNLIMITED = new Limit(0, 0);
+
+    private final Properties config;
+
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    public RateLimiter(Properties config) {
+
+        this.config = config;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "ratelimit-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long evictionInterval = Long.parseLong(config.getProperty("ratelimit.eviction-interval", "60000"));
+
+        if (evictionInterval > 0) {
+
+            this.evictor.scheduleWithFixedDelay(this::evict, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the remote address of the request for the service.
+     *
+     * @return 0 if the request may pass, otherwise the milliseconds until the next request of the client is allowed
+     */
+    public long acquire(HttpServletRequest request, String service) {
+
+        return this.acquire(request.getRemoteAddr(), service);
+    }
+
+    /**
+     * Takes a token from the bucket of the client for the service.
+     *
+     * @return 0 if the request may pass, otherwise the milliseconds until the next request of the client is allowed
+     */
+    public long acquire(String client, String service) {
+
+        Limit limit = this.limits.computeIfAbsent(service, this::limit);
+
+        if (limit.interval == 0) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        AtomicLong bucket = this.buckets.computeIfAbsent(client + " " + service, key -> new AtomicLong(now));
+
+        while (true) {
+
+            long tat = bucket.get();
+            long allowedAt = Math.max(tat, now) - limit.tolerance;
+
+            if (allowedAt > now) {
+                return TimeUnit.NANOSECONDS.toMillis(allowedAt - now) + 1;
+            }
+
+            if (bucket.compareAndSet(tat, Math.max(tat, now) + limit.interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Removes the buckets which are full again.
+     */
+    public void evict() {
+
+        long now = System.nanoTime();
+
+        this.buckets.entrySet().removeIf(entry -> entry.getValue().get() - now <= 0);
+    }
+
+    public int size() {
+
+        return this.buckets.size();
+    }
+
+    public void shutdown() {
+
+        this.evictor.shutdownNow();
+    }
+
+    private Limit limit(String service) {
+
+        double rate = Double.parseDouble(this.config.getProperty("ratelimit." + service + ".rate", this.config.getProperty("ratelimit.rate", "0")));
+
+        if (rate <= 0) {
+            return UNLIMITED;
+        }
+
+        String burst = this.config.getProperty("ratelimit." + service + ".burst", this.config.getProperty("ratelimit.burst", Long.toString(Math.round(Math.ceil(rate)))));
+
+        long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+
+        return new Limit(interval, interval * (Math.max(1, Long.parseLong(burst)) - 1));
+    }
+
+    private static final class Limit {
+
+        /**
+         * nanoseconds between two requests at the configured rate
+         */
+        private final long interval;
+
+        /**
+         * nanoseconds a client may be ahead of the rate, i.e. (burst - 1) * interval
+         */
+        private final long tolerance;
+
+        private Limit(long interval, long tolerance) {
+
+            this.interval = interval;
+            this.tolerance = tolerance;
+        }
+    }
+}
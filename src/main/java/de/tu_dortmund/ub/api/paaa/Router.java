@@ -0,0 +1,283 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.tu_dortmund.ub.api.paaa.ils.ILSException;
+import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Route table of the {@link PaaaEndpoint}, built once at startup: maps HTTP method and path to a {@link Route}.
+ *
+ * Paths have the form '/{patronid}/{service}', '/{patronid}' (the default service of the method) or
+ * '/bulk/{service}'. They are parsed with indexOf instead of String.split; the placeholder 'patronid' stands for
+ * an empty patron id.
+ */
+public class Router {
+
+    /**
+     * The ILS work of a route.
+     *
+     * @param <B> type of the request body, Void if the route has none
+     */
+    public interface Handler<B> {
+
+        /**
+         * @return the result written with the route's writer, <code>null</code> if the ILS did not answer (503)
+         */
+        Object handle(IntegratedLibrarySystem integratedLibrarySystem, String patronid, B body) throws ILSException;
+    }
+
+    /**
+     * A PAAA service: its body type, whether it needs a valid token, how its result is written and its handler.
+     */
+    public static final class Route<B> {
+
+        private final String method;
+        private final String service;
+        private final String name;
+        private final boolean tokenRequired;
+        private final Class<B> bodyType;
+        private final ObjectReader reader;
+        private final ObjectReader smileReader;
+        private final ObjectWriter writer;
+        private final Handler<B> handler;
+
+        private Route(String method, String service, String name, boolean tokenRequired, Class<B> bodyType, ObjectWriter writer, Handler<B> handler) {
+
+            this.method = method;
+            this.service = service;
+            this.name = name;
+            this.tokenRequired = tokenRequired;
+            this.bodyType = bodyType;
+            this.reader = bodyType != null && bodyType != Void.class ? JsonMapper.MAPPER.reader(bodyType) : null;
+            this.smileReader = this.reader != null ? SmileMapper.MAPPER.reader(bodyType) : null;
+            this.writer = writer;
+            this.handler = handler;
+        }
+
+        public String getMethod() {
+
+            return method;
+        }
+
+        /**
+         * @return the PAAA service, also for bulk routes (e.g. 'newpatron'); tokens are checked for it
+         */
+        public String getService() {
+
+            return service;
+        }
+
+        /**
+         * @return the name of the route for logs and metrics, e.g. 'newpatron' or 'bulk/newpatron'
+         */
+        public String getName() {
+
+            return name;
+        }
+
+        public boolean isTokenRequired() {
+
+            return tokenRequired;
+        }
+
+        /**
+         * @return true for GET: the route only reads, its results may be cached and validated by ETag
+         */
+        public boolean isReadOnly() {
+
+            return "GET".equals(this.method);
+        }
+
+        public boolean isBulk() {
+
+            return this.handler == null;
+        }
+
+        /**
+         * @return type of the request body, Void if the route reads none
+         */
+        public Class<B> getBodyType() {
+
+            return bodyType;
+        }
+
+        /**
+         * @return the reader for the request body, <code>null</code> if the route reads none
+         */
+        public ObjectReader getReader() {
+
+            return reader;
+        }
+
+        /**
+         * @return the reader for a Smile request body, <code>null</code> if the route reads none
+         */
+        public ObjectReader getSmileReader() {
+
+            return smileReader;
+        }
+
+        /**
+         * @return the writer for JSON results; Smile results are written by {@link SmileMapper#WRITER}
+         */
+        public ObjectWriter getWriter() {
+
+            return writer;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Object handle(IntegratedLibrarySystem integratedLibrarySystem, String patronid, Object body) throws ILSException {
+
+            return this.handler.handle(integratedLibrarySystem, patronid, (B) body);
+        }
+    }
+
+    /**
+     * Result of {@link #match(String, String)}; the route is <code>null</code> if the service is not offered for
+     * the method.
+     */
+    public static final class Match {
+
+        private final Route<?> route;
+        private final String patronid;
+        private final String service;
+
+        private Match(Route<?> route, String patronid, String service) {
+
+            this.route = route;
+            this.patronid = patronid;
+            this.service = service;
+        }
+
+        public Route<?> getRoute() {
+
+            return route;
+        }
+
+        public String getPatronid() {
+
+            return patronid;
+        }
+
+        public String getService() {
+
+            return service;
+        }
+    }
+
+    private static final String BULK = "bulk";
+
+    private final Map<String, Map<String, Route<?>>> routes = new HashMap<>();
+    private final Map<String, Map<String, Route<?>>> bulkRoutes = new HashMap<>();
+    private final Map<String, String> defaultServices = new HashMap<>();
+
+    /**
+     * Adds the route '/{patronid}/{service}'.
+     */
+    public <B> Router route(String method, String service, boolean tokenRequired, Class<B> bodyType, ObjectWriter writer, Handler<B> handler) {
+
+        this.routes.computeIfAbsent(method, key -> new HashMap<>()).put(service, new Route<>(method, service, service, tokenRequired, bodyType, writer, handler));
+
+        return this;
+    }
+
+    /**
+     * Adds the route '/bulk/{service}', processed by {@link BulkPatronImport}.
+     */
+    public Router bulk(String method, String service) {
+
+        this.bulkRoutes.computeIfAbsent(method, key -> new HashMap<>()).put(service, new Route<Void>(method, service, BULK + "/" + service, true, Void.class, null, null));
+
+        return this;
+    }
+
+    /**
+     * Sets the service for '/{patronid}', e.g. 'deletepatron' for DELETE.
+     */
+    public Router defaultService(String method, String service) {
+
+        this.defaultServices.put(method, service);
+
+        return this;
+    }
+
+    public Match match(String method, String path) {
+
+        if (path == null) {
+            path = "";
+        }
+
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.length();
+
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+
+        int slash = path.indexOf('/', start);
+
+        // '/{patronid}'
+        if (slash < 0 || slash >= end) {
+
+            String service = this.defaultServices.getOrDefault(method, "patron");
+
+            return new Match(lookup(this.routes, method, service), patronid(path.substring(start, end)), service);
+        }
+
+        // more than two segments
+        if (path.indexOf('/', slash + 1) >= 0 && path.indexOf('/', slash + 1) < end) {
+
+            return new Match(null, "", "");
+        }
+
+        String service = path.substring(slash + 1, end);
+
+        // '/bulk/{service}'
+        if (slash - start == BULK.length() && path.startsWith(BULK, start)) {
+
+            return new Match(lookup(this.bulkRoutes, method, service), "", service);
+        }
+
+        return new Match(lookup(this.routes, method, service), patronid(path.substring(start, slash)), service);
+    }
+
+    private static Route<?> lookup(Map<String, Map<String, Route<?>>> routes, String method, String service) {
+
+        Map<String, Route<?>> services = routes.get(method);
+
+        return services != null ? services.get(service) : null;
+    }
+
+    private static String patronid(String patronid) {
+
+        return patronid.equals("patronid") ? "" : patronid;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.util.impl.ServiceLogger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers requests with 503 as long as too many jobs wait for a Jetty thread, instead of letting them queue up
+ * until the client gives up. Ping and health stay available.
+ */
+public class SaturationHandler extends HandlerWrapper {
+
+    private final Properties config;
+    private final ServiceLogger logger;
+
+    private final QueuedThreadPool threadPool;
+    private final int maxQueued;
+    private final String retryAfter;
+    private final String pingPath;
+    private final String healthPath;
+    private final ErrorResponses.Body body;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public SaturationHandler(Properties config, QueuedThreadPool threadPool, int maxQueued) {
+
+        this.config = config;
+        this.logger = ServiceLogger.getLogger(SaturationHandler.class, config.getProperty("service.name"));
+        this.threadPool = threadPool;
+        this.maxQueued = maxQueued;
+        this.retryAfter = config.getProperty("server.saturation.retry-after", "1");
+
+        String contextPath = config.getProperty("service.contextPath", "");
+        if (contextPath.endsWith("/")) {
+            contextPath = contextPath.substring(0, contextPath.length() - 1);
+        }
+        this.pingPath = contextPath + config.getProperty("service.endpoint.ping");
+        this.healthPath = contextPath + config.getProperty("service.endpoint.health");
+
+        this.body = new ErrorResponses(config).get(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "json");
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+
+        if (this.threadPool.getQueueSize() < this.maxQueued || target.equals(this.pingPath) || target.equals(this.healthPath)) {
+
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        if (this.rejected.getAndIncrement() % 100 == 0) {
+            this.logger.error("{}: Server saturated, {} jobs queued!", HttpServletResponse.SC_SERVICE_UNAVAILABLE, this.threadPool.getQueueSize());
+        }
+
+        baseRequest.setHandled(true);
+
+        // Error handling mit suppress_response_codes=true
+        if (request.getParameter("suppress_response_codes") != null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        // Error handling mit suppress_response_codes=false (=default)
+        else {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+
+        response.setHeader("Retry-After", this.retryAfter);
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        this.body.write(response);
+    }
+
+    /**
+     * @return number of requests answered with 503 so far
+     */
+    public long getRejected() {
+
+        return this.rejected.get();
+    }
+}
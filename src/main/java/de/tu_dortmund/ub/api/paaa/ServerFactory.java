@@ -0,0 +1,176 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.util.impl.MetricsRegistry;
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.ForwardedRequestCustomizer;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+/**
+ * Builds the Jetty server from 'paaa.properties':
+ *
+ * <pre>
+ * service.port                     HTTP port
+ * server.threads.max               maximum number of Jetty threads (default: 200)
+ * server.threads.min               minimum number of Jetty threads (default: 8)
+ * server.threads.idle-timeout      milliseconds until an idle thread stops (default: 60000)
+ * server.threads.queue-size        jobs waiting for a thread; beyond that Jetty rejects connections (default: 1000)
+ * server.acceptors                 acceptor threads (default: -1, Jetty chooses by number of CPUs)
+ * server.selectors                 selector threads (default: -1, Jetty chooses by number of CPUs)
+ * server.idle-timeout              milliseconds until an idle connection is closed (default: 30000)
+ * server.accept-queue              TCP backlog of the server socket (default: 0, OS default)
+ * server.output-buffer-size        response buffer in bytes (default: 32768)
+ * server.http2c                    also accept HTTP/2 cleartext (h2c) on the port (default: false)
+ * server.forwarded                 take client address, host and scheme from the 'X-Forwarded-*' headers of a
+ *                                  reverse proxy (default: false); only behind a proxy which overwrites them
+ * server.saturation.max-queued     queued jobs from which requests are answered with 503 (default: 500, 0 = off)
+ * server.saturation.retry-after    seconds for the 'Retry-After' header of such a 503 (default: 1)
+ * server.gzip.enabled              compress responses if the client accepts gzip (default: true)
+ * server.gzip.min-size             bytes from which a response is compressed (default: 1024)
+ * server.gzip.mime-types           compressed content types (default: JSON, XML, NDJSON, HTML, CSS, JavaScript
+ *                                  and plain text; not Smile)
+ * server.gzip.methods              compressed request methods (default: GET,POST)
+ * server.gzip.level                deflate level 1..9 (default: -1, i.e. 6)
+ * </pre>
+ *
+ * All requests, including the ones rejected with 503, are counted by the {@link MetricsHandler}.
+ */
+public final class ServerFactory {
+
+    private static final String GZIP_MIME_TYPES = "application/json,application/xml," + BulkPatronImport.CONTENT_TYPE
+            + ",text/html,text/css,application/javascript,text/plain";
+
+    private static Logger logger = Logger.getLogger(ServerFactory.class.getName());
+
+    private ServerFactory() {
+    }
+
+    /**
+     * @param config
+     * @param handler the servlet context
+     * @return the configured, not yet started server
+     */
+    public static Server create(Properties config, Handler handler) {
+
+        int maxThreads = Integer.parseInt(config.getProperty("server.threads.max", "200"));
+        int minThreads = Integer.parseInt(config.getProperty("server.threads.min", "8"));
+        int threadIdleTimeout = Integer.parseInt(config.getProperty("server.threads.idle-timeout", "60000"));
+        int queueSize = Integer.parseInt(config.getProperty("server.threads.queue-size", "1000"));
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, threadIdleTimeout, new BlockingArrayQueue<>(queueSize));
+        threadPool.setName("paaa");
+
+        Server server = new Server(threadPool);
+
+        HttpConfiguration httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setOutputBufferSize(Integer.parseInt(config.getProperty("server.output-buffer-size", "32768")));
+
+        // behind a reverse proxy: otherwise all clients share the proxy's address, e.g. for the rate limits
+        if (Boolean.parseBoolean(config.getProperty("server.forwarded", "false"))) {
+            httpConfiguration.addCustomizer(new ForwardedRequestCustomizer());
+        }
+
+        ConnectionFactory[] connectionFactories;
+        if (Boolean.parseBoolean(config.getProperty("server.http2c", "false"))) {
+            connectionFactories = new ConnectionFactory[] { new HttpConnectionFactory(httpConfiguration), new HTTP2CServerConnectionFactory(httpConfiguration) };
+        }
+        else {
+            connectionFactories = new ConnectionFactory[] { new HttpConnectionFactory(httpConfiguration) };
+        }
+
+        int acceptors = Integer.parseInt(config.getProperty("server.acceptors", "-1"));
+        int selectors = Integer.parseInt(config.getProperty("server.selectors", "-1"));
+
+        ServerConnector connector = new ServerConnector(server, acceptors, selectors, connectionFactories);
+        connector.setPort(Integer.parseInt(config.getProperty("service.port")));
+        connector.setIdleTimeout(Long.parseLong(config.getProperty("server.idle-timeout", "30000")));
+        connector.setAcceptQueueSize(Integer.parseInt(config.getProperty("server.accept-queue", "0")));
+        server.addConnector(connector);
+
+        MetricsHandler metricsHandler = new MetricsHandler();
+        server.setHandler(metricsHandler);
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        metricsRegistry.gauge("paaa_server_threads", "Jetty threads", threadPool::getThreads);
+        metricsRegistry.gauge("paaa_server_threads_idle", "Idle Jetty threads", threadPool::getIdleThreads);
+        metricsRegistry.gauge("paaa_server_queued", "Jobs waiting for a Jetty thread", threadPool::getQueueSize);
+
+        if (Boolean.parseBoolean(config.getProperty("server.gzip.enabled", "true"))) {
+
+            GzipHandler gzipHandler = gzipHandler(config);
+            gzipHandler.setHandler(handler);
+            handler = gzipHandler;
+        }
+
+        int maxQueued = Integer.parseInt(config.getProperty("server.saturation.max-queued", "500"));
+        if (maxQueued > 0) {
+
+            SaturationHandler saturationHandler = new SaturationHandler(config, threadPool, maxQueued);
+            saturationHandler.setHandler(handler);
+            metricsHandler.setHandler(saturationHandler);
+
+            metricsRegistry.gauge("paaa_server_rejected_total", "Requests rejected with 503 because the server is saturated", saturationHandler::getRejected);
+        }
+        else {
+
+            metricsHandler.setHandler(handler);
+        }
+
+        logger.info("[" + config.getProperty("service.name") + "] " + "threads = " + minThreads + ".." + maxThreads + " (queue " + queueSize + ")"
+                + ", acceptors = " + connector.getAcceptors() + ", selectors = " + connector.getSelectorManager().getSelectorCount()
+                + ", h2c = " + config.getProperty("server.http2c", "false")
+                + ", gzip = " + config.getProperty("server.gzip.enabled", "true"));
+
+        return server;
+    }
+
+    /**
+     * Compression of responses. Jetty's GzipHandler only negotiates gzip; clients accepting only 'deflate' get
+     * uncompressed responses. Precompressed static files (*.gz) are served by the DefaultServlet itself.
+     */
+    private static GzipHandler gzipHandler(Properties config) {
+
+        GzipHandler gzipHandler = new GzipHandler();
+        gzipHandler.setMinGzipSize(Integer.parseInt(config.getProperty("server.gzip.min-size", "1024")));
+        gzipHandler.setCompressionLevel(Integer.parseInt(config.getProperty("server.gzip.level", Integer.toString(Deflater.DEFAULT_COMPRESSION))));
+        gzipHandler.setIncludedMethods(config.getProperty("server.gzip.methods", "GET,POST").split("\\s*,\\s*"));
+        gzipHandler.setIncludedMimeTypes(config.getProperty("server.gzip.mime-types", GZIP_MIME_TYPES).split("\\s*,\\s*"));
+
+        return gzipHandler;
+    }
+}
@@ -0,0 +1,386 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.util.impl.ServiceLogger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs PAAA services asynchronously (Servlet 3.1) on a dedicated thread pool, so that slow ILS calls do not
+ * block Jetty's worker threads.
+ *
+ * The service writes straight to the response, without buffering, through a {@link GuardedResponse}: whoever
+ * touches the response first - the service once its ILS call is done, or its timeout - answers the request and
+ * completes it. Configuration in 'paaa.properties':
+ *
+ * <pre>
+ * ils.executor.threads     threads for ILS calls (default: 16)
+ * ils.executor.queue-size  requests waiting for a thread; beyond that the service answers 503 (default: 100)
+ * ils.timeout              milliseconds until the service answers 504 (default: 30000)
+ * ils.timeout.&lt;service&gt;  timeout for a single service, e.g. 'ils.timeout.newpatron'
+ * </pre>
+ */
+public class ServiceExecutor {
+
+    /**
+     * The work to be done for one request. It gets only the response: after a timeout the request is completed and
+     * recycled by Jetty while the service may still be running, so everything it needs from the request has to be
+     * read before, see {@link ServiceRequest}.
+     */
+    public interface Service {
+
+        void provide(HttpServletResponse httpServletResponse) throws IOException;
+    }
+
+    /**
+     * Writes the error response (503, 504) for a request.
+     */
+    public interface ErrorHandler {
+
+        void sendError(HttpServletResponse httpServletResponse, int status) throws IOException;
+    }
+
+    private final Properties config;
+    private final ServiceLogger logger;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+    private final long defaultTimeout;
+    private final Map<String, Long> timeouts = new HashMap<>();
+
+    public ServiceExecutor(Properties config) {
+
+        this.config = config;
+        this.logger = ServiceLogger.getLogger(ServiceExecutor.class, config.getProperty("service.name"));
+
+        int threads = Integer.parseInt(config.getProperty("ils.executor.threads", "16"));
+        int queueSize = Integer.parseInt(config.getProperty("ils.executor.queue-size", "100"));
+        this.defaultTimeout = Long.parseLong(config.getProperty("ils.timeout", "30000"));
+
+        // 'ils.timeout.<service>' einmal lesen statt bei jedem Request
+        for (String key : config.stringPropertyNames()) {
+            if (key.startsWith("ils.timeout.")) {
+                this.timeouts.put(key.substring("ils.timeout.".length()), Long.parseLong(config.getProperty(key).trim()));
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+
+            Thread thread = new Thread(runnable, "ils-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+
+            Thread thread = new Thread(runnable, "ils-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // most timeouts are cancelled long before they are due
+        timer.setRemoveOnCancelPolicy(true);
+        this.timer = timer;
+    }
+
+    /**
+     * @param service name of the PAAA service
+     * @return timeout in milliseconds
+     */
+    public long getTimeout(String service) {
+
+        Long timeout = this.timeouts.get(service);
+
+        return timeout != null ? timeout : this.defaultTimeout;
+    }
+
+    /**
+     * Provides the service asynchronously. Falls back to the calling thread if the request does not support
+     * async processing.
+     */
+    public void execute(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String service, Service task, ErrorHandler errorHandler) throws IOException {
+
+        if (!httpServletRequest.isAsyncSupported()) {
+
+            task.provide(httpServletResponse);
+            return;
+        }
+
+        AsyncContext asyncContext = httpServletRequest.startAsync(httpServletRequest, httpServletResponse);
+        asyncContext.setTimeout(0); // timeouts are handled by 'ils-timeout'
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        GuardedResponse guardedResponse = new GuardedResponse(httpServletResponse, done);
+        Future<?> future;
+
+        try {
+
+            future = this.executor.submit(() -> {
+
+                try {
+
+                    task.provide(guardedResponse);
+                }
+                catch (Exception e) {
+
+                    this.logger.error("Service '{}' failed: {}", service, e.getMessage(), e);
+
+                    if (!guardedResponse.isCommitted()) {
+
+                        guardedResponse.reset();
+                        this.sendError(errorHandler, guardedResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                }
+
+                // false if the timeout or a client error has completed the request
+                if (guardedResponse.claim()) {
+                    asyncContext.complete();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+
+            this.logger.error("{}: No free ILS worker for '{}'!", HttpServletResponse.SC_SERVICE_UNAVAILABLE, service);
+
+            done.set(true);
+            try {
+
+                this.sendError(errorHandler, httpServletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+            finally {
+
+                asyncContext.complete();
+            }
+            return;
+        }
+
+        long timeout = this.getTimeout(service);
+        ScheduledFuture<?> timeoutFuture = this.timer.schedule(() -> {
+
+            if (done.compareAndSet(false, true)) {
+
+                this.logger.error("{}: '{}' took longer than {} ms!", HttpServletResponse.SC_GATEWAY_TIMEOUT, service, timeout);
+
+                future.cancel(true);
+
+                try {
+
+                    this.sendError(errorHandler, httpServletResponse, HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                }
+                finally {
+
+                    asyncContext.complete();
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        asyncContext.addListener(new AsyncListener() {
+
+            @Override
+            public void onComplete(AsyncEvent asyncEvent) {
+
+                timeoutFuture.cancel(false);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent asyncEvent) {
+            }
+
+            @Override
+            public void onError(AsyncEvent asyncEvent) {
+
+                // client gone
+                if (done.compareAndSet(false, true)) {
+
+                    future.cancel(true);
+                    timeoutFuture.cancel(false);
+                    asyncContext.complete();
+                }
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent asyncEvent) {
+            }
+        });
+    }
+
+    /**
+     * Answers the request with the response of another execution of the same service, e.g. a duplicate request with
+     * the same 'Idempotency-Key'. Waits asynchronously, without occupying an ILS worker; answers 504 if the
+     * execution does not finish within the timeout of the service and 500 if it failed.
+     */
+    public void await(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String service, CompletableFuture<BufferedResponse> execution, ErrorHandler errorHandler) throws IOException {
+
+        long timeout = this.getTimeout(service);
+
+        if (!httpServletRequest.isAsyncSupported() || execution.isDone()) {
+
+            BufferedResponse bufferedResponse;
+
+            try {
+
+                bufferedResponse = execution.get(timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e) {
+
+                this.sendError(errorHandler, httpServletResponse, HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                return;
+            }
+            catch (InterruptedException | ExecutionException e) {
+
+                bufferedResponse = null;
+            }
+
+            if (bufferedResponse != null) {
+                bufferedResponse.replay(httpServletResponse);
+            }
+            else {
+                this.sendError(errorHandler, httpServletResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+
+            return;
+        }
+
+        AsyncContext asyncContext = httpServletRequest.startAsync(httpServletRequest, httpServletResponse);
+        asyncContext.setTimeout(0); // timeouts are handled by 'ils-timeout'
+
+        AtomicBoolean done = new AtomicBoolean(false);
+
+        ScheduledFuture<?> timeoutFuture = this.timer.schedule(() -> {
+
+            if (done.compareAndSet(false, true)) {
+
+                this.logger.error("{}: '{}' (duplicate) took longer than {} ms!", HttpServletResponse.SC_GATEWAY_TIMEOUT, service, timeout);
+
+                try {
+
+                    this.sendError(errorHandler, httpServletResponse, HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                }
+                finally {
+
+                    asyncContext.complete();
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        execution.whenComplete((bufferedResponse, throwable) -> {
+
+            if (done.compareAndSet(false, true)) {
+
+                timeoutFuture.cancel(false);
+
+                try {
+
+                    if (bufferedResponse != null) {
+                        bufferedResponse.replay(httpServletResponse);
+                    }
+                    else {
+                        this.sendError(errorHandler, httpServletResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                }
+                catch (IOException e) {
+
+                    this.logger.error("Writing the response failed: {}", e.getMessage());
+                }
+                finally {
+
+                    asyncContext.complete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the thread pool; running services are interrupted.
+     */
+    public void shutdown() {
+
+        this.timer.shutdownNow();
+        this.executor.shutdown();
+
+        try {
+
+            if (!this.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of ILS workers currently busy
+     */
+    public int getActive() {
+
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * @return number of requests waiting for an ILS worker
+     */
+    public int getQueued() {
+
+        return this.executor.getQueue().size();
+    }
+
+    private void sendError(ErrorHandler errorHandler, HttpServletResponse httpServletResponse, int status) {
+
+        try {
+
+            errorHandler.sendError(httpServletResponse, status);
+        }
+        catch (IOException e) {
+
+            this.logger.error("Writing the response failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.auth.AuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.auth.CachingAuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.auth.TimedAuthorizationInterface;
+import de.tu_dortmund.ub.api.paaa.ils.CachingIntegratedLibrarySystem;
+import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
+import de.tu_dortmund.ub.api.paaa.ils.ResilientIntegratedLibrarySystem;
+import de.tu_dortmund.ub.api.paaa.ils.TimedIntegratedLibrarySystem;
+import de.tu_dortmund.ub.util.impl.Configuration;
+import de.tu_dortmund.ub.util.impl.ConfigurationStore;
+import de.tu_dortmund.ub.util.impl.MetricsRegistry;
+import de.tu_dortmund.ub.util.impl.ProviderRegistry;
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Access to the configured 'IntegratedLibrarySystem' and 'AuthorizationInterface' implementations.
+ *
+ * The implementations are looked up and initialized once by {@link #init(ConfigurationStore)}; the first caller
+ * wins, later calls return immediately. Every caller, i.e. every servlet, calls {@link #shutdown()} when it is
+ * destroyed; the last one stops the implementations. When keys of the implementations ('ils.*', 'auth.*') change in the
+ * configuration file, both implementations are looked up and initialized again with the new snapshot, see
+ * {@link ProviderRegistry#reload()}; other changes, e.g. of error texts, keep them and their caches and circuit
+ * breakers. Token checks are cached by a {@link CachingAuthorizationInterface}. The ILS is started via
+ * {@link IntegratedLibrarySystem#start(Properties)} and stopped after a reload resp. {@link #shutdown()} once the
+ * calls in progress have returned, see {@link #acquireIntegratedLibrarySystem()}. Both implementations are timed, see
+ * {@link TimedIntegratedLibrarySystem} and {@link TimedAuthorizationInterface}. ILS calls go through circuit breakers
+ * and bulkheads, see {@link ResilientIntegratedLibrarySystem}, patron reads are cached by a
+ * {@link CachingIntegratedLibrarySystem}.
+ *
+ * Operators can force a reload, e.g. after an implementation jar has been replaced or with
+ * 'service.config.watch = false', by the JMX operation 'reload' of {@value #OBJECT_NAME}, see {@link #reload()}.
+ */
+public final class ServiceProviders {
+
+    public static final String OBJECT_NAME = "de.tu_dortmund.ub.api.paaa:type=ServiceProviders";
+
+    private static final Consumer<Configuration> RELOAD = ServiceProviders::reload;
+
+    // keys read by the implementations
+    private static final String[] PROVIDER_KEYS = { "ils.", "auth." };
+
+    private static ConfigurationStore configurationStore;
+    private static int users = 0;
+
+    // the snapshot the current implementations were initialized with
+    private static volatile Properties config;
+
+    private static Logger logger = Logger.getLogger(ServiceProviders.class.getName());
+
+    private ServiceProviders() {
+    }
+
+    /**
+     * Management interface, registered as {@value #OBJECT_NAME}.
+     */
+    public interface Management {
+
+        void reload();
+    }
+
+    public static synchronized void init(ConfigurationStore configurationStore) {
+
+        users++;
+
+        if (ServiceProviders.configurationStore != null) {
+            return;
+        }
+
+        ServiceProviders.configurationStore = configurationStore;
+        config = configurationStore.get().getProperties();
+
+        ProviderRegistry registry = ProviderRegistry.getInstance();
+
+        registry.register(IntegratedLibrarySystem.class, integratedLibrarySystem -> {
+
+            // a copy of its own, the adapter may add its defaults
+            Properties config = new Properties();
+            config.putAll(ServiceProviders.config);
+
+            integratedLibrarySystem.start(config);
+
+            integratedLibrarySystem = new TimedIntegratedLibrarySystem(integratedLibrarySystem);
+
+            // fail fast while the ILS is down unless disabled by 'ils.circuit.enabled = false'
+            if (Boolean.parseBoolean(config.getProperty("ils.circuit.enabled", "true"))) {
+
+                integratedLibrarySystem = new ResilientIntegratedLibrarySystem(integratedLibrarySystem, config);
+            }
+
+            // cache patron reads unless disabled by 'ils.cache.enabled = false'
+            if (Boolean.parseBoolean(config.getProperty("ils.cache.enabled", "true"))) {
+
+                integratedLibrarySystem = new CachingIntegratedLibrarySystem(integratedLibrarySystem, config);
+            }
+
+            return integratedLibrarySystem;
+        }, IntegratedLibrarySystem::stop);
+
+        registry.register(AuthorizationInterface.class, authorizationInterface -> {
+
+            Properties config = new Properties();
+            config.putAll(ServiceProviders.config);
+
+            authorizationInterface.init(config);
+
+            AuthorizationInterface timedAuthorizationInterface = new TimedAuthorizationInterface(authorizationInterface);
+
+            // cache token checks unless disabled by 'auth.cache.enabled = false'
+            if (Boolean.parseBoolean(config.getProperty("auth.cache.enabled", "true"))) {
+
+                return new CachingAuthorizationInterface(timedAuthorizationInterface, config);
+            }
+
+            return timedAuthorizationInterface;
+        });
+
+        // once, not per instance: the gauges read whichever cache is current (0 while disabled)
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        metricsRegistry.gauge("paaa_ils_cache_total", "Patron cache lookups by result", () -> ilsCache(CachingIntegratedLibrarySystem::getHits), "result", "hit");
+        metricsRegistry.gauge("paaa_ils_cache_total", "Patron cache lookups by result", () -> ilsCache(CachingIntegratedLibrarySystem::getMisses), "result", "miss");
+        metricsRegistry.gauge("paaa_ils_cache_invalidations_total", "Patron cache invalidations by writes", () -> ilsCache(CachingIntegratedLibrarySystem::getInvalidations));
+        metricsRegistry.gauge("paaa_ils_cache_size", "Cached patron reads", () -> ilsCache(CachingIntegratedLibrarySystem::size));
+        metricsRegistry.gauge("paaa_auth_cache_total", "Token cache lookups by result", () -> authCache(CachingAuthorizationInterface::getHits), "result", "hit");
+        metricsRegistry.gauge("paaa_auth_cache_total", "Token cache lookups by result", () -> authCache(CachingAuthorizationInterface::getMisses), "result", "miss");
+        metricsRegistry.gauge("paaa_auth_cache_size", "Cached token checks", () -> authCache(CachingAuthorizationInterface::size));
+
+        configurationStore.addListener(RELOAD);
+
+        try {
+
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(new StandardMBean(ServiceProviders::reload, Management.class), objectName);
+            }
+        }
+        catch (JMException e) {
+
+            logger.warn("registering '" + OBJECT_NAME + "' failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the ILS implementation or <code>null</code> if none is configured via META-INF/services
+     */
+    public static IntegratedLibrarySystem integratedLibrarySystem() {
+
+        return ProviderRegistry.getInstance().get(IntegratedLibrarySystem.class);
+    }
+
+    /**
+     * The ILS for the duration of a call: it is not stopped by a reload or shutdown before the lease is closed.
+     *
+     * @return a lease on the ILS implementation; {@link ProviderRegistry.Lease#get()} is <code>null</code> if none is
+     *         configured via META-INF/services
+     */
+    public static ProviderRegistry.Lease<IntegratedLibrarySystem> acquireIntegratedLibrarySystem() {
+
+        return ProviderRegistry.getInstance().acquire(IntegratedLibrarySystem.class);
+    }
+
+    /**
+     * @return the OAuth implementation or <code>null</code> if none is configured via META-INF/services
+     */
+    public static AuthorizationInterface authorizationInterface() {
+
+        return ProviderRegistry.getInstance().get(AuthorizationInterface.class);
+    }
+
+    /**
+     * Stops all implementations when the last caller of {@link #init(ConfigurationStore)} is done, e.g. when the
+     * servlet context is destroyed.
+     */
+    public static synchronized void shutdown() {
+
+        if (configurationStore == null || --users > 0) {
+            return;
+        }
+
+        configurationStore.removeListener(RELOAD);
+        configurationStore = null;
+
+        try {
+
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e) {
+
+            logger.warn("unregistering '" + OBJECT_NAME + "' failed: " + e.getMessage());
+        }
+
+        ProviderRegistry.getInstance().shutdown();
+    }
+
+    /**
+     * Operator hook: reads the configuration file again and looks up and initializes both implementations, even if
+     * their keys have not changed (e.g. after an implementation jar has been replaced).
+     */
+    public static synchronized void reload() {
+
+        if (configurationStore == null) {
+            return;
+        }
+
+        logger.info("reload requested, reloading ILS and Authorization Service");
+
+        Properties previous = config;
+
+        // reloads the implementations if their keys have changed
+        configurationStore.reload();
+
+        if (config == previous) {
+
+            config = configurationStore.get().getProperties();
+            ProviderRegistry.getInstance().reload();
+        }
+    }
+
+    /**
+     * Looks up and initializes both implementations again if their keys have changed in the configuration snapshot.
+     */
+    static synchronized void reload(Configuration configuration) {
+
+        if (configurationStore == null || providerProperties(configuration.getProperties()).equals(providerProperties(config))) {
+            return;
+        }
+
+        logger.info("configuration changed, reloading ILS and Authorization Service");
+
+        config = configuration.getProperties();
+        ProviderRegistry.getInstance().reload();
+    }
+
+    private static Map<String, String> providerProperties(Properties properties) {
+
+        Map<String, String> providerProperties = new TreeMap<>();
+
+        for (String key : properties.stringPropertyNames()) {
+
+            for (String prefix : PROVIDER_KEYS) {
+
+                if (key.startsWith(prefix)) {
+                    providerProperties.put(key, properties.getProperty(key));
+                }
+            }
+        }
+
+        return providerProperties;
+    }
+
+    private static long ilsCache(ToLongFunction<CachingIntegratedLibrarySystem> value) {
+
+        IntegratedLibrarySystem integratedLibrarySystem = integratedLibrarySystem();
+
+        return integratedLibrarySystem instanceof CachingIntegratedLibrarySystem ? value.applyAsLong((CachingIntegratedLibrarySystem) integratedLibrarySystem) : 0;
+    }
+
+    private static long authCache(ToLongFunction<CachingAuthorizationInterface> value) {
+
+        AuthorizationInterface authorizationInterface = authorizationInterface();
+
+        return authorizationInterface instanceof CachingAuthorizationInterface ? value.applyAsLong((CachingAuthorizationInterface) authorizationInterface) : 0;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+/**
+ * What a PAAA service needs from its request, read on the container thread before the service is handed over to the
+ * ILS worker threads, see {@link ServiceExecutor}.
+ *
+ * After a timeout (504) the request is completed and Jetty recycles it for the next one while the worker may still be
+ * running; the worker therefore must not touch the HttpServletRequest.
+ */
+public class ServiceRequest {
+
+    private final String baseurl;
+    private final Object body;
+    private final String redirectUri;
+    private final boolean suppressResponseCodes;
+    private final String ifNoneMatch;
+
+    public ServiceRequest(String baseurl, Object body, String redirectUri, boolean suppressResponseCodes, String ifNoneMatch) {
+
+        this.baseurl = baseurl;
+        this.body = body;
+        this.redirectUri = redirectUri;
+        this.suppressResponseCodes = suppressResponseCodes;
+        this.ifNoneMatch = ifNoneMatch;
+    }
+
+    /**
+     * @return server name and port
+     */
+    public String getBaseurl() {
+
+        return baseurl;
+    }
+
+    /**
+     * @return the parsed request body, <code>null</code> if the route has none
+     */
+    public Object getBody() {
+
+        return body;
+    }
+
+    /**
+     * @return the parameter 'redirect_uri', <code>null</code> if missing
+     */
+    public String getRedirectUri() {
+
+        return redirectUri;
+    }
+
+    /**
+     * @return true if errors are to be answered with 200 (parameter 'suppress_response_codes')
+     */
+    public boolean isSuppressResponseCodes() {
+
+        return suppressResponseCodes;
+    }
+
+    /**
+     * @return the ETags of the 'If-None-Match' header, <code>null</code> if missing
+     */
+    public String getIfNoneMatch() {
+
+        return ifNoneMatch;
+    }
+}
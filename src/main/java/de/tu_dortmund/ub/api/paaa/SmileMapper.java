@@ -0,0 +1,70 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import de.tu_dortmund.ub.api.paaa.model.*;
+
+/**
+ * The service-wide Jackson configuration for Smile, the binary JSON format ('format=smile' resp.
+ * 'application/x-jackson-smile').
+ *
+ * Same model as {@link JsonMapper}, only the encoding differs. A stream of several values (bulk import) is a
+ * sequence of Smile root values without separator.
+ */
+public final class SmileMapper {
+
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+
+    public static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory());
+
+    public static final ObjectReader PATRON_READER = MAPPER.reader(Patron.class);
+
+    /**
+     * Writes any model object by its runtime type.
+     */
+    public static final ObjectWriter WRITER = MAPPER.writer();
+    public static final ObjectWriter REQUEST_ERROR_WRITER = MAPPER.writerFor(RequestError.class);
+
+    /**
+     * Writes the results of a bulk import into one generator; the stream is flushed per batch, not per result.
+     */
+    public static final ObjectWriter BULK_RESULT_WRITER = MAPPER.writerFor(BulkResult.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private SmileMapper() {
+    }
+
+    /**
+     * @return true if the content type (e.g. of the request body) is Smile
+     */
+    public static boolean isSmile(String contentType) {
+
+        return contentType != null && contentType.startsWith(CONTENT_TYPE);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.ils.ILSException;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent 'updatepatron' calls for the same account into as few ILS writes as possible.
+ *
+ * At most one update per account is running. Updates arriving meanwhile are merged into a single follow-up patch
+ * (last writer wins, see {@link Patron#merge(Patron)}), which is written as soon as the running update has
+ * finished; every caller merged into a patch gets the result of that one ILS call. The accounts are spread over
+ * 'ils.coalesce.stripes' independently locked stripes (default: 64), so there is no global lock.
+ */
+public class UpdateCoalescer {
+
+    /**
+     * The ILS write, usually {@link de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem#updatepatron(Patron)}.
+     */
+    public interface Update {
+
+        Patron update(Patron patron) throws ILSException;
+    }
+
+    private final Stripe[] stripes;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public UpdateCoalescer(Properties config) {
+
+        this(Integer.parseInt(config.getProperty("ils.coalesce.stripes", "64")));
+    }
+
+    public UpdateCoalescer(int stripes) {
+
+        this.stripes = new Stripe[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Writes the patch, possibly merged with concurrent patches for the same account. Blocks until the ILS call
+     * which includes this patch has finished.
+     */
+    public Patron update(Patron patron, Update update) throws ILSException {
+
+        String account = patron.getAccount();
+        Stripe stripe = this.stripes[(account.hashCode() & 0x7fffffff) % this.stripes.length];
+
+        Batch batch;
+        Batch running = null;
+        boolean leader = true;
+
+        synchronized (stripe) {
+
+            Account state = stripe.accounts.get(account);
+
+            if (state == null) {
+
+                state = new Account();
+                stripe.accounts.put(account, state);
+
+                batch = new Batch(patron);
+                state.running = batch;
+            }
+            else if (state.next == null) {
+
+                batch = new Batch(patron);
+                state.next = batch;
+                running = state.running;
+            }
+            else {
+
+                batch = state.next;
+                batch.patch.merge(patron);
+                leader = false;
+            }
+        }
+
+        if (!leader) {
+
+            this.coalesced.increment();
+            return await(batch);
+        }
+
+        // the merged patch is written for the callers waiting for it, even if this thread is interrupted
+        boolean interrupted = false;
+
+        if (running != null) {
+
+            // the running update has to finish before the merged patch is written
+            interrupted = awaitUninterruptibly(running);
+
+            synchronized (stripe) {
+
+                Account state = stripe.accounts.get(account);
+                state.running = batch;
+                state.next = null;
+            }
+        }
+
+        try {
+
+            this.calls.increment();
+            batch.result.complete(update.update(batch.patch));
+        }
+        catch (ILSException | RuntimeException e) {
+
+            batch.result.completeExceptionally(e);
+        }
+        finally {
+
+            // an Error propagates to this caller; the merged callers and the follow-up leader must not wait forever
+            if (!batch.result.isDone()) {
+                batch.result.completeExceptionally(new ILSException("Update of patron '" + account + "' failed"));
+            }
+
+            synchronized (stripe) {
+
+                // the follow-up leader may have finished and removed the account already
+                Account state = stripe.accounts.get(account);
+
+                if (state != null && state.running == batch && state.next == null) {
+                    stripe.accounts.remove(account);
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return await(batch);
+    }
+
+    /**
+     * @return number of ILS calls made
+     */
+    public long getCalls() {
+
+        return this.calls.sum();
+    }
+
+    /**
+     * @return number of updates merged into the patch of another caller
+     */
+    public long getCoalesced() {
+
+        return this.coalesced.sum();
+    }
+
+    private static Patron await(Batch batch) throws ILSException {
+
+        try {
+
+            return batch.result.get();
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new ILSException("Interrupted while waiting for the update of patron '" + batch.patch.getAccount() + "'", e);
+        }
+        catch (ExecutionException e) {
+
+            if (e.getCause() instanceof ILSException) {
+                throw (ILSException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new ILSException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * @return true if the thread has been interrupted while waiting
+     */
+    private static boolean awaitUninterruptibly(Batch batch) {
+
+        boolean interrupted = false;
+
+        while (true) {
+
+            try {
+
+                batch.result.get();
+                break;
+            }
+            catch (InterruptedException e) {
+
+                interrupted = true;
+            }
+            catch (ExecutionException e) {
+
+                break;
+            }
+        }
+
+        return interrupted;
+    }
+
+    private static final class Batch {
+
+        private final Patron patch;
+        private final CompletableFuture<Patron> result = new CompletableFuture<>();
+
+        private Batch(Patron patch) {
+
+            this.patch = patch;
+        }
+    }
+
+    private static final class Account {
+
+        private Batch running;
+        private Batch next;
+    }
+
+    private static final class Stripe {
+
+        private final Map<String, Account> accounts = new HashMap<>();
+    }
+}
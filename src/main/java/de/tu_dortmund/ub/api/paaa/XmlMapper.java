@@ -0,0 +1,121 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.model.*;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * The service-wide JAXB configuration.
+ *
+ * The JAXBContext for all model classes is created once. Marshaller and Unmarshaller are not thread-safe,
+ * so every (pooled) request thread keeps its own instances.
+ */
+public final class XmlMapper {
+
+    public static final JAXBContext CONTEXT;
+
+    static {
+
+        try {
+
+            CONTEXT = JAXBContext.newInstance(Patron.class, Block.class, Fee.class, FeeList.class, LoginResponse.class, RequestError.class);
+        }
+        catch (JAXBException e) {
+
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final ThreadLocal<Marshaller> MARSHALLER = ThreadLocal.withInitial(() -> {
+
+        try {
+
+            Marshaller marshaller = CONTEXT.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+
+            return marshaller;
+        }
+        catch (JAXBException e) {
+
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static final ThreadLocal<Unmarshaller> UNMARSHALLER = ThreadLocal.withInitial(() -> {
+
+        try {
+
+            return CONTEXT.createUnmarshaller();
+        }
+        catch (JAXBException e) {
+
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private XmlMapper() {
+    }
+
+    /**
+     * @return the Marshaller of the current thread
+     */
+    public static Marshaller marshaller() {
+
+        return MARSHALLER.get();
+    }
+
+    /**
+     * @return the Unmarshaller of the current thread
+     */
+    public static Unmarshaller unmarshaller() {
+
+        return UNMARSHALLER.get();
+    }
+
+    public static void write(Object value, Writer writer) throws JAXBException {
+
+        marshaller().marshal(value, writer);
+    }
+
+    public static void write(Object value, OutputStream outputStream) throws JAXBException {
+
+        marshaller().marshal(value, outputStream);
+    }
+
+    public static <T> T read(InputStream inputStream, Class<T> clazz) throws JAXBException {
+
+        return unmarshaller().unmarshal(new StreamSource(inputStream), clazz).getValue();
+    }
+}
@@ -39,4 +39,14 @@ public interface AuthorizationInterface {
     HashMap<String,String> health(Properties properties);
 
     boolean isTokenValid(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException;
+
+    /**
+     * Like {@link #isTokenValid(HttpServletResponse, String, String, String)}, but also reports how long the
+     * token stays valid ('expires_in' of the token endpoint). Implementations which know the lifetime should
+     * override this method; the default reports an unknown lifetime.
+     */
+    default TokenValidation validateToken(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+
+        return new TokenValidation(this.isTokenValid(httpServletResponse, service, patronid, access_token), TokenValidation.EXPIRES_IN_UNKNOWN);
+    }
 }
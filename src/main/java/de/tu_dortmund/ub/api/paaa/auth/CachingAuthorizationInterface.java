@@ -0,0 +1,288 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.auth;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of {@link AuthorizationInterface#validateToken} per (token, service, patronid).
+ *
+ * Valid tokens are cached until their 'expires_in' runs out, but at most 'auth.cache.ttl' seconds; this bounds
+ * the time a revoked token is still accepted. Rejected tokens are cached for 'auth.cache.negative-ttl' seconds.
+ * The cache holds at most 'auth.cache.max-size' entries and evicts the least recently used ones.
+ * {@link AuthorizationException}s are never cached.
+ */
+public class CachingAuthorizationInterface implements AuthorizationInterface {
+
+    private static final int SEGMENTS = 16;
+
+    private final AuthorizationInterface delegate;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final Segment[] segments;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachingAuthorizationInterface(AuthorizationInterface delegate, Properties properties) {
+
+        this(delegate,
+                Integer.parseInt(properties.getProperty("auth.cache.max-size", "10000")),
+                Long.parseLong(properties.getProperty("auth.cache.ttl", "300")) * 1000L,
+                Long.parseLong(properties.getProperty("auth.cache.negative-ttl", "5")) * 1000L);
+    }
+
+    public CachingAuthorizationInterface(AuthorizationInterface delegate, int maxSize, long ttlMillis, long negativeTtlMillis) {
+
+        this.delegate = delegate;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+
+        int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public AuthorizationInterface getDelegate() {
+
+        return delegate;
+    }
+
+    @Override
+    public void init(Properties properties) {
+
+        this.delegate.init(properties);
+    }
+
+    @Override
+    public HashMap<String, String> health(Properties properties) {
+
+        return this.delegate.health(properties);
+    }
+
+    @Override
+    public boolean isTokenValid(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+
+        return this.validateToken(httpServletResponse, service, patronid, access_token).isValid();
+    }
+
+    @Override
+    public TokenValidation validateToken(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+
+        Key key = new Key(access_token, service, patronid);
+        Segment segment = this.segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+
+        long now = System.currentTimeMillis();
+
+        Entry cached = segment.get(key, now);
+
+        if (cached != null) {
+
+            this.hits.incrementAndGet();
+            return cached.validation;
+        }
+
+        this.misses.incrementAndGet();
+
+        TokenValidation validation = this.delegate.validateToken(httpServletResponse, service, patronid, access_token);
+
+        long ttl;
+
+        if (!validation.isValid()) {
+
+            ttl = this.negativeTtlMillis;
+        }
+        else if (validation.getExpiresIn() >= 0) {
+
+            ttl = Math.min(this.ttlMillis, validation.getExpiresIn() * 1000L);
+        }
+        else {
+
+            ttl = this.ttlMillis;
+        }
+
+        if (ttl > 0) {
+
+            segment.put(key, new Entry(validation, now + ttl));
+        }
+
+        return validation;
+    }
+
+    /**
+     * Removes all entries, e.g. after a token has been revoked.
+     */
+    public void clear() {
+
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    public long getHits() {
+
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+
+        return this.evictions.get();
+    }
+
+    public int size() {
+
+        int size = 0;
+
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    private static final class Key {
+
+        private final String token;
+        private final String service;
+        private final String patronid;
+        private final int hash;
+
+        private Key(String token, String service, String patronid) {
+
+            this.token = token;
+            this.service = service;
+            this.patronid = patronid;
+
+            int hash = token != null ? token.hashCode() : 0;
+            hash = 31 * hash + (service != null ? service.hashCode() : 0);
+            hash = 31 * hash + (patronid != null ? patronid.hashCode() : 0);
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+
+            return this.hash == other.hash
+                    && (this.token != null ? this.token.equals(other.token) : other.token == null)
+                    && (this.service != null ? this.service.equals(other.service) : other.service == null)
+                    && (this.patronid != null ? this.patronid.equals(other.patronid) : other.patronid == null);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return this.hash;
+        }
+    }
+
+    private static final class Entry {
+
+        private final TokenValidation validation;
+        private final long expires;
+
+        private Entry(TokenValidation validation, long expires) {
+
+            this.validation = validation;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * LRU map guarded by its own lock; the cache is split into segments to keep contention low.
+     */
+    private final class Segment {
+
+        private final LinkedHashMap<Key, Entry> entries;
+
+        private Segment(final int maxSize) {
+
+            this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+
+                    if (this.size() > maxSize) {
+
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+
+                    return false;
+                }
+            };
+        }
+
+        private synchronized Entry get(Key key, long now) {
+
+            Entry entry = this.entries.get(key);
+
+            if (entry != null && entry.expires <= now) {
+
+                this.entries.remove(key);
+                return null;
+            }
+
+            return entry;
+        }
+
+        private synchronized void put(Key key, Entry entry) {
+
+            this.entries.put(key, entry);
+        }
+
+        private synchronized void clear() {
+
+            this.entries.clear();
+        }
+
+        private synchronized int size() {
+
+            return this.entries.size();
+        }
+    }
+}
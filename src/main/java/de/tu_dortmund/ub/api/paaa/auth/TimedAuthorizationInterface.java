@@ -0,0 +1,112 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.auth;
+
+import de.tu_dortmund.ub.util.impl.Histogram;
+import de.tu_dortmund.ub.util.impl.MetricsRegistry;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Properties;
+
+/**
+ * Records the duration of every token check of the wrapped implementation as 'paaa_auth_duration_seconds',
+ * labelled with the result ('valid', 'invalid', 'error').
+ */
+public class TimedAuthorizationInterface implements AuthorizationInterface {
+
+    private static final String HELP = "Duration of token checks against the OAuth server";
+
+    private final AuthorizationInterface delegate;
+
+    private final Histogram valid;
+    private final Histogram invalid;
+    private final Histogram error;
+
+    public TimedAuthorizationInterface(AuthorizationInterface delegate) {
+
+        this.delegate = delegate;
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        this.valid = metricsRegistry.histogram("paaa_auth_duration_seconds", HELP, "result", "valid");
+        this.invalid = metricsRegistry.histogram("paaa_auth_duration_seconds", HELP, "result", "invalid");
+        this.error = metricsRegistry.histogram("paaa_auth_duration_seconds", HELP, "result", "error");
+    }
+
+    public AuthorizationInterface getDelegate() {
+
+        return delegate;
+    }
+
+    @Override
+    public void init(Properties properties) {
+
+        this.delegate.init(properties);
+    }
+
+    @Override
+    public HashMap<String, String> health(Properties properties) {
+
+        return this.delegate.health(properties);
+    }
+
+    @Override
+    public boolean isTokenValid(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+
+        long start = System.nanoTime();
+
+        try {
+
+            boolean isValid = this.delegate.isTokenValid(httpServletResponse, service, patronid, access_token);
+            (isValid ? this.valid : this.invalid).recordSince(start);
+
+            return isValid;
+        }
+        catch (AuthorizationException | RuntimeException e) {
+
+            this.error.recordSince(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public TokenValidation validateToken(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+
+        long start = System.nanoTime();
+
+        try {
+
+            TokenValidation validation = this.delegate.validateToken(httpServletResponse, service, patronid, access_token);
+            (validation.isValid() ? this.valid : this.invalid).recordSince(start);
+
+            return validation;
+        }
+        catch (AuthorizationException | RuntimeException e) {
+
+            this.error.recordSince(start);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.auth;
+
+/**
+ * Result of a token check: whether the token is valid and how many seconds it stays valid.
+ */
+public class TokenValidation {
+
+    public static final long EXPIRES_IN_UNKNOWN = -1;
+
+    private final boolean valid;
+    private final long expiresIn;
+
+    public TokenValidation(boolean valid, long expiresIn) {
+
+        this.valid = valid;
+        this.expiresIn = expiresIn;
+    }
+
+    public boolean isValid() {
+
+        return valid;
+    }
+
+    /**
+     * @return remaining lifetime of the token in seconds or {@link #EXPIRES_IN_UNKNOWN}
+     */
+    public long getExpiresIn() {
+
+        return expiresIn;
+    }
+}
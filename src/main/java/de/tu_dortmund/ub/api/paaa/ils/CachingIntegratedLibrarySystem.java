@@ -0,0 +1,512 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.ils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import de.tu_dortmund.ub.api.paaa.JsonMapper;
+import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.BulkResult;
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.FeeList;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of the read operations {@link #patron(Patron)} and {@link #fees(Patron)} per account,
+ * together with an ETag over their content.
+ *
+ * Every write operation - including the bulk operations - invalidates the entries of the accounts it touches,
+ * whether it succeeds or fails. A read that was running while an account was written is not cached. Entries live
+ * at most 'ils.cache.ttl' seconds, which bounds the staleness for changes made directly in the ILS; the cache
+ * holds at most 'ils.cache.max-size' entries and evicts the least recently used ones. Null results and
+ * {@link ILSException}s are never cached. Cached values are shared: callers must not modify them.
+ *
+ * <pre>
+ * ils.cache.enabled    cache patron and fees reads (default: true)
+ * ils.cache.max-size   maximum number of cached reads (default: 10000)
+ * ils.cache.ttl        seconds a read is cached (default: 60)
+ * </pre>
+ */
+public class CachingIntegratedLibrarySystem implements IntegratedLibrarySystem {
+
+    public static final String PATRON = "patron";
+    public static final String FEES = "fees";
+
+    private static final int SEGMENTS = 16;
+
+    private interface Read<T> {
+
+        T read() throws ILSException;
+    }
+
+    private final IntegratedLibrarySystem delegate;
+    private final long ttlMillis;
+    private final Segment[] segments;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CachingIntegratedLibrarySystem(IntegratedLibrarySystem delegate, Properties properties) {
+
+        this(delegate,
+                Integer.parseInt(properties.getProperty("ils.cache.max-size", "10000")),
+                Long.parseLong(properties.getProperty("ils.cache.ttl", "60")) * 1000L);
+    }
+
+    public CachingIntegratedLibrarySystem(IntegratedLibrarySystem delegate, int maxSize, long ttlMillis) {
+
+        this.delegate = delegate;
+        this.ttlMillis = ttlMillis;
+
+        int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public IntegratedLibrarySystem getDelegate() {
+
+        return delegate;
+    }
+
+    @Override
+    public void init(Properties properties) {
+
+        this.delegate.init(properties);
+    }
+
+    @Override
+    public void start(Properties properties) {
+
+        this.delegate.start(properties);
+    }
+
+    @Override
+    public void stop() {
+
+        this.delegate.stop();
+    }
+
+    @Override
+    public HashMap<String, String> health(Properties properties) {
+
+        return this.delegate.health(properties);
+    }
+
+    @Override
+    public Patron patron(Patron patron) throws ILSException {
+
+        return (Patron) this.read(PATRON, patron.getAccount(), () -> this.delegate.patron(patron)).getValue();
+    }
+
+    @Override
+    public FeeList fees(Patron patron) throws ILSException {
+
+        return (FeeList) this.read(FEES, patron.getAccount(), () -> this.delegate.fees(patron)).getValue();
+    }
+
+    /**
+     * @param operation {@link #PATRON} or {@link #FEES}
+     * @return the cached read with its ETag, <code>null</code> if there is none; the ILS is not called
+     */
+    public Entry get(String operation, String account) {
+
+        return this.segment(account).get(new Key(operation, account), System.currentTimeMillis());
+    }
+
+    @Override
+    public Patron signup(Patron patron) throws ILSException {
+
+        try {
+
+            Patron result = this.delegate.signup(patron);
+
+            if (result != null) {
+                this.invalidate(result.getAccount());
+            }
+
+            return result;
+        }
+        finally {
+
+            this.invalidate(patron.getAccount());
+        }
+    }
+
+    @Override
+    public Patron newpatron(Patron patron) throws ILSException {
+
+        try {
+
+            return this.delegate.newpatron(patron);
+        }
+        finally {
+
+            this.invalidate(patron.getAccount());
+        }
+    }
+
+    @Override
+    public Patron updatepatron(Patron patron) throws ILSException {
+
+        try {
+
+            return this.delegate.updatepatron(patron);
+        }
+        finally {
+
+            this.invalidate(patron.getAccount());
+        }
+    }
+
+    @Override
+    public Patron blockpatron(Patron patron, Block block) throws ILSException {
+
+        try {
+
+            return this.delegate.blockpatron(patron, block);
+        }
+        finally {
+
+            this.invalidate(patron.getAccount());
+        }
+    }
+
+    @Override
+    public Patron unblockpatron(Patron patron, Block block) throws ILSException {
+
+        try {
+
+            return this.delegate.unblockpatron(patron, block);
+        }
+        finally {
+
+            this.invalidate(patron.getAccount());
+        }
+    }
+
+    @Override
+    public Patron deletepatron(Patron patron) throws ILSException {
+
+        try {
+
+            return this.delegate.deletepatron(patron);
+        }
+        finally {
+
+            this.invalidate(patron.getAccount());
+        }
+    }
+
+    @Override
+    public Fee newfee(Patron patron, Fee fee) throws ILSException {
+
+        try {
+
+            return this.delegate.newfee(patron, fee);
+        }
+        finally {
+
+            this.invalidate(patron.getAccount());
+        }
+    }
+
+    @Override
+    public List<BulkResult> newpatrons(List<Patron> patrons) {
+
+        try {
+
+            return this.delegate.newpatrons(patrons);
+        }
+        finally {
+
+            patrons.forEach(patron -> this.invalidate(patron.getAccount()));
+        }
+    }
+
+    @Override
+    public List<BulkResult> updatepatrons(List<Patron> patrons) {
+
+        try {
+
+            return this.delegate.updatepatrons(patrons);
+        }
+        finally {
+
+            patrons.forEach(patron -> this.invalidate(patron.getAccount()));
+        }
+    }
+
+    /**
+     * Removes the cached reads of the account.
+     */
+    public void invalidate(String account) {
+
+        if (account == null) {
+            return;
+        }
+
+        this.invalidations.incrementAndGet();
+        this.segment(account).invalidate(account);
+    }
+
+    /**
+     * Removes all entries, e.g. after changes made directly in the ILS.
+     */
+    public void clear() {
+
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    public long getHits() {
+
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+
+        return this.misses.get();
+    }
+
+    public long getInvalidations() {
+
+        return this.invalidations.get();
+    }
+
+    public int size() {
+
+        int size = 0;
+
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * @return a weak ETag over the JSON representation of the value, <code>null</code> if it cannot be serialized
+     */
+    public static String etag(Object value) {
+
+        try {
+
+            byte[] digest = MessageDigest.getInstance("MD5").digest(JsonMapper.MAPPER.writeValueAsBytes(value));
+
+            StringBuilder etag = new StringBuilder(2 * digest.length + 4).append("W/\"");
+            for (byte b : digest) {
+                etag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return etag.append('"').toString();
+        }
+        catch (JsonProcessingException | NoSuchAlgorithmException e) {
+
+            return null;
+        }
+    }
+
+    private Entry read(String operation, String account, Read<?> read) throws ILSException {
+
+        if (account == null) {
+            return new Entry(read.read(), 0);
+        }
+
+        Segment segment = this.segment(account);
+        Key key = new Key(operation, account);
+
+        Entry cached = segment.get(key, System.currentTimeMillis());
+
+        if (cached != null) {
+
+            this.hits.incrementAndGet();
+            return cached;
+        }
+
+        this.misses.incrementAndGet();
+
+        long version = segment.version();
+        Entry entry = new Entry(read.read(), System.currentTimeMillis() + this.ttlMillis);
+
+        if (entry.getValue() != null && this.ttlMillis > 0) {
+            segment.put(key, entry, version);
+        }
+
+        return entry;
+    }
+
+    private Segment segment(String account) {
+
+        return this.segments[(account.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    private static final class Key {
+
+        private final String operation;
+        private final String account;
+        private final int hash;
+
+        private Key(String operation, String account) {
+
+            this.operation = operation;
+            this.account = account;
+            this.hash = 31 * operation.hashCode() + account.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+
+            return this.hash == other.hash && this.operation.equals(other.operation) && this.account.equals(other.account);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return this.hash;
+        }
+    }
+
+    /**
+     * A cached read: the value as returned by the ILS and its ETag.
+     */
+    public static final class Entry {
+
+        private final Object value;
+        private final long expires;
+        private String etag;
+
+        private Entry(Object value, long expires) {
+
+            this.value = value;
+            this.expires = expires;
+        }
+
+        public Object getValue() {
+
+            return value;
+        }
+
+        /**
+         * @return the ETag, computed on first use
+         */
+        public synchronized String getETag() {
+
+            if (this.etag == null && this.value != null) {
+                this.etag = CachingIntegratedLibrarySystem.etag(this.value);
+            }
+
+            return this.etag;
+        }
+    }
+
+    /**
+     * LRU map guarded by its own lock; all entries of an account are in the same segment. The version of the
+     * segment is raised by every invalidation, so a read started before a write does not cache its stale result.
+     */
+    private static final class Segment {
+
+        private final LinkedHashMap<Key, Entry> entries;
+        private long version = 0;
+
+        private Segment(final int maxSize) {
+
+            this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+
+                    return this.size() > maxSize;
+                }
+            };
+        }
+
+        private synchronized Entry get(Key key, long now) {
+
+            Entry entry = this.entries.get(key);
+
+            if (entry != null && entry.expires <= now) {
+
+                this.entries.remove(key);
+                return null;
+            }
+
+            return entry;
+        }
+
+        private synchronized long version() {
+
+            return this.version;
+        }
+
+        private synchronized void put(Key key, Entry entry, long version) {
+
+            if (this.version == version) {
+                this.entries.put(key, entry);
+            }
+        }
+
+        private synchronized void invalidate(String account) {
+
+            this.entries.remove(new Key(PATRON, account));
+            this.entries.remove(new Key(FEES, account));
+
+            // reads started before now must not be cached
+            this.version++;
+        }
+
+        private synchronized void clear() {
+
+            this.entries.clear();
+            this.version++;
+        }
+
+        private synchronized int size() {
+
+            return this.entries.size();
+        }
+    }
+}
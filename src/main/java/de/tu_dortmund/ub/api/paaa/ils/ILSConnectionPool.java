@@ -0,0 +1,343 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.ils;
+
+import org.apache.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of ILS connections shared by all requests.
+ *
+ * An adapter creates the pool in {@link IntegratedLibrarySystem#start(Properties)} and closes it in
+ * {@link IntegratedLibrarySystem#stop()}. The pool is configured in 'paaa.properties':
+ *
+ * <pre>
+ * ils.pool.max-total          maximum number of open connections (default: 8)
+ * ils.pool.max-idle           maximum number of idle connections kept open (default: ils.pool.max-total)
+ * ils.pool.max-wait           milliseconds to wait for a free connection (default: 5000)
+ * ils.pool.idle-timeout       milliseconds after which an idle connection is closed (default: 300000)
+ * ils.pool.eviction-interval  milliseconds between two idle checks (default: 60000)
+ * ils.pool.validate-on-borrow validate idle connections before handing them out (default: true)
+ * </pre>
+ *
+ * @param <C> type of the connection
+ */
+public class ILSConnectionPool<C> {
+
+    /**
+     * Milliseconds a client should wait before retrying if the pool is exhausted or closed (e.g. during a reload).
+     */
+    private static final long RETRY_AFTER = 1000;
+
+    /**
+     * Opens, checks and closes connections for the pool.
+     */
+    public interface ConnectionFactory<C> {
+
+        C create() throws ILSException;
+
+        boolean validate(C connection);
+
+        void destroy(C connection);
+    }
+
+    /**
+     * Work to be done with a borrowed connection, see {@link #execute(Callback)}.
+     */
+    public interface Callback<C, R> {
+
+        R doWithConnection(C connection) throws ILSException;
+    }
+
+    private final ConnectionFactory<C> factory;
+    private final int maxTotal;
+    private final int maxIdle;
+    private final long maxWait;
+    private final long idleTimeout;
+    private final boolean validateOnBorrow;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleConnection<C>> idle = new LinkedBlockingDeque<IdleConnection<C>>();
+    private final ScheduledExecutorService evictor;
+
+    private volatile boolean closed = false;
+
+    private Logger logger = Logger.getLogger(ILSConnectionPool.class.getName());
+
+    public ILSConnectionPool(Properties properties, ConnectionFactory<C> factory) {
+
+        this(factory,
+                Integer.parseInt(properties.getProperty("ils.pool.max-total", "8")),
+                Integer.parseInt(properties.getProperty("ils.pool.max-idle", properties.getProperty("ils.pool.max-total", "8"))),
+                Long.parseLong(properties.getProperty("ils.pool.max-wait", "5000")),
+                Long.parseLong(properties.getProperty("ils.pool.idle-timeout", "300000")),
+                Long.parseLong(properties.getProperty("ils.pool.eviction-interval", "60000")),
+                Boolean.parseBoolean(properties.getProperty("ils.pool.validate-on-borrow", "true")));
+    }
+
+    public ILSConnectionPool(ConnectionFactory<C> factory, int maxTotal, int maxIdle, long maxWait, long idleTimeout, long evictionInterval, boolean validateOnBorrow) {
+
+        if (maxTotal < 1) {
+            throw new IllegalArgumentException("ils.pool.max-total must be at least 1");
+        }
+
+        this.factory = factory;
+        this.maxTotal = maxTotal;
+        this.maxIdle = Math.min(maxIdle, maxTotal);
+        this.maxWait = maxWait;
+        this.idleTimeout = idleTimeout;
+        this.validateOnBorrow = validateOnBorrow;
+
+        this.permits = new Semaphore(maxTotal);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "ils-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (evictionInterval > 0 && idleTimeout > 0) {
+
+            this.evictor.scheduleWithFixedDelay(this::evict, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+        }
+
+        this.logger.info("ILS connection pool: max-total = " + maxTotal + ", max-idle = " + this.maxIdle + ", max-wait = " + maxWait + " ms, idle-timeout = " + idleTimeout + " ms");
+    }
+
+    /**
+     * Hands out an idle connection or opens a new one. Blocks at most 'ils.pool.max-wait' milliseconds if all
+     * connections are in use.
+     *
+     * @throws ILSUnavailableException if the pool is exhausted or closed (503 with 'Retry-After', not counted as a
+     *         failure of the ILS by {@link ResilientIntegratedLibrarySystem})
+     * @throws ILSException if a new connection cannot be opened
+     */
+    public C borrow() throws ILSException {
+
+        if (this.closed) {
+            throw new ILSUnavailableException("ILS connection pool is closed", RETRY_AFTER);
+        }
+
+        try {
+
+            if (!this.permits.tryAcquire(this.maxWait, TimeUnit.MILLISECONDS)) {
+                throw new ILSUnavailableException("ILS connection pool exhausted: no connection available within " + this.maxWait + " ms", RETRY_AFTER);
+            }
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new ILSException("Interrupted while waiting for an ILS connection", e);
+        }
+
+        try {
+
+            IdleConnection<C> candidate;
+
+            while ((candidate = this.idle.pollFirst()) != null) {
+
+                boolean valid = false;
+
+                try {
+
+                    valid = !this.validateOnBorrow || this.factory.validate(candidate.connection);
+                }
+                finally {
+
+                    // also if validate() itself fails
+                    if (!valid) {
+
+                        this.logger.debug("discarding invalid ILS connection");
+                        this.factory.destroy(candidate.connection);
+                    }
+                }
+
+                if (valid) {
+                    return candidate.connection;
+                }
+            }
+
+            return this.factory.create();
+        }
+        catch (Throwable e) {
+
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool.
+     */
+    public void release(C connection) {
+
+        if (connection == null) {
+            return;
+        }
+
+        try {
+
+            if (this.closed || this.idle.size() >= this.maxIdle) {
+
+                this.factory.destroy(connection);
+            }
+            else {
+
+                this.idle.offerFirst(new IdleConnection<C>(connection, System.currentTimeMillis()));
+            }
+        }
+        finally {
+
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Closes a borrowed connection which turned out to be broken instead of returning it to the pool.
+     */
+    public void invalidate(C connection) {
+
+        if (connection == null) {
+            return;
+        }
+
+        try {
+
+            this.factory.destroy(connection);
+        }
+        finally {
+
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Borrows a connection, runs <code>callback</code> and returns the connection. The connection is
+     * invalidated if the callback fails with anything but an {@link ILSException}, including an Error.
+     */
+    public <R> R execute(Callback<C, R> callback) throws ILSException {
+
+        C connection = this.borrow();
+        boolean broken = true;
+
+        try {
+
+            R result = callback.doWithConnection(connection);
+            broken = false;
+
+            return result;
+        }
+        catch (ILSException e) {
+
+            broken = false;
+            throw e;
+        }
+        finally {
+
+            if (broken) {
+                this.invalidate(connection);
+            }
+            else {
+                this.release(connection);
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the evictor. Borrowed connections are closed when they are released.
+     */
+    public void close() {
+
+        this.closed = true;
+        this.evictor.shutdownNow();
+
+        IdleConnection<C> candidate;
+
+        while ((candidate = this.idle.pollFirst()) != null) {
+
+            this.factory.destroy(candidate.connection);
+        }
+
+        this.logger.info("ILS connection pool closed");
+    }
+
+    public int getActive() {
+
+        return this.maxTotal - this.permits.availablePermits();
+    }
+
+    public int getIdle() {
+
+        return this.idle.size();
+    }
+
+    public int getMaxTotal() {
+
+        return this.maxTotal;
+    }
+
+    void evict() {
+
+        long threshold = System.currentTimeMillis() - this.idleTimeout;
+
+        // oldest connections are at the end of the deque
+        Iterator<IdleConnection<C>> iterator = this.idle.descendingIterator();
+
+        while (iterator.hasNext()) {
+
+            IdleConnection<C> candidate = iterator.next();
+
+            if (candidate.since > threshold) {
+                break;
+            }
+
+            if (this.idle.removeLastOccurrence(candidate)) {
+
+                this.logger.debug("closing idle ILS connection");
+                this.factory.destroy(candidate.connection);
+            }
+        }
+    }
+
+    private static final class IdleConnection<C> {
+
+        private final C connection;
+        private final long since;
+
+        private IdleConnection(C connection, long since) {
+
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+}
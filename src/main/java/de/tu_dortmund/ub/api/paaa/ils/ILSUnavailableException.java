@@ -0,0 +1,51 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.ils;
+
+/**
+ * The ILS call was not made because the circuit of the operation is open or too many calls are in flight, see
+ * {@link ResilientIntegratedLibrarySystem}, or because no connection of the {@link ILSConnectionPool} was available.
+ * Answered with 503.
+ */
+public class ILSUnavailableException extends ILSException {
+
+    private static final long serialVersionUID = -6291795946281760514L;
+
+    private final long retryAfter;
+
+    public ILSUnavailableException(String message, long retryAfter) {
+
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return milliseconds until the call may succeed again, e.g. for a 'Retry-After' header
+     */
+    public long getRetryAfter() {
+
+        return retryAfter;
+    }
+}
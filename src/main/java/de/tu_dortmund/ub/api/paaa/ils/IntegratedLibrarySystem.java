@@ -25,10 +25,14 @@ SOFTWARE.
 package de.tu_dortmund.ub.api.paaa.ils;
 
 import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.BulkResult;
 import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.FeeList;
 import de.tu_dortmund.ub.api.paaa.model.Patron;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -43,6 +47,24 @@ public interface IntegratedLibrarySystem {
      */
     void init(Properties properties);
 
+    /**
+     * Called once when the service starts, before the first request. Adapters holding connections to the ILS
+     * should open them here, e.g. by creating an {@link ILSConnectionPool}.
+     *
+     * @param properties
+     */
+    default void start(Properties properties) {
+
+        this.init(properties);
+    }
+
+    /**
+     * Called once when the service stops or the implementation is reloaded. Releases everything acquired in
+     * {@link #start(Properties)}.
+     */
+    default void stop() {
+    }
+
     HashMap<String,String> health(Properties properties);
 
     Patron signup(Patron patron) throws ILSException;
@@ -58,4 +80,80 @@ public interface IntegratedLibrarySystem {
     Patron deletepatron(Patron patron) throws ILSException;
 
     Fee newfee(Patron patron, Fee fee) throws ILSException;
+
+    /**
+     * Reads the patron with the account of <code>patron</code>, e.g. for GET /{patronid}. The default throws an
+     * ILSException '501' (not implemented).
+     *
+     * @param patron
+     * @return the patron, <code>null</code> if the ILS did not answer
+     */
+    default Patron patron(Patron patron) throws ILSException {
+
+        throw new ILSException("501");
+    }
+
+    /**
+     * Reads the fees of the patron, e.g. for GET /{patronid}/fees. The default throws an ILSException '501'
+     * (not implemented).
+     *
+     * @param patron
+     * @return the fees, <code>null</code> if the ILS did not answer
+     */
+    default FeeList fees(Patron patron) throws ILSException {
+
+        throw new ILSException("501");
+    }
+
+    /**
+     * Creates a batch of patrons. The default calls {@link #newpatron(Patron)} for every patron; adapters able
+     * to write several records in one ILS call should override it.
+     *
+     * @param patrons
+     * @return one result per patron, in the same order
+     */
+    default List<BulkResult> newpatrons(List<Patron> patrons) {
+
+        List<BulkResult> results = new ArrayList<>(patrons.size());
+
+        for (Patron patron : patrons) {
+
+            try {
+
+                results.add(BulkResult.success(this.newpatron(patron)));
+            }
+            catch (ILSException e) {
+
+                results.add(BulkResult.failure(patron.getAccount(), "403".equals(e.getMessage()) ? 403 : 500, e.getMessage()));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Updates a batch of patrons. The default calls {@link #updatepatron(Patron)} for every patron; adapters
+     * able to write several records in one ILS call should override it.
+     *
+     * @param patrons
+     * @return one result per patron, in the same order
+     */
+    default List<BulkResult> updatepatrons(List<Patron> patrons) {
+
+        List<BulkResult> results = new ArrayList<>(patrons.size());
+
+        for (Patron patron : patrons) {
+
+            try {
+
+                results.add(BulkResult.success(this.updatepatron(patron)));
+            }
+            catch (ILSException e) {
+
+                results.add(BulkResult.failure(patron.getAccount(), "403".equals(e.getMessage()) ? 403 : 500, e.getMessage()));
+            }
+        }
+
+        return results;
+    }
 }
@@ -0,0 +1,501 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.ils;
+
+import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.BulkResult;
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.FeeList;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import de.tu_dortmund.ub.util.impl.MetricsRegistry;
+import org.apache.log4j.Logger;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Protects the service from a failing or slow ILS: every operation has its own circuit breaker and bulkhead.
+ *
+ * After 'ils.circuit.failure-threshold' consecutive failures the circuit of the operation opens and calls fail
+ * immediately with an {@link ILSUnavailableException} (503) instead of waiting for the ILS. After
+ * 'ils.circuit.open-duration' a limited number of trial calls is let through (half-open); a successful one closes
+ * the circuit, a failed one opens it again. The bulkhead limits the calls in flight per operation, so a hanging
+ * ILS cannot occupy all worker threads. An ILSException with the message '403' (forbidden) or '501' (not
+ * implemented) is an answer of the ILS, not a failure.
+ *
+ * <pre>
+ * ils.circuit.failure-threshold        consecutive failures opening the circuit (default: 5)
+ * ils.circuit.open-duration            milliseconds before trial calls are let through (default: 30000)
+ * ils.circuit.half-open-calls          concurrent trial calls in the half-open state (default: 1)
+ * ils.bulkhead.max-concurrent          ILS calls in flight per operation (default: 10)
+ * ils.bulkhead.max-concurrent.&lt;op&gt;   the same for a single operation, e.g. 'ils.bulkhead.max-concurrent.newfee'
+ * ils.bulkhead.max-wait                milliseconds to wait for a free slot (default: 0)
+ * </pre>
+ */
+public class ResilientIntegratedLibrarySystem implements IntegratedLibrarySystem {
+
+    private static final String[] OPERATIONS = { "signup", "newpatron", "updatepatron", "blockpatron", "unblockpatron", "deletepatron", "newfee", "patron", "fees", "newpatrons", "updatepatrons" };
+
+    public enum State {
+
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private interface Call<T> {
+
+        T call() throws ILSException;
+    }
+
+    private final IntegratedLibrarySystem delegate;
+
+    private final Map<String, Circuit> circuits = new LinkedHashMap<>();
+
+    private static Logger logger = Logger.getLogger(ResilientIntegratedLibrarySystem.class.getName());
+
+    public ResilientIntegratedLibrarySystem(IntegratedLibrarySystem delegate, Properties properties) {
+
+        this.delegate = delegate;
+
+        int failureThreshold = Integer.parseInt(properties.getProperty("ils.circuit.failure-threshold", "5"));
+        long openDuration = Long.parseLong(properties.getProperty("ils.circuit.open-duration", "30000"));
+        int halfOpenCalls = Integer.parseInt(properties.getProperty("ils.circuit.half-open-calls", "1"));
+        String maxConcurrent = properties.getProperty("ils.bulkhead.max-concurrent", "10");
+        long maxWait = Long.parseLong(properties.getProperty("ils.bulkhead.max-wait", "0"));
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+
+        for (String operation : OPERATIONS) {
+
+            Circuit circuit = new Circuit(operation, failureThreshold, openDuration, halfOpenCalls,
+                    Integer.parseInt(properties.getProperty("ils.bulkhead.max-concurrent." + operation, maxConcurrent)), maxWait);
+
+            this.circuits.put(operation, circuit);
+
+            metricsRegistry.gauge("paaa_ils_circuit_state", "State of the ILS circuit (0 = closed, 1 = half-open, 2 = open)", () -> circuit.getState().ordinal(), "operation", operation);
+            metricsRegistry.gauge("paaa_ils_in_flight", "ILS calls in flight", circuit::getInFlight, "operation", operation);
+            metricsRegistry.gauge("paaa_ils_rejected_total", "ILS calls rejected by circuit breaker or bulkhead", circuit::getRejected, "operation", operation);
+        }
+    }
+
+    public IntegratedLibrarySystem getDelegate() {
+
+        return delegate;
+    }
+
+    /**
+     * @return the circuits by operation, e.g. for /health
+     */
+    public Map<String, Circuit> getCircuits() {
+
+        return circuits;
+    }
+
+    @Override
+    public void init(Properties properties) {
+
+        this.delegate.init(properties);
+    }
+
+    @Override
+    public void start(Properties properties) {
+
+        this.delegate.start(properties);
+    }
+
+    @Override
+    public void stop() {
+
+        this.delegate.stop();
+    }
+
+    @Override
+    public HashMap<String, String> health(Properties properties) {
+
+        return this.delegate.health(properties);
+    }
+
+    @Override
+    public Patron signup(Patron patron) throws ILSException {
+
+        return this.call("signup", () -> this.delegate.signup(patron));
+    }
+
+    @Override
+    public Patron newpatron(Patron patron) throws ILSException {
+
+        return this.call("newpatron", () -> this.delegate.newpatron(patron));
+    }
+
+    @Override
+    public Patron updatepatron(Patron patron) throws ILSException {
+
+        return this.call("updatepatron", () -> this.delegate.updatepatron(patron));
+    }
+
+    @Override
+    public Patron blockpatron(Patron patron, Block block) throws ILSException {
+
+        return this.call("blockpatron", () -> this.delegate.blockpatron(patron, block));
+    }
+
+    @Override
+    public Patron unblockpatron(Patron patron, Block block) throws ILSException {
+
+        return this.call("unblockpatron", () -> this.delegate.unblockpatron(patron, block));
+    }
+
+    @Override
+    public Patron deletepatron(Patron patron) throws ILSException {
+
+        return this.call("deletepatron", () -> this.delegate.deletepatron(patron));
+    }
+
+    @Override
+    public Fee newfee(Patron patron, Fee fee) throws ILSException {
+
+        return this.call("newfee", () -> this.delegate.newfee(patron, fee));
+    }
+
+    @Override
+    public Patron patron(Patron patron) throws ILSException {
+
+        return this.call("patron", () -> this.delegate.patron(patron));
+    }
+
+    @Override
+    public FeeList fees(Patron patron) throws ILSException {
+
+        return this.call("fees", () -> this.delegate.fees(patron));
+    }
+
+    @Override
+    public List<BulkResult> newpatrons(List<Patron> patrons) {
+
+        return this.bulk("newpatrons", patrons, this.delegate::newpatrons);
+    }
+
+    @Override
+    public List<BulkResult> updatepatrons(List<Patron> patrons) {
+
+        return this.bulk("updatepatrons", patrons, this.delegate::updatepatrons);
+    }
+
+    private <T> T call(String operation, Call<T> call) throws ILSException {
+
+        Circuit circuit = this.circuits.get(operation);
+        boolean trial = circuit.acquire();
+
+        try {
+
+            T result = call.call();
+            circuit.onSuccess();
+
+            return result;
+        }
+        catch (ILSUnavailableException e) {
+
+            // the call did not reach the ILS, e.g. its connection pool was exhausted
+            circuit.onUnavailable(trial);
+            throw e;
+        }
+        catch (ILSException e) {
+
+            if ("403".equals(e.getMessage()) || "501".equals(e.getMessage())) {
+                circuit.onSuccess();
+            }
+            else {
+                circuit.onFailure();
+            }
+
+            throw e;
+        }
+        catch (RuntimeException | Error e) {
+
+            // Errors included: otherwise a failed trial would keep the circuit half-open
+            circuit.onFailure();
+            throw e;
+        }
+        finally {
+
+            circuit.release();
+        }
+    }
+
+    /**
+     * A batch counts as failed if every record failed with 500; if the circuit is open, every record fails with 503.
+     */
+    private List<BulkResult> bulk(String operation, List<Patron> patrons, Function<List<Patron>, List<BulkResult>> call) {
+
+        Circuit circuit = this.circuits.get(operation);
+
+        try {
+
+            circuit.acquire();
+        }
+        catch (ILSUnavailableException e) {
+
+            List<BulkResult> results = new ArrayList<>(patrons.size());
+
+            for (Patron patron : patrons) {
+                results.add(BulkResult.failure(patron.getAccount(), 503, e.getMessage()));
+            }
+
+            return results;
+        }
+
+        try {
+
+            List<BulkResult> results = call.apply(patrons);
+
+            if (!results.isEmpty() && results.stream().allMatch(result -> result.getCode() == 500)) {
+                circuit.onFailure();
+            }
+            else {
+                circuit.onSuccess();
+            }
+
+            return results;
+        }
+        catch (RuntimeException | Error e) {
+
+            circuit.onFailure();
+            throw e;
+        }
+        finally {
+
+            circuit.release();
+        }
+    }
+
+    /**
+     * Circuit breaker and bulkhead of a single operation.
+     */
+    public static class Circuit {
+
+        private final String operation;
+        private final int failureThreshold;
+        private final long openDuration;
+        private final int halfOpenCalls;
+        private final int maxConcurrent;
+        private final long maxWait;
+
+        private final Semaphore bulkhead;
+        private final LongAdder rejected = new LongAdder();
+
+        private volatile State state = State.CLOSED;
+        private volatile int failures = 0;
+        private volatile long openedAt = 0;
+        private volatile LocalDateTime lastTransition = null;
+        private int trials = 0;
+
+        Circuit(String operation, int failureThreshold, long openDuration, int halfOpenCalls, int maxConcurrent, long maxWait) {
+
+            this.operation = operation;
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+            this.halfOpenCalls = halfOpenCalls;
+            this.maxConcurrent = maxConcurrent;
+            this.maxWait = maxWait;
+            this.bulkhead = new Semaphore(maxConcurrent);
+        }
+
+        /**
+         * @return true if the call is one of the 'ils.circuit.half-open-calls' trials of the half-open circuit
+         * @throws ILSUnavailableException if the circuit is open or the bulkhead is full
+         */
+        boolean acquire() throws ILSUnavailableException {
+
+            boolean trial = false;
+
+            if (this.state != State.CLOSED) {
+
+                synchronized (this) {
+
+                    if (this.state == State.OPEN) {
+
+                        long remaining = this.openedAt + this.openDuration - System.currentTimeMillis();
+
+                        if (remaining > 0) {
+
+                            this.rejected.increment();
+                            throw new ILSUnavailableException("ILS circuit for '" + this.operation + "' is open", remaining);
+                        }
+
+                        this.transition(State.HALF_OPEN);
+                    }
+
+                    if (this.state == State.HALF_OPEN) {
+
+                        if (this.trials >= this.halfOpenCalls) {
+
+                            this.rejected.increment();
+                            throw new ILSUnavailableException("ILS circuit for '" + this.operation + "' is half-open", this.openDuration);
+                        }
+
+                        this.trials++;
+                        trial = true;
+                    }
+                }
+            }
+
+            boolean acquired;
+
+            try {
+
+                acquired = this.maxWait > 0 ? this.bulkhead.tryAcquire(this.maxWait, TimeUnit.MILLISECONDS) : this.bulkhead.tryAcquire();
+            }
+            catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+
+            if (!acquired) {
+
+                if (trial) {
+
+                    synchronized (this) {
+                        this.trials--;
+                    }
+                }
+
+                this.rejected.increment();
+                throw new ILSUnavailableException("Too many ILS calls for '" + this.operation + "' in flight", 1000);
+            }
+
+            return trial;
+        }
+
+        void release() {
+
+            this.bulkhead.release();
+        }
+
+        void onSuccess() {
+
+            if (this.state == State.CLOSED && this.failures == 0) {
+                return;
+            }
+
+            synchronized (this) {
+
+                this.failures = 0;
+
+                if (this.state == State.HALF_OPEN) {
+                    this.transition(State.CLOSED);
+                }
+            }
+        }
+
+        /**
+         * Neither success nor failure: the call was not made. A trial is handed on to the next call.
+         */
+        void onUnavailable(boolean trial) {
+
+            if (trial) {
+
+                synchronized (this) {
+
+                    if (this.state == State.HALF_OPEN && this.trials > 0) {
+                        this.trials--;
+                    }
+                }
+            }
+        }
+
+        void onFailure() {
+
+            synchronized (this) {
+
+                if (this.state == State.HALF_OPEN) {
+
+                    this.transition(State.OPEN);
+                }
+                else if (this.state == State.CLOSED && ++this.failures >= this.failureThreshold) {
+
+                    this.transition(State.OPEN);
+                }
+            }
+        }
+
+        private void transition(State state) {
+
+            logger.warn("ILS circuit for '" + this.operation + "': " + this.state + " -> " + state + (state == State.OPEN ? " after " + this.failures + " failures" : ""));
+
+            this.state = state;
+            this.lastTransition = LocalDateTime.now();
+            this.trials = 0;
+
+            if (state == State.OPEN) {
+                this.openedAt = System.currentTimeMillis();
+            }
+            else if (state == State.CLOSED) {
+                this.failures = 0;
+            }
+        }
+
+        public String getOperation() {
+
+            return operation;
+        }
+
+        public State getState() {
+
+            return state;
+        }
+
+        public int getFailures() {
+
+            return failures;
+        }
+
+        public int getInFlight() {
+
+            return this.maxConcurrent - this.bulkhead.availablePermits();
+        }
+
+        public long getRejected() {
+
+            return this.rejected.sum();
+        }
+
+        /**
+         * @return time of the last state change, <code>null</code> if the circuit has always been closed
+         */
+        public LocalDateTime getLastTransition() {
+
+            return lastTransition;
+        }
+    }
+}
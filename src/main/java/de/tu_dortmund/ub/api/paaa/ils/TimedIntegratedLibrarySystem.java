@@ -0,0 +1,203 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.api.paaa.ils;
+
+import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.BulkResult;
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.FeeList;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import de.tu_dortmund.ub.util.impl.Histogram;
+import de.tu_dortmund.ub.util.impl.MetricsRegistry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the duration of every call of the wrapped implementation as 'paaa_ils_duration_seconds' and failed
+ * calls as 'paaa_ils_errors_total', both labelled with the operation.
+ */
+public class TimedIntegratedLibrarySystem implements IntegratedLibrarySystem {
+
+    private static final String[] OPERATIONS = { "signup", "newpatron", "updatepatron", "blockpatron", "unblockpatron", "deletepatron", "newfee", "patron", "fees", "newpatrons", "updatepatrons" };
+
+    private interface Call<T> {
+
+        T call() throws ILSException;
+    }
+
+    private final IntegratedLibrarySystem delegate;
+
+    private final Map<String, Histogram> durations = new HashMap<>();
+    private final Map<String, LongAdder> errors = new HashMap<>();
+
+    public TimedIntegratedLibrarySystem(IntegratedLibrarySystem delegate) {
+
+        this.delegate = delegate;
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+
+        for (String operation : OPERATIONS) {
+
+            this.durations.put(operation, metricsRegistry.histogram("paaa_ils_duration_seconds", "Duration of ILS calls", "operation", operation));
+            this.errors.put(operation, metricsRegistry.counter("paaa_ils_errors_total", "ILS calls failed with an exception", "operation", operation));
+        }
+    }
+
+    public IntegratedLibrarySystem getDelegate() {
+
+        return delegate;
+    }
+
+    @Override
+    public void init(Properties properties) {
+
+        this.delegate.init(properties);
+    }
+
+    @Override
+    public void start(Properties properties) {
+
+        this.delegate.start(properties);
+    }
+
+    @Override
+    public void stop() {
+
+        this.delegate.stop();
+    }
+
+    @Override
+    public HashMap<String, String> health(Properties properties) {
+
+        return this.delegate.health(properties);
+    }
+
+    @Override
+    public Patron signup(Patron patron) throws ILSException {
+
+        return this.time("signup", () -> this.delegate.signup(patron));
+    }
+
+    @Override
+    public Patron newpatron(Patron patron) throws ILSException {
+
+        return this.time("newpatron", () -> this.delegate.newpatron(patron));
+    }
+
+    @Override
+    public Patron updatepatron(Patron patron) throws ILSException {
+
+        return this.time("updatepatron", () -> this.delegate.updatepatron(patron));
+    }
+
+    @Override
+    public Patron blockpatron(Patron patron, Block block) throws ILSException {
+
+        return this.time("blockpatron", () -> this.delegate.blockpatron(patron, block));
+    }
+
+    @Override
+    public Patron unblockpatron(Patron patron, Block block) throws ILSException {
+
+        return this.time("unblockpatron", () -> this.delegate.unblockpatron(patron, block));
+    }
+
+    @Override
+    public Patron deletepatron(Patron patron) throws ILSException {
+
+        return this.time("deletepatron", () -> this.delegate.deletepatron(patron));
+    }
+
+    @Override
+    public Fee newfee(Patron patron, Fee fee) throws ILSException {
+
+        return this.time("newfee", () -> this.delegate.newfee(patron, fee));
+    }
+
+    @Override
+    public Patron patron(Patron patron) throws ILSException {
+
+        return this.time("patron", () -> this.delegate.patron(patron));
+    }
+
+    @Override
+    public FeeList fees(Patron patron) throws ILSException {
+
+        return this.time("fees", () -> this.delegate.fees(patron));
+    }
+
+    @Override
+    public List<BulkResult> newpatrons(List<Patron> patrons) {
+
+        long start = System.nanoTime();
+
+        try {
+
+            return this.delegate.newpatrons(patrons);
+        }
+        finally {
+
+            this.durations.get("newpatrons").recordSince(start);
+        }
+    }
+
+    @Override
+    public List<BulkResult> updatepatrons(List<Patron> patrons) {
+
+        long start = System.nanoTime();
+
+        try {
+
+            return this.delegate.updatepatrons(patrons);
+        }
+        finally {
+
+            this.durations.get("updatepatrons").recordSince(start);
+        }
+    }
+
+    private <T> T time(String operation, Call<T> call) throws ILSException {
+
+        long start = System.nanoTime();
+
+        try {
+
+            return call.call();
+        }
+        catch (ILSException | RuntimeException e) {
+
+            this.errors.get(operation).increment();
+            throw e;
+        }
+        finally {
+
+            this.durations.get(operation).recordSince(start);
+        }
+    }
+}
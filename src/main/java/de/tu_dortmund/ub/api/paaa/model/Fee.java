@@ -28,11 +28,13 @@ package de.tu_dortmund.ub.api.paaa.model;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
 
 /**
  * @author Hans-Georg Becker
  * @version 0.9.3 (2015-02-03)
  */
+@XmlRootElement(name = "Fee")
 @JsonSerialize(include= JsonSerialize.Inclusion.NON_NULL)
 public class Fee {
 
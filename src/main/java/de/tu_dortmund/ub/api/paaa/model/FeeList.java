@@ -28,12 +28,14 @@ package de.tu_dortmund.ub.api.paaa.model;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
 import java.util.ArrayList;
 
 /**
  * @author Hans-Georg Becker
  * @version 0.9.3 (2015-02-03)
  */
+@XmlRootElement(name = "FeeList")
 @JsonSerialize(include= JsonSerialize.Inclusion.NON_NULL)
 public class FeeList {
 
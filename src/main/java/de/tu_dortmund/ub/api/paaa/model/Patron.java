@@ -392,4 +392,107 @@ public class Patron {
     public void setBlock(Block block) {
         this.block = block;
     }
+
+    /**
+     * Applies the fields set in <code>patron</code> to this patron (last writer wins). The fields are assigned
+     * directly, because some setters convert the date formats.
+     *
+     * @param patron a later update of the same account
+     */
+    public void merge(Patron patron) {
+
+        if (patron.username != null) {
+            this.username = patron.username;
+        }
+        if (patron.userpassword != null) {
+            this.userpassword = patron.userpassword;
+        }
+        if (patron.name != null) {
+            this.name = patron.name;
+        }
+        if (patron.givenname != null) {
+            this.givenname = patron.givenname;
+        }
+        if (patron.surname != null) {
+            this.surname = patron.surname;
+        }
+        if (patron.gender != null) {
+            this.gender = patron.gender;
+        }
+        if (patron.dateofbirth != null) {
+            this.dateofbirth = patron.dateofbirth;
+        }
+        if (patron.persontitle != null) {
+            this.persontitle = patron.persontitle;
+        }
+        if (patron.email != null) {
+            this.email = patron.email;
+        }
+        if (patron.country != null) {
+            this.country = patron.country;
+        }
+        if (patron.city != null) {
+            this.city = patron.city;
+        }
+        if (patron.postalcode != null) {
+            this.postalcode = patron.postalcode;
+        }
+        if (patron.street != null) {
+            this.street = patron.street;
+        }
+        if (patron.addresssupplement != null) {
+            this.addresssupplement = patron.addresssupplement;
+        }
+        if (patron.phone != null) {
+            this.phone = patron.phone;
+        }
+        if (patron.country2 != null) {
+            this.country2 = patron.country2;
+        }
+        if (patron.city2 != null) {
+            this.city2 = patron.city2;
+        }
+        if (patron.postalcode2 != null) {
+            this.postalcode2 = patron.postalcode2;
+        }
+        if (patron.street2 != null) {
+            this.street2 = patron.street2;
+        }
+        if (patron.addresssupplement2 != null) {
+            this.addresssupplement2 = patron.addresssupplement2;
+        }
+        if (patron.phone2 != null) {
+            this.phone2 = patron.phone2;
+        }
+        if (patron.role != null) {
+            this.role = patron.role;
+        }
+        if (patron.usergroup != null) {
+            this.usergroup = patron.usergroup;
+        }
+        if (patron.externalid != null) {
+            this.externalid = patron.externalid;
+        }
+        if (patron.faculty != null) {
+            this.faculty = patron.faculty;
+        }
+        if (patron.status != null) {
+            this.status = patron.status;
+        }
+        if (patron.statusdate != null) {
+            this.statusdate = patron.statusdate;
+        }
+        if (patron.cardExpiry != null) {
+            this.cardExpiry = patron.cardExpiry;
+        }
+        if (patron.expires != null) {
+            this.expires = patron.expires;
+        }
+        if (patron.opacpin != null) {
+            this.opacpin = patron.opacpin;
+        }
+        if (patron.block != null) {
+            this.block = patron.block;
+        }
+    }
 }
@@ -24,10 +24,13 @@ SOFTWARE.
 
 package de.tu_dortmund.ub.api.paaa.model;
 
+import javax.xml.bind.annotation.XmlRootElement;
+
 /**
  * @author Hans-Georg Becker
  * @version 0.9.3 (2015-02-03)
  */
+@XmlRootElement(name = "RequestError")
 public class RequestError {
 
     private String error;
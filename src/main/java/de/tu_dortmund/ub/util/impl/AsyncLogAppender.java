@@ -0,0 +1,416 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.EnhancedPatternLayout;
+import org.apache.log4j.HTMLLayout;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.xml.XMLLayout;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Writes log events in the background.
+ *
+ * {@link #append(LoggingEvent)} never blocks the request thread: events go into a bounded ring buffer and are
+ * dropped (and counted) if it is full. One dispatcher thread passes them on to the attached appenders, i.e. file
+ * and console I/O happen off the request path. Class, file, line and method of the caller are only determined (on
+ * the calling thread) if the layout of an attached appender prints them.
+ *
+ * During an ILS outage every request fails with the same error; identical WARN and ERROR lines (same logger, same
+ * message) within the duplicate window are therefore written only once. The number of suppressed lines is logged
+ * with the next occurrence after the window, or on {@link #close()}.
+ */
+public class AsyncLogAppender extends AppenderSkeleton implements AppenderAttachable {
+
+    private static class Seen {
+
+        private final long since;
+        private final LoggingEvent event;
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private Seen(long since, LoggingEvent event) {
+
+            this.since = since;
+            this.event = event;
+        }
+    }
+
+    /**
+     * conversion characters of PatternLayout for class, file, location, line and method of the caller
+     */
+    private static final Pattern LOCATION = Pattern.compile("%[-.0-9]*[CFlLM]");
+
+    private final AppenderAttachableImpl appenders = new AppenderAttachableImpl();
+    private final BlockingQueue<LoggingEvent> queue;
+    private final long duplicateWindow;
+
+    private final Map<String, Seen> seen = new ConcurrentHashMap<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private volatile boolean locationInfo = false;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public AsyncLogAppender(int bufferSize, long duplicateWindow) {
+
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.duplicateWindow = duplicateWindow;
+        this.setName("async");
+
+        this.dispatcher = new Thread(this::run, "log-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    protected void append(LoggingEvent event) {
+
+        this.appended.incrementAndGet();
+
+        // der Aufrufer steht nur im Stack dieses Threads; auch für spätere Wiederholungen dieses Events
+        if (this.locationInfo) {
+            event.getLocationInformation();
+        }
+
+        if (this.duplicateWindow > 0 && event.getLevel().isGreaterOrEqual(Level.WARN)) {
+
+            event = this.deduplicate(event);
+
+            if (event == null) {
+                return;
+            }
+        }
+
+        // alles, was vom Thread oder vom Zeitpunkt abhängt, jetzt auswerten
+        event.getNDC();
+        event.getThreadName();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        event.getThrowableStrRep();
+
+        if (!this.queue.offer(event)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the event to log (possibly with a note about suppressed duplicates) or null if it is a duplicate
+     */
+    private LoggingEvent deduplicate(LoggingEvent event) {
+
+        String key = event.getLoggerName() + '\n' + event.getRenderedMessage();
+        long now = event.getTimeStamp();
+        long[] suppressed = { -1 };
+
+        this.seen.compute(key, (k, previous) -> {
+
+            if (previous != null && now - previous.since < this.duplicateWindow) {
+
+                previous.suppressed.incrementAndGet();
+                return previous;
+            }
+
+            suppressed[0] = previous != null ? previous.suppressed.get() : 0;
+            return new Seen(now, event);
+        });
+
+        if (suppressed[0] < 0) {
+
+            this.deduplicated.incrementAndGet();
+            return null;
+        }
+
+        if (suppressed[0] > 0) {
+            return this.repeated(event, suppressed[0]);
+        }
+
+        if (this.seen.size() > 1000) {
+            this.expire(now);
+        }
+
+        return event;
+    }
+
+    private LoggingEvent repeated(LoggingEvent event, long suppressed) {
+
+        return new LoggingEvent(event.getFQNOfLoggerClass(), event.getLogger(), event.getTimeStamp(), event.getLevel(),
+                event.getRenderedMessage() + " (repeated " + suppressed + " times)", event.getThreadName(),
+                event.getThrowableInformation(), event.getNDC(),
+                event.locationInformationExists() ? event.getLocationInformation() : null, event.getProperties());
+    }
+
+    private void expire(long now) {
+
+        for (Iterator<Seen> iterator = this.seen.values().iterator(); iterator.hasNext(); ) {
+
+            Seen seen = iterator.next();
+
+            if (now - seen.since >= this.duplicateWindow && seen.suppressed.get() == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Writes what is buffered, reports suppressed duplicates and closes the attached appenders.
+     */
+    @Override
+    public void close() {
+
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        this.running = false;
+        this.dispatcher.interrupt();
+
+        try {
+
+            this.dispatcher.join(10000);
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        for (Seen seen : this.seen.values()) {
+
+            long suppressed = seen.suppressed.get();
+
+            if (suppressed > 0) {
+                this.dispatch(this.repeated(seen.event, suppressed));
+            }
+        }
+
+        this.seen.clear();
+
+        synchronized (this.appenders) {
+
+            Enumeration<?> appenders = this.appenders.getAllAppenders();
+
+            while (appenders != null && appenders.hasMoreElements()) {
+                ((Appender) appenders.nextElement()).close();
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresLayout() {
+
+        return false;
+    }
+
+    public long getAppended() {
+
+        return this.appended.get();
+    }
+
+    public long getDeduplicated() {
+
+        return this.deduplicated.get();
+    }
+
+    public long getDropped() {
+
+        return this.dropped.get();
+    }
+
+    public int getQueued() {
+
+        return this.queue.size();
+    }
+
+    private void run() {
+
+        List<LoggingEvent> batch = new ArrayList<>();
+        long reported = 0;
+
+        while (this.running || !this.queue.isEmpty()) {
+
+            try {
+
+                LoggingEvent event = this.queue.poll(1, TimeUnit.SECONDS);
+
+                if (event == null) {
+                    continue;
+                }
+
+                batch.add(event);
+                this.queue.drainTo(batch);
+            }
+            catch (InterruptedException e) {
+
+                // close(): Rest noch schreiben
+                this.queue.drainTo(batch);
+            }
+
+            long dropped = this.dropped.get();
+
+            if (dropped > reported) {
+
+                batch.add(new LoggingEvent(AsyncLogAppender.class.getName(), Logger.getLogger(AsyncLogAppender.class.getName()),
+                        Level.WARN, "Log buffer full: " + (dropped - reported) + " events dropped", null));
+                reported = dropped;
+            }
+
+            for (LoggingEvent event : batch) {
+                this.dispatch(event);
+            }
+
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return true if one of the attached appenders prints the location of the caller
+     */
+    private boolean requiresLocationInfo() {
+
+        Enumeration<?> appenders = this.appenders.getAllAppenders();
+
+        while (appenders != null && appenders.hasMoreElements()) {
+
+            Layout layout = ((Appender) appenders.nextElement()).getLayout();
+            String pattern = null;
+
+            if (layout instanceof PatternLayout) {
+                pattern = ((PatternLayout) layout).getConversionPattern();
+            }
+            else if (layout instanceof EnhancedPatternLayout) {
+                pattern = ((EnhancedPatternLayout) layout).getConversionPattern();
+            }
+            else if (layout instanceof HTMLLayout && ((HTMLLayout) layout).getLocationInfo()) {
+                return true;
+            }
+            else if (layout instanceof XMLLayout && ((XMLLayout) layout).getLocationInfo()) {
+                return true;
+            }
+
+            if (pattern != null && LOCATION.matcher(pattern).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void dispatch(LoggingEvent event) {
+
+        try {
+
+            synchronized (this.appenders) {
+                this.appenders.appendLoopOnAppenders(event);
+            }
+        }
+        catch (RuntimeException e) {
+
+            this.errorHandler.error("Dispatching log event failed", e, 0, event);
+        }
+    }
+
+    // AppenderAttachable
+
+    @Override
+    public void addAppender(Appender appender) {
+
+        synchronized (this.appenders) {
+            this.appenders.addAppender(appender);
+            this.locationInfo = this.requiresLocationInfo();
+        }
+    }
+
+    @Override
+    public Enumeration getAllAppenders() {
+
+        synchronized (this.appenders) {
+            return this.appenders.getAllAppenders();
+        }
+    }
+
+    @Override
+    public Appender getAppender(String name) {
+
+        synchronized (this.appenders) {
+            return this.appenders.getAppender(name);
+        }
+    }
+
+    @Override
+    public boolean isAttached(Appender appender) {
+
+        synchronized (this.appenders) {
+            return this.appenders.isAttached(appender);
+        }
+    }
+
+    @Override
+    public void removeAllAppenders() {
+
+        synchronized (this.appenders) {
+            this.appenders.removeAllAppenders();
+            this.locationInfo = this.requiresLocationInfo();
+        }
+    }
+
+    @Override
+    public void removeAppender(Appender appender) {
+
+        synchronized (this.appenders) {
+            this.appenders.removeAppender(appender);
+            this.locationInfo = this.requiresLocationInfo();
+        }
+    }
+
+    @Override
+    public void removeAppender(String name) {
+
+        synchronized (this.appenders) {
+            this.appenders.removeAppender(name);
+            this.locationInfo = this.requiresLocationInfo();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * One immutable snapshot of a configuration file, see {@link ConfigurationStore}.
+ *
+ * Values needed on every request (service name, CORS and cache headers) are read once when the snapshot is
+ * built; other values are available typed via {@link #getInt(String, int)} etc. or as a copy in {@link Properties}
+ * for the components configured at startup.
+ */
+public final class Configuration {
+
+    private final String file;
+    private final Map<String, String> values;
+
+    private final String serviceName;
+    private final String accessControlAllowMethods;
+    private final String accessControlAllowHeaders;
+    private final String accessControlAllowOrigin;
+    private final String accept;
+    private final String cacheControl;
+
+    public Configuration(String file, Properties properties) {
+
+        this.file = file;
+
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        this.values = Collections.unmodifiableMap(values);
+
+        this.serviceName = this.values.get("service.name");
+        this.accessControlAllowMethods = this.values.get("Access-Control-Allow-Methods");
+        this.accessControlAllowHeaders = this.values.get("Access-Control-Allow-Headers");
+        this.accessControlAllowOrigin = this.values.get("Access-Control-Allow-Origin");
+        this.accept = this.values.get("Accept");
+        this.cacheControl = this.values.get("Cache-Control");
+    }
+
+    /**
+     * @return the file this snapshot was read from
+     */
+    public String getFile() {
+
+        return this.file;
+    }
+
+    /**
+     * @return a copy of the snapshot as Properties, e.g. for the init() of an adapter; changes to the copy do not
+     *         affect the snapshot
+     */
+    public Properties getProperties() {
+
+        Properties properties = new Properties();
+        properties.putAll(this.values);
+
+        return properties;
+    }
+
+    public String getString(String key) {
+
+        return this.values.get(key);
+    }
+
+    public String getString(String key, String defaultValue) {
+
+        return this.values.getOrDefault(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+
+        return this.get(key, Integer::valueOf, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+
+        return this.get(key, Long::valueOf, defaultValue);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+
+        return this.get(key, Boolean::valueOf, defaultValue);
+    }
+
+    public String getServiceName() {
+
+        return this.serviceName;
+    }
+
+    public String getAccessControlAllowMethods() {
+
+        return this.accessControlAllowMethods;
+    }
+
+    public String getAccessControlAllowHeaders() {
+
+        return this.accessControlAllowHeaders;
+    }
+
+    public String getAccessControlAllowOrigin() {
+
+        return this.accessControlAllowOrigin;
+    }
+
+    public String getAccept() {
+
+        return this.accept;
+    }
+
+    public String getCacheControl() {
+
+        return this.cacheControl;
+    }
+
+    private <T> T get(String key, Function<String, T> parser, T defaultValue) {
+
+        String value = this.values.get(key);
+
+        return value != null ? parser.apply(value.trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Holds the current {@link Configuration} of a configuration file.
+ *
+ * Every file is read once per JVM, no matter how many components ask for it ({@link #of(String)}); all of them
+ * share the same snapshot. With {@link #watch()} the file is watched for changes: a changed file is read into a
+ * new snapshot, which replaces the old one atomically, and the listeners are notified. A file that cannot be read
+ * keeps the previous snapshot.
+ *
+ * Only values that are read per request (headers, error texts) take effect without a restart; pool sizes, ports
+ * etc. are read when the components are created. Configuration (e.g. in 'paaa.properties'):
+ *
+ * <pre>
+ * service.config.watch    reload the file when it changes (default: true)
+ * </pre>
+ */
+public final class ConfigurationStore {
+
+    private static final Map<Path, ConfigurationStore> STORES = new ConcurrentHashMap<>();
+
+    private static Logger logger = Logger.getLogger(ConfigurationStore.class.getName());
+
+    private final Path path;
+    private final AtomicReference<Configuration> current = new AtomicReference<>();
+    private final List<Consumer<Configuration>> listeners = new CopyOnWriteArrayList<>();
+    private Thread watcher;
+
+    private ConfigurationStore(Path path) {
+
+        this.path = path;
+
+        try {
+
+            this.current.set(this.read());
+        }
+        catch (IOException e) {
+
+            System.out.println("FATAL ERROR: Die Datei '" + path + "' konnte nicht geöffnet werden!");
+            this.current.set(new Configuration(path.toString(), new Properties()));
+        }
+    }
+
+    /**
+     * @return the store of the file, reading it on first use
+     */
+    public static ConfigurationStore of(String file) {
+
+        Path path = Paths.get(file).toAbsolutePath().normalize();
+
+        return STORES.computeIfAbsent(path, ConfigurationStore::new);
+    }
+
+    /**
+     * @return the current snapshot
+     */
+    public Configuration get() {
+
+        return this.current.get();
+    }
+
+    /**
+     * Registers a listener which is called with every new snapshot.
+     */
+    public void addListener(Consumer<Configuration> listener) {
+
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Configuration> listener) {
+
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Reads the file again and replaces the snapshot.
+     *
+     * @return the new snapshot, or the previous one if the file cannot be read
+     */
+    public Configuration reload() {
+
+        Configuration configuration;
+
+        try {
+
+            configuration = this.read();
+        }
+        catch (IOException e) {
+
+            logger.error("Reloading '" + this.path + "' failed: " + e.getMessage());
+            return this.current.get();
+        }
+
+        this.current.set(configuration);
+        logger.info("Reloaded '" + this.path + "'");
+
+        for (Consumer<Configuration> listener : this.listeners) {
+
+            try {
+
+                listener.accept(configuration);
+            }
+            catch (RuntimeException e) {
+
+                logger.error("Applying '" + this.path + "' failed: " + e.getMessage(), e);
+            }
+        }
+
+        return configuration;
+    }
+
+    /**
+     * Starts watching the file unless 'service.config.watch = false'. Calling it again has no effect.
+     */
+    public synchronized void watch() {
+
+        if (this.watcher != null || !this.get().getBoolean("service.config.watch", true)) {
+            return;
+        }
+
+        WatchService watchService;
+
+        try {
+
+            watchService = FileSystems.getDefault().newWatchService();
+            this.path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException e) {
+
+            logger.error("Watching '" + this.path + "' failed: " + e.getMessage());
+            return;
+        }
+
+        this.watcher = new Thread(() -> this.run(watchService), "config-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    private void run(WatchService watchService) {
+
+        Path name = this.path.getFileName();
+
+        try {
+
+            while (!Thread.currentThread().isInterrupted()) {
+
+                WatchKey key = watchService.take();
+                boolean changed = false;
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+
+                    if (name.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+
+                if (changed) {
+
+                    // Editoren schreiben oft in mehreren Schritten
+                    Thread.sleep(100);
+                    key.pollEvents();
+
+                    this.reload();
+                }
+
+                if (!key.reset()) {
+                    break;
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Configuration read() throws IOException {
+
+        Properties properties = new Properties();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(this.path), StandardCharsets.UTF_8))) {
+            properties.load(reader);
+        }
+
+        return new Configuration(this.path.toString(), properties);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-scaled buckets (1-2.5-5 steps from 100 µs to 60 s).
+ *
+ * Recording is a binary search and two LongAdder increments, so it can be called on every request. The buckets
+ * are exported as a Prometheus histogram by {@link MetricsRegistry}.
+ */
+public class Histogram {
+
+    /**
+     * Upper bounds of the buckets in microseconds; values above the last bound only count in '+Inf'.
+     */
+    static final long[] BOUNDS = {
+            100, 250, 500,
+            1000, 2500, 5000,
+            10000, 25000, 50000,
+            100000, 250000, 500000,
+            1000000, 2500000, 5000000,
+            10000000, 25000000, 60000000
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos duration, e.g. the difference of two System.nanoTime() values
+     */
+    public void record(long nanos) {
+
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+
+        this.buckets[bucket(micros)].increment();
+        this.count.increment();
+        this.sum.add(micros);
+        this.max.accumulate(micros);
+    }
+
+    /**
+     * Records the time since <code>startNanos</code>.
+     */
+    public void recordSince(long startNanos) {
+
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+
+        return this.count.sum();
+    }
+
+    /**
+     * @return sum of all recorded durations in microseconds
+     */
+    public long getSum() {
+
+        return this.sum.sum();
+    }
+
+    /**
+     * @return the longest recorded duration in microseconds
+     */
+    public long getMax() {
+
+        return this.max.get();
+    }
+
+    /**
+     * @return cumulative counts per bucket, the last one being '+Inf'
+     */
+    public long[] getCumulativeCounts() {
+
+        long[] counts = new long[this.buckets.length];
+        long total = 0;
+
+        for (int i = 0; i < this.buckets.length; i++) {
+
+            total += this.buckets[i].sum();
+            counts[i] = total;
+        }
+
+        return counts;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return upper bound (microseconds) of the bucket containing the quantile, or the maximum for the last bucket
+     */
+    public long getQuantile(double quantile) {
+
+        long[] counts = this.getCumulativeCounts();
+        long total = counts[counts.length - 1];
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(quantile * total);
+
+        for (int i = 0; i < BOUNDS.length; i++) {
+
+            if (counts[i] >= rank) {
+                return Math.min(BOUNDS[i], this.getMax());
+            }
+        }
+
+        return this.getMax();
+    }
+
+    static int bucket(long micros) {
+
+        int low = 0;
+        int high = BOUNDS.length;
+
+        // first bound >= micros
+        while (low < high) {
+
+            int mid = (low + high) >>> 1;
+
+            if (BOUNDS[mid] < micros) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
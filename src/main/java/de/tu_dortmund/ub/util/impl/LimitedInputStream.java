@@ -0,0 +1,112 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream which fails with a {@link LimitExceededException} as soon as more than <code>limit</code> bytes
+ * are read from the underlying stream.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long count = 0;
+    private long mark = 0;
+
+    public LimitedInputStream(InputStream in, long limit) {
+
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        int b = super.read();
+
+        if (b >= 0) {
+            this.count(1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int n = super.read(b, off, len);
+
+        if (n > 0) {
+            this.count(n);
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+        long skipped = super.skip(n);
+        this.count(skipped);
+
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+
+        super.mark(readlimit);
+        this.mark = this.count;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+
+        super.reset();
+        this.count = this.mark;
+    }
+
+    private void count(long n) throws LimitExceededException {
+
+        this.count += n;
+
+        if (this.count > this.limit) {
+            throw new LimitExceededException(this.limit);
+        }
+    }
+
+    public static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = -3816386405233155307L;
+
+        public LimitExceededException(long limit) {
+
+            super("Input exceeds the limit of " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Configures log4j once per JVM.
+ *
+ * Endpoints, service and mailer all call {@link #configure(Properties)}; only the first call reads the log4j
+ * configuration, the later ones are ignored. Afterwards the appenders of the root logger are moved behind an
+ * {@link AsyncLogAppender}. Configuration (e.g. in 'paaa.properties'):
+ *
+ * <pre>
+ * service.log4j-conf              log4j configuration file
+ * service.log.async               write log events in the background (default: true)
+ * service.log.buffer-size         events waiting to be written; more are dropped (default: 8192)
+ * service.log.duplicate-window    milliseconds in which identical WARN/ERROR lines are written only once
+ *                                 (default: 10000, 0 = off)
+ * </pre>
+ */
+public final class LogConfigurator {
+
+    private static boolean configured = false;
+    private static AsyncLogAppender appender;
+
+    private LogConfigurator() {
+    }
+
+    public static synchronized void configure(Properties config) {
+
+        if (configured) {
+            return;
+        }
+
+        configured = true;
+
+        if (config.getProperty("service.log4j-conf") != null) {
+            PropertyConfigurator.configure(config.getProperty("service.log4j-conf"));
+        }
+
+        if (Boolean.parseBoolean(config.getProperty("service.log.async", "true"))) {
+
+            Logger root = Logger.getRootLogger();
+
+            List<Appender> appenders = new ArrayList<>();
+
+            for (Enumeration<?> e = root.getAllAppenders(); e.hasMoreElements(); ) {
+                appenders.add((Appender) e.nextElement());
+            }
+
+            if (!appenders.isEmpty()) {
+
+                appender = new AsyncLogAppender(
+                        Integer.parseInt(config.getProperty("service.log.buffer-size", "8192")),
+                        Long.parseLong(config.getProperty("service.log.duplicate-window", "10000")));
+
+                for (Appender a : appenders) {
+
+                    root.removeAppender(a);
+                    appender.addAppender(a);
+                }
+
+                root.addAppender(appender);
+
+                Runtime.getRuntime().addShutdownHook(new Thread(LogManager::shutdown, "log-shutdown"));
+            }
+        }
+    }
+
+    /**
+     * @return the background appender or null if logging is synchronous
+     */
+    public static synchronized AsyncLogAppender getAsyncAppender() {
+
+        return appender;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import org.apache.log4j.Logger;
+
+import javax.mail.MessagingException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends error mails in the background.
+ *
+ * {@link #submit(String, String)} never blocks: messages go into a bounded queue and are dropped if it is full.
+ * A message with the same subject as one sent within the dedupe window is only counted. Messages arriving within
+ * the digest interval are sent together as one mail. Configuration (e.g. in 'paaa.properties'):
+ *
+ * <pre>
+ * mail.queue-size       messages waiting to be sent (default: 100)
+ * mail.dedupe-window    milliseconds in which identical subjects are sent only once (default: 300000)
+ * mail.digest-interval  milliseconds to collect messages for one mail (default: 60000)
+ * mail.digest-max       maximum number of messages in one mail (default: 50)
+ * </pre>
+ */
+public class MailDispatcher {
+
+    /**
+     * Delivers one mail, e.g. {@link Mailer#send(String, String)}.
+     */
+    public interface Sender {
+
+        void send(String subject, String message) throws MessagingException;
+    }
+
+    private static class Mail {
+
+        private final String subject;
+        private final String message;
+        private final long time = System.currentTimeMillis();
+
+        private Mail(String subject, String message) {
+
+            this.subject = subject;
+            this.message = message;
+        }
+    }
+
+    private static class Seen {
+
+        private final long since;
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private Seen(long since) {
+
+            this.since = since;
+        }
+    }
+
+    private Logger logger = Logger.getLogger(MailDispatcher.class.getName());
+
+    private final Sender sender;
+    private final BlockingQueue<Mail> queue;
+    private final long dedupeWindow;
+    private final long digestInterval;
+    private final int digestMax;
+
+    private final Map<String, Seen> seen = new ConcurrentHashMap<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public MailDispatcher(Sender sender, Properties config) {
+
+        this(sender,
+                Integer.parseInt(config.getProperty("mail.queue-size", "100")),
+                Long.parseLong(config.getProperty("mail.dedupe-window", "300000")),
+                Long.parseLong(config.getProperty("mail.digest-interval", "60000")),
+                Integer.parseInt(config.getProperty("mail.digest-max", "50")));
+    }
+
+    public MailDispatcher(Sender sender, int queueSize, long dedupeWindow, long digestInterval, int digestMax) {
+
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.dedupeWindow = dedupeWindow;
+        this.digestInterval = digestInterval;
+        this.digestMax = digestMax;
+
+        this.worker = new Thread(this::run, "mail-dispatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queues a mail without blocking.
+     *
+     * @return false if the mail was a duplicate or the queue is full
+     */
+    public boolean submit(String subject, String message) {
+
+        this.submitted.incrementAndGet();
+
+        long now = System.currentTimeMillis();
+        long[] suppressed = { -1 };
+
+        this.seen.compute(subject, (key, previous) -> {
+
+            if (previous != null && now - previous.since < this.dedupeWindow) {
+
+                previous.suppressed.incrementAndGet();
+                return previous;
+            }
+
+            suppressed[0] = previous != null ? previous.suppressed.get() : 0;
+            return new Seen(now);
+        });
+
+        if (suppressed[0] < 0) {
+
+            this.deduplicated.incrementAndGet();
+            return false;
+        }
+
+        if (suppressed[0] > 0) {
+            message = "(" + suppressed[0] + " identical messages suppressed before this one)\n\n" + message;
+        }
+
+        if (!this.queue.offer(new Mail(subject, message))) {
+
+            this.dropped.incrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Sends what is queued and stops the worker.
+     */
+    public void close() {
+
+        this.running = false;
+        this.worker.interrupt();
+
+        try {
+
+            this.worker.join(10000);
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getSubmitted() {
+
+        return this.submitted.get();
+    }
+
+    public long getDeduplicated() {
+
+        return this.deduplicated.get();
+    }
+
+    public long getDropped() {
+
+        return this.dropped.get();
+    }
+
+    public long getSent() {
+
+        return this.sent.get();
+    }
+
+    public long getFailed() {
+
+        return this.failed.get();
+    }
+
+    public int getQueued() {
+
+        return this.queue.size();
+    }
+
+    private void run() {
+
+        List<Mail> digest = new ArrayList<>();
+
+        while (this.running || !this.queue.isEmpty()) {
+
+            try {
+
+                if (this.running) {
+
+                    Mail first = this.queue.take();
+                    digest.add(first);
+
+                    // collect further messages for the digest
+                    long deadline = first.time + this.digestInterval;
+                    while (this.running && digest.size() < this.digestMax) {
+
+                        long wait = deadline - System.currentTimeMillis();
+                        Mail next = wait > 0 ? this.queue.poll(wait, TimeUnit.MILLISECONDS) : this.queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        digest.add(next);
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+
+                // close(): send the rest
+            }
+
+            this.queue.drainTo(digest, Math.max(0, this.digestMax - digest.size()));
+
+            if (!digest.isEmpty()) {
+
+                this.send(digest);
+                digest.clear();
+            }
+
+            this.expire();
+        }
+    }
+
+    private void send(List<Mail> digest) {
+
+        String subject;
+        StringBuilder message = new StringBuilder();
+
+        if (digest.size() == 1) {
+
+            subject = digest.get(0).subject;
+            message.append(digest.get(0).message);
+        }
+        else {
+
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+            subject = digest.get(0).subject + " (+" + (digest.size() - 1) + " more)";
+            for (Mail mail : digest) {
+
+                message.append("=== ").append(simpleDateFormat.format(new Date(mail.time))).append(" ").append(mail.subject).append(" ===\n\n");
+                message.append(mail.message).append("\n\n");
+            }
+        }
+
+        try {
+
+            this.sender.send(subject, message.toString());
+            this.sent.incrementAndGet();
+        }
+        catch (MessagingException | RuntimeException e) {
+
+            this.failed.incrementAndGet();
+            this.logger.error("Sending mail '" + subject + "' failed: " + e.getMessage());
+        }
+    }
+
+    private void expire() {
+
+        long now = System.currentTimeMillis();
+
+        for (Iterator<Seen> iterator = this.seen.values().iterator(); iterator.hasNext(); ) {
+
+            // keep counts of suppressed messages a little longer for the next occurrence
+            Seen entry = iterator.next();
+            if (now - entry.since >= (entry.suppressed.get() == 0 ? this.dedupeWindow : 2 * this.dedupeWindow)) {
+                iterator.remove();
+            }
+        }
+    }
+}
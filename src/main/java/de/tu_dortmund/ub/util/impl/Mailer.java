@@ -1,7 +1,6 @@
 package de.tu_dortmund.ub.util.impl;
 
 import org.apache.log4j.Logger;
-import org.apache.log4j.PropertyConfigurator;
 
 import javax.mail.*;
 import javax.mail.internet.InternetAddress;
@@ -17,10 +16,12 @@ public class Mailer {
 
     private String propfile_api  = "";
 
-    private Properties apiProperties = new Properties();
+    private Properties apiProperties;
 
     private Logger logger = Logger.getLogger(Mailer.class.getName());
 
+    private Session session = null;
+
     public Mailer() throws IOException {
 
         this("../conf/mailer.properties");
@@ -32,29 +33,10 @@ public class Mailer {
         this.propfile_api = propfile_api;
 
         // Init properties
-        try {
-            InputStream inputStream = new FileInputStream(propfile_api);
-
-            try {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-
-                try {
-                    apiProperties.load(reader);
-
-                } finally {
-                    reader.close();
-                }
-            }
-            finally {
-                inputStream.close();
-            }
-        }
-        catch (IOException e) {
-            System.out.println("FATAL ERROR: Die Datei '" + propfile_api + "' konnte nicht geöffnet werden!");
-        }
+        this.apiProperties = ConfigurationStore.of(propfile_api).get().getProperties();
 
         // init logger
-        PropertyConfigurator.configure(apiProperties.getProperty("service.log4j-conf"));
+        LogConfigurator.configure(apiProperties);
 
         logger.info("Starting Mailer ... ");
         logger.info("conf-file = " + propfile_api);
@@ -85,32 +67,23 @@ public class Mailer {
         this.postMail(to,from,host,subject,message);
     }
 
-    public void postMail( String to, String from, String host, String subject, String message ) throws MessagingException {
+    /**
+     * Sends a mail to the configured recipient without swallowing errors; used by {@link MailDispatcher}.
+     */
+    public void send(String subject, String message) throws MessagingException {
 
-        // create some properties and get the default Session
-        Properties props = new Properties();
-        props.put("mail.smtp.host", host);
-        props.put("mail.debug", false);
+        String to = this.apiProperties.getProperty("to");
+        String from = this.apiProperties.getProperty("from");
+        String host = this.apiProperties.getProperty("host");
+
+        this.send(to, from, host, subject, message);
+    }
 
-        Session session = Session.getInstance(props, null);
-        session.setDebug(true);
+    public void postMail( String to, String from, String host, String subject, String message ) throws MessagingException {
 
         try {
-            // create a message
-            MimeMessage msg = new MimeMessage(session);
-            msg.setFrom(new InternetAddress(from));
-            //InternetAddress[] address = {new InternetAddress(to)};
-            msg.setRecipients(Message.RecipientType.TO, to);
-            msg.setSubject(subject);
-            msg.setSentDate(new Date());
-            if (message != null) {
-                msg.setText(message);
-            }
-            else {
-                msg.setText("");
-            }
-
-            Transport.send(msg);
+
+            this.send(to, from, host, subject, message);
 
         } catch (MessagingException mex) {
 
@@ -144,4 +117,41 @@ public class Mailer {
             } while (ex != null);
         }
     }
+
+    private void send(String to, String from, String host, String subject, String message) throws MessagingException {
+
+        // create a message
+        MimeMessage msg = new MimeMessage(this.session(host));
+        msg.setFrom(new InternetAddress(from));
+        //InternetAddress[] address = {new InternetAddress(to)};
+        msg.setRecipients(Message.RecipientType.TO, to);
+        msg.setSubject(subject);
+        msg.setSentDate(new Date());
+        if (message != null) {
+            msg.setText(message);
+        }
+        else {
+            msg.setText("");
+        }
+
+        Transport.send(msg);
+    }
+
+    /**
+     * The Session is created once per SMTP host and reused for all mails.
+     */
+    private synchronized Session session(String host) {
+
+        if (this.session == null || !host.equals(this.session.getProperty("mail.smtp.host"))) {
+
+            // create some properties and get the Session
+            Properties props = new Properties();
+            props.put("mail.smtp.host", host);
+            props.put("mail.debug", "false");
+
+            this.session = Session.getInstance(props, null);
+        }
+
+        return this.session;
+    }
 }
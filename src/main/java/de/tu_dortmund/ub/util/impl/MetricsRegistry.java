@@ -0,0 +1,197 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of counters, gauges and {@link Histogram}s, written in the Prometheus text format (0.0.4).
+ *
+ * Metrics are created on first use and identified by name and labels; labels are given as alternating names and
+ * values, e.g. <code>counter("paaa_requests_total", "...", "service", "newfee", "status", "200")</code>. Callers on
+ * hot paths with fixed labels should keep the returned LongAdder or Histogram.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private static class Family {
+
+        private final String name;
+        private final String help;
+        private final String type;
+        private final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+
+        private Family(String name, String help, String type) {
+
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+
+        return INSTANCE;
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+
+        return (LongAdder) this.family(name, help, "counter").series.computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+
+        return (Histogram) this.family(name, help, "histogram").series.computeIfAbsent(labels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Registers a value read when the metrics are written; replaces an earlier gauge with the same labels.
+     */
+    public void gauge(String name, String help, Supplier<? extends Number> supplier, String... labels) {
+
+        this.family(name, help, "gauge").series.put(labels(labels), supplier);
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text format.
+     */
+    public void write(Writer writer) throws IOException {
+
+        for (Family family : new TreeMap<>(this.families).values()) {
+
+            writer.write("# HELP " + family.name + " " + family.help + "\n");
+            writer.write("# TYPE " + family.name + " " + family.type + "\n");
+
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+
+                String labels = series.getKey();
+                Object metric = series.getValue();
+
+                if (metric instanceof LongAdder) {
+
+                    writer.write(family.name + braces(labels) + " " + ((LongAdder) metric).sum() + "\n");
+                }
+                else if (metric instanceof Histogram) {
+
+                    Histogram histogram = (Histogram) metric;
+                    long[] counts = histogram.getCumulativeCounts();
+                    String separator = labels.isEmpty() ? "" : ",";
+
+                    for (int i = 0; i < Histogram.BOUNDS.length; i++) {
+                        writer.write(family.name + "_bucket{" + labels + separator + "le=\"" + seconds(Histogram.BOUNDS[i]) + "\"} " + counts[i] + "\n");
+                    }
+                    writer.write(family.name + "_bucket{" + labels + separator + "le=\"+Inf\"} " + counts[counts.length - 1] + "\n");
+                    writer.write(family.name + "_sum" + braces(labels) + " " + seconds(histogram.getSum()) + "\n");
+                    writer.write(family.name + "_count" + braces(labels) + " " + counts[counts.length - 1] + "\n");
+                }
+                else {
+
+                    Object value = ((Supplier<?>) metric).get();
+                    writer.write(family.name + braces(labels) + " " + (value instanceof Number ? value : "NaN") + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all metrics; for tests.
+     */
+    public void clear() {
+
+        this.families.clear();
+    }
+
+    private Family family(String name, String help, String type) {
+
+        Family family = this.families.computeIfAbsent(name, key -> new Family(name, help, type));
+
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric '" + name + "' is a " + family.type + ", not a " + type);
+        }
+
+        return family;
+    }
+
+    private static String labels(String... labels) {
+
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name/value pairs");
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (int i = 0; i < labels.length; i += 2) {
+
+            if (i > 0) {
+                stringBuilder.append(',');
+            }
+
+            stringBuilder.append(labels[i]).append("=\"");
+
+            String value = labels[i + 1] != null ? labels[i + 1] : "";
+            for (int j = 0; j < value.length(); j++) {
+
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    stringBuilder.append('\\').append(c);
+                }
+                else if (c == '\n') {
+                    stringBuilder.append("\\n");
+                }
+                else {
+                    stringBuilder.append(c);
+                }
+            }
+
+            stringBuilder.append('"');
+        }
+
+        return stringBuilder.toString();
+    }
+
+    private static String braces(String labels) {
+
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String seconds(long micros) {
+
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+}
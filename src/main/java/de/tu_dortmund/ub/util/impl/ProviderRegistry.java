@@ -0,0 +1,330 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide registry for service provider implementations (META-INF/services).
+ *
+ * Each provider interface is looked up via {@link Lookup} and initialized exactly once when it is registered.
+ * Request handling code only reads the cached instance. {@link #reload()} repeats the lookup and the
+ * initialization for all registered interfaces and swaps the new instances in.
+ *
+ * Code calling a provider which has a {@link Disposer} holds a {@link Lease} for the duration of the call (see
+ * {@link #acquire(Class)}); a replaced instance is disposed once its last lease is closed, so calls in progress are
+ * not cut off by a reload or shutdown.
+ */
+public final class ProviderRegistry {
+
+    private static final ProviderRegistry INSTANCE = new ProviderRegistry();
+
+    private final ConcurrentHashMap<Class<?>, Registration<?>> registrations = new ConcurrentHashMap<Class<?>, Registration<?>>();
+
+    private Logger logger = Logger.getLogger(ProviderRegistry.class.getName());
+
+    private ProviderRegistry() {
+    }
+
+    public static ProviderRegistry getInstance() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Initializes a freshly looked up provider. The returned object is the instance handed out by
+     * {@link #get(Class)}, so an initializer may also wrap the provider.
+     */
+    public interface Initializer<T> {
+
+        T initialize(T provider);
+    }
+
+    /**
+     * Releases the resources of a provider which is no longer handed out.
+     */
+    public interface Disposer<T> {
+
+        void dispose(T provider);
+    }
+
+    /**
+     * A provider instance in use. The instance is not disposed before the lease is closed.
+     */
+    public static final class Lease<T> implements AutoCloseable {
+
+        private final T provider;
+        private final Instance<T> instance;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private Lease(T provider, Instance<T> instance) {
+
+            this.provider = provider;
+            this.instance = instance;
+        }
+
+        /**
+         * @return a lease for an instance which is not managed by the registry, e.g. in tests
+         */
+        public static <T> Lease<T> of(T provider) {
+
+            return new Lease<T>(provider, null);
+        }
+
+        /**
+         * @return the provider or <code>null</code> if none is registered
+         */
+        public T get() {
+
+            return this.provider;
+        }
+
+        @Override
+        public void close() {
+
+            if (this.instance != null && this.closed.compareAndSet(false, true)) {
+                this.instance.release();
+            }
+        }
+    }
+
+    /**
+     * Looks up and initializes the provider for <code>clazz</code> unless it is already registered.
+     *
+     * @return the registered instance or <code>null</code> if no implementation is configured
+     */
+    public <T> T register(Class<T> clazz, Initializer<T> initializer) {
+
+        return this.register(clazz, initializer, provider -> { });
+    }
+
+    /**
+     * Like {@link #register(Class, Initializer)}; <code>disposer</code> is called for the instance when it is
+     * replaced by {@link #reload()} or on {@link #shutdown()}.
+     */
+    public synchronized <T> T register(Class<T> clazz, Initializer<T> initializer, Disposer<T> disposer) {
+
+        @SuppressWarnings("unchecked")
+        Registration<T> registration = (Registration<T>) this.registrations.get(clazz);
+
+        if (registration == null) {
+
+            registration = new Registration<T>(clazz, initializer, disposer);
+            registration.instance = this.create(registration);
+            this.registrations.put(clazz, registration);
+
+            this.logger.info("registered provider for '" + clazz.getName() + "': " + name(registration.instance));
+        }
+
+        return registration.instance != null ? registration.instance.provider : null;
+    }
+
+    /**
+     * @return the cached provider instance or <code>null</code> if none is registered
+     */
+    public <T> T get(Class<T> clazz) {
+
+        @SuppressWarnings("unchecked")
+        Registration<T> registration = (Registration<T>) this.registrations.get(clazz);
+
+        Instance<T> instance = registration != null ? registration.instance : null;
+
+        return instance != null ? instance.provider : null;
+    }
+
+    /**
+     * @return a lease on the cached provider instance; {@link Lease#get()} is <code>null</code> if none is registered
+     */
+    public <T> Lease<T> acquire(Class<T> clazz) {
+
+        @SuppressWarnings("unchecked")
+        Registration<T> registration = (Registration<T>) this.registrations.get(clazz);
+
+        while (registration != null) {
+
+            Instance<T> instance = registration.instance;
+
+            if (instance == null) {
+                break;
+            }
+
+            if (instance.retain()) {
+                return new Lease<T>(instance.provider, instance);
+            }
+
+            // replaced meanwhile: the new instance is already in place
+        }
+
+        return new Lease<T>(null, null);
+    }
+
+    public boolean isAvailable(Class<?> clazz) {
+
+        return this.get(clazz) != null;
+    }
+
+    /**
+     * Repeats lookup and initialization for every registered interface (e.g. after an implementation jar or
+     * the configuration has been replaced). Requests in progress keep working with the previous instance, which is
+     * disposed when their leases are closed.
+     */
+    public synchronized void reload() {
+
+        List<Registration<?>> current = new ArrayList<Registration<?>>(this.registrations.values());
+
+        for (Registration<?> registration : current) {
+
+            this.reload(registration);
+        }
+    }
+
+    /**
+     * Disposes all registered instances, as soon as they are no longer leased, and forgets the registrations.
+     */
+    public synchronized void shutdown() {
+
+        List<Registration<?>> current = new ArrayList<Registration<?>>(this.registrations.values());
+
+        this.registrations.clear();
+
+        for (Registration<?> registration : current) {
+
+            Instance<?> instance = registration.instance;
+            registration.instance = null;
+
+            if (instance != null) {
+                instance.release();
+            }
+        }
+    }
+
+    private <T> void reload(Registration<T> registration) {
+
+        Instance<T> previous = registration.instance;
+
+        Instance<T> instance = this.create(registration);
+        registration.instance = instance;
+
+        this.logger.info("reloaded provider for '" + registration.clazz.getName() + "': " + name(instance));
+
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    private <T> Instance<T> create(Registration<T> registration) {
+
+        T provider = Lookup.lookup(registration.clazz);
+
+        return provider != null ? new Instance<T>(registration, registration.initializer.initialize(provider)) : null;
+    }
+
+    private <T> void dispose(Registration<T> registration, T provider) {
+
+        if (provider == null) {
+            return;
+        }
+
+        try {
+
+            registration.disposer.dispose(provider);
+
+            this.logger.info("disposed provider for '" + registration.clazz.getName() + "': " + provider.getClass().getName());
+        }
+        catch (RuntimeException e) {
+
+            this.logger.error("disposing provider for '" + registration.clazz.getName() + "' failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static String name(Instance<?> instance) {
+
+        return instance != null && instance.provider != null ? instance.provider.getClass().getName() : "none";
+    }
+
+    private static final class Registration<T> {
+
+        private final Class<T> clazz;
+        private final Initializer<T> initializer;
+        private final Disposer<T> disposer;
+        private volatile Instance<T> instance;
+
+        private Registration(Class<T> clazz, Initializer<T> initializer, Disposer<T> disposer) {
+
+            this.clazz = clazz;
+            this.initializer = initializer;
+            this.disposer = disposer;
+        }
+    }
+
+    /**
+     * An initialized provider and its references: one held by the registration while the instance is current, one
+     * per open lease. The last release disposes the provider.
+     */
+    private final class Instance<T> {
+
+        private final Registration<T> registration;
+        private final T provider;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Instance(Registration<T> registration, T provider) {
+
+            this.registration = registration;
+            this.provider = provider;
+        }
+
+        /**
+         * @return false if the instance has already been disposed
+         */
+        private boolean retain() {
+
+            while (true) {
+
+                int references = this.references.get();
+
+                if (references == 0) {
+                    return false;
+                }
+
+                if (this.references.compareAndSet(references, references + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+
+            if (this.references.decrementAndGet() == 0) {
+                dispose(this.registration, this.provider);
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015, Hans-Georg Becker
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+
+package de.tu_dortmund.ub.util.impl;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.util.function.Supplier;
+
+/**
+ * Thin layer over a log4j Logger for the request path.
+ *
+ * Every line gets the prefix '[&lt;service.name&gt;] ', built once. Messages are parameterized with '{}'
+ * placeholders and only formatted if the level is enabled, so disabled debug lines cost neither concatenation nor
+ * allocation (up to three arguments; more expensive messages can be passed as a {@link Supplier}). For warn and
+ * error, a Throwable as last argument without a placeholder of its own is logged with its stack trace.
+ *
+ * <pre>
+ * logger.debug("Patron: {}", patronid);
+ * logger.error("{}: ILS Error! {}", 500, e.getMessage());
+ * logger.error("Service '{}' failed: {}", service, e.getMessage(), e);
+ * </pre>
+ */
+public final class ServiceLogger {
+
+    private static final String FQCN = ServiceLogger.class.getName();
+
+    private final Logger logger;
+    private final String prefix;
+
+    private ServiceLogger(Logger logger, String prefix) {
+
+        this.logger = logger;
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param serviceName value of 'service.name'
+     */
+    public static ServiceLogger getLogger(Class<?> clazz, String serviceName) {
+
+        return new ServiceLogger(Logger.getLogger(clazz.getName()), "[" + serviceName + "] ");
+    }
+
+    public Logger getLogger() {
+
+        return this.logger;
+    }
+
+    public boolean isDebugEnabled() {
+
+        return this.logger.isDebugEnabled();
+    }
+
+    public boolean isInfoEnabled() {
+
+        return this.logger.isInfoEnabled();
+    }
+
+    public void debug(String message) {
+
+        this.log(Level.DEBUG, message, null);
+    }
+
+    public void debug(String pattern, Object arg) {
+
+        if (this.logger.isDebugEnabled()) {
+            this.log(Level.DEBUG, format(pattern, arg, null, null, 1), null);
+        }
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2) {
+
+        if (this.logger.isDebugEnabled()) {
+            this.log(Level.DEBUG, format(pattern, arg1, arg2, null, 2), null);
+        }
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2, Object arg3) {
+
+        if (this.logger.isDebugEnabled()) {
+            this.log(Level.DEBUG, format(pattern, arg1, arg2, arg3, 3), null);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+
+        if (this.logger.isDebugEnabled()) {
+            this.log(Level.DEBUG, message.get(), null);
+        }
+    }
+
+    public void info(String message) {
+
+        this.log(Level.INFO, message, null);
+    }
+
+    public void info(String pattern, Object arg) {
+
+        if (this.logger.isInfoEnabled()) {
+            this.log(Level.INFO, format(pattern, arg, null, null, 1), null);
+        }
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+
+        if (this.logger.isInfoEnabled()) {
+            this.log(Level.INFO, format(pattern, arg1, arg2, null, 2), null);
+        }
+    }
+
+    public void info(String pattern, Object arg1, Object arg2, Object arg3) {
+
+        if (this.logger.isInfoEnabled()) {
+            this.log(Level.INFO, format(pattern, arg1, arg2, arg3, 3), null);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+
+        if (this.logger.isInfoEnabled()) {
+            this.log(Level.INFO, message.get(), null);
+        }
+    }
+
+    public void warn(String message) {
+
+        this.log(Level.WARN, message, null);
+    }
+
+    public void warn(String pattern, Object arg) {
+
+        if (this.logger.isEnabledFor(Level.WARN)) {
+            this.log(Level.WARN, format(pattern, arg, null, null, 1), null);
+        }
+    }
+
+    public void warn(String pattern, Object arg1, Object arg2) {
+
+        if (this.logger.isEnabledFor(Level.WARN)) {
+            this.log(Level.WARN, pattern, arg1, arg2, null, 2);
+        }
+    }
+
+    public void warn(String pattern, Object arg1, Object arg2, Object arg3) {
+
+        if (this.logger.isEnabledFor(Level.WARN)) {
+            this.log(Level.WARN, pattern, arg1, arg2, arg3, 3);
+        }
+    }
+
+    public void error(String message) {
+
+        this.log(Level.ERROR, message, null);
+    }
+
+    public void error(String message, Throwable throwable) {
+
+        this.log(Level.ERROR, message, throwable);
+    }
+
+    public void error(String pattern, Object arg) {
+
+        if (this.logger.isEnabledFor(Level.ERROR)) {
+            this.log(Level.ERROR, format(pattern, arg, null, null, 1), null);
+        }
+    }
+
+    public void error(String pattern, Object arg1, Object arg2) {
+
+        if (this.logger.isEnabledFor(Level.ERROR)) {
+            this.log(Level.ERROR, pattern, arg1, arg2, null, 2);
+        }
+    }
+
+    public void error(String pattern, Object arg1, Object arg2, Object arg3) {
+
+        if (this.logger.isEnabledFor(Level.ERROR)) {
+            this.log(Level.ERROR, pattern, arg1, arg2, arg3, 3);
+        }
+    }
+
+    /**
+     * Formats the message; a trailing Throwable without its own placeholder becomes the logged exception.
+     */
+    private void log(Level level, String pattern, Object arg1, Object arg2, Object arg3, int count) {
+
+        Object last = count == 2 ? arg2 : arg3;
+
+        if (last instanceof Throwable && placeholders(pattern) < count) {
+            this.log(level, format(pattern, arg1, arg2, arg3, count - 1), (Throwable) last);
+        }
+        else {
+            this.log(level, format(pattern, arg1, arg2, arg3, count), null);
+        }
+    }
+
+    private void log(Level level, String message, Throwable throwable) {
+
+        if (this.logger.isEnabledFor(level)) {
+            this.logger.log(FQCN, level, this.prefix.concat(message), throwable);
+        }
+    }
+
+    /**
+     * Replaces the first <code>count</code> '{}' in the pattern by the arguments.
+     */
+    static String format(String pattern, Object arg1, Object arg2, Object arg3, int count) {
+
+        StringBuilder message = new StringBuilder(pattern.length() + 32 * count);
+
+        int start = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            int placeholder = pattern.indexOf("{}", start);
+
+            if (placeholder < 0) {
+                break;
+            }
+
+            message.append(pattern, start, placeholder).append(i == 0 ? arg1 : i == 1 ? arg2 : arg3);
+            start = placeholder + 2;
+        }
+
+        return message.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static int placeholders(String pattern) {
+
+        int count = 0;
+
+        for (int i = pattern.indexOf("{}"); i >= 0; i = pattern.indexOf("{}", i + 2)) {
+            count++;
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,184 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import de.tu_dortmund.ub.api.paaa.ils.IntegratedLibrarySystem;
+import de.tu_dortmund.ub.api.paaa.model.BulkResult;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import de.tu_dortmund.ub.util.impl.ProviderRegistry;
+import junit.framework.TestCase;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Unit test for BulkPatronImport.
+ */
+public class BulkPatronImportTest extends TestCase {
+
+    private final List<String> written = new CopyOnWriteArrayList<String>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private BulkPatronImport bulkPatronImport;
+
+    protected void setUp() throws Exception {
+
+        Properties config = new Properties();
+        config.setProperty("service.name", "PAAA");
+        config.setProperty("bulk.threads", "1");
+
+        this.bulkPatronImport = new BulkPatronImport(config);
+    }
+
+    protected void tearDown() throws Exception {
+
+        this.bulkPatronImport.shutdown();
+    }
+
+    private static HttpServletRequest request(String ndjson) {
+
+        ByteArrayInputStream in = new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+
+        ServletInputStream inputStream = new ServletInputStream() {
+
+            public int read() {
+                return in.read();
+            }
+
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            public boolean isReady() {
+                return true;
+            }
+
+            public void setReadListener(ReadListener readListener) {
+            }
+        };
+
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getContentLengthLong": return -1L;
+                        case "isAsyncSupported": return false;
+                        case "getContentType": return BulkPatronImport.CONTENT_TYPE;
+                        case "getInputStream": return inputStream;
+                        default: return null;
+                    }
+                });
+    }
+
+    private HttpServletResponse response() {
+
+        ServletOutputStream outputStream = new ServletOutputStream() {
+
+            public void write(int b) {
+                body.write(b);
+            }
+
+            public boolean isReady() {
+                return true;
+            }
+
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> method.getName().equals("getOutputStream") ? outputStream : null);
+    }
+
+    private IntegratedLibrarySystem integratedLibrarySystem() {
+
+        return (IntegratedLibrarySystem) Proxy.newProxyInstance(IntegratedLibrarySystem.class.getClassLoader(),
+                new Class<?>[] { IntegratedLibrarySystem.class }, (proxy, method, args) -> {
+
+                    List<BulkResult> results = new ArrayList<BulkResult>();
+
+                    for (Object patron : (List<?>) args[0]) {
+                        this.written.add(((Patron) patron).getAccount());
+                        results.add(BulkResult.success((Patron) patron));
+                    }
+
+                    return results;
+                });
+    }
+
+    private List<BulkResult> results() throws Exception {
+
+        List<BulkResult> results = new ArrayList<BulkResult>();
+
+        try (MappingIterator<BulkResult> iterator = JsonMapper.MAPPER.reader(BulkResult.class).readValues(this.body.toByteArray())) {
+            while (iterator.hasNextValue()) {
+                results.add(iterator.nextValue());
+            }
+        }
+
+        return results;
+    }
+
+    public void testRejectsRecordsTheTokenIsNotValidFor() throws Exception {
+
+        String ndjson = "{\"account\":\"own-1\"}\n{\"account\":\"foreign\"}\n{\"account\":\"own-2\"}\n{\"account\":\"foreign\"}\n";
+        List<String> checks = new CopyOnWriteArrayList<String>();
+
+        this.bulkPatronImport.execute(request(ndjson), this.response(), ProviderRegistry.Lease.of(this.integratedLibrarySystem()), "updatepatron", "token",
+                account -> checks.add(Thread.currentThread().getName() + " " + account) && account.startsWith("own-"), "json",
+                (response, status) -> fail("unexpected " + status));
+
+        List<BulkResult> results = this.results();
+
+        assertEquals(4, results.size());
+        assertEquals(1, results.get(0).getLine());
+        assertEquals(HttpServletResponse.SC_OK, results.get(0).getCode());
+        assertEquals(2, results.get(1).getLine());
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, results.get(1).getCode());
+        assertEquals("foreign", results.get(1).getAccount());
+        assertEquals(3, results.get(2).getLine());
+        assertEquals(HttpServletResponse.SC_OK, results.get(2).getCode());
+        assertEquals(4, results.get(3).getLine());
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, results.get(3).getCode());
+
+        assertEquals(2, this.written.size());
+        assertFalse(this.written.contains("foreign"));
+
+        // once per account and batch, on the thread writing the batch
+        assertEquals(3, checks.size());
+        for (String check : checks) {
+            assertTrue(check, check.startsWith("bulk-import-"));
+        }
+    }
+
+    public void testSkipsThePatronTokenCheckIfDisabled() throws Exception {
+
+        this.bulkPatronImport.shutdown();
+
+        Properties config = new Properties();
+        config.setProperty("service.name", "PAAA");
+        config.setProperty("bulk.patron-token-check", "false");
+        this.bulkPatronImport = new BulkPatronImport(config);
+
+        String ndjson = "{\"account\":\"own-1\"}\n{\"account\":\"foreign\"}\n";
+
+        this.bulkPatronImport.execute(request(ndjson), this.response(), ProviderRegistry.Lease.of(this.integratedLibrarySystem()), "updatepatron", "token",
+                account -> { fail("unexpected check of " + account); return false; }, "json", (response, status) -> fail("unexpected " + status));
+
+        List<BulkResult> results = this.results();
+
+        assertEquals(2, results.size());
+        assertEquals(HttpServletResponse.SC_OK, results.get(1).getCode());
+        assertEquals(2, this.written.size());
+    }
+}
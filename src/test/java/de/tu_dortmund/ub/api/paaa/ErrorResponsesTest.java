@@ -0,0 +1,49 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.model.RequestError;
+import junit.framework.TestCase;
+
+import java.util.Properties;
+
+/**
+ * Unit test for ErrorResponses.
+ */
+public class ErrorResponsesTest extends TestCase {
+
+    private static Properties config() {
+
+        Properties config = new Properties();
+        config.setProperty("error.401", "invalid_token");
+        config.setProperty("error.401.description", "The access token is invalid");
+        config.setProperty("error.503", "service unavailable");
+        return config;
+    }
+
+    public void testPreparesConfiguredStatusCodes() throws Exception {
+
+        ErrorResponses errorResponses = new ErrorResponses(config());
+
+        ErrorResponses.Body json = errorResponses.get(401, "json");
+        assertEquals("application/json;charset=UTF-8", json.getContentType());
+        assertSame(json, errorResponses.get(401, "json"));
+        assertEquals(JsonMapper.REQUEST_ERROR_WRITER.writeValueAsBytes(errorResponses.requestError(401)).length, json.getContentLength());
+
+        RequestError requestError = errorResponses.requestError(401);
+        assertEquals("invalid_token", requestError.getError());
+        assertEquals("The access token is invalid", requestError.getDescription());
+        assertEquals(401, requestError.getCode());
+
+        assertEquals("application/xml;charset=UTF-8", errorResponses.get(503, "xml").getContentType());
+        assertEquals(SmileMapper.CONTENT_TYPE, errorResponses.get(503, "smile").getContentType());
+    }
+
+    public void testRendersUnconfiguredStatusCodesOnce() {
+
+        ErrorResponses errorResponses = new ErrorResponses(config());
+
+        ErrorResponses.Body body = errorResponses.get(413, "json");
+        assertNotNull(body);
+        assertSame(body, errorResponses.get(413, "json"));
+        assertNull(errorResponses.get(413, "html"));
+    }
+}
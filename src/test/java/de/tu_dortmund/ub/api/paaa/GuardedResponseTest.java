@@ -0,0 +1,80 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import junit.framework.TestCase;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit test for GuardedResponse.
+ */
+public class GuardedResponseTest extends TestCase {
+
+    private final List<String> calls = new CopyOnWriteArrayList<String>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private HttpServletResponse response() {
+
+        ServletOutputStream outputStream = new ServletOutputStream() {
+
+            public void write(int b) {
+                body.write(b);
+            }
+
+            public boolean isReady() {
+                return true;
+            }
+
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> {
+                    this.calls.add(method.getName());
+                    return method.getName().equals("getOutputStream") ? outputStream : null;
+                });
+    }
+
+    public void testServiceFirstWritesThrough() throws Exception {
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        GuardedResponse guardedResponse = new GuardedResponse(this.response(), done);
+
+        guardedResponse.setStatus(201);
+        guardedResponse.getOutputStream().write(new byte[] { 'o', 'k' });
+
+        assertTrue(done.get());
+        assertTrue(guardedResponse.claim());
+        assertEquals("ok", this.body.toString("UTF-8"));
+        assertTrue(this.calls.contains("setStatus"));
+
+        // the timeout comes too late
+        assertFalse(done.compareAndSet(false, true));
+    }
+
+    public void testTimeoutFirstDiscardsService() throws Exception {
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        GuardedResponse guardedResponse = new GuardedResponse(this.response(), done);
+
+        // the timeout answers the request
+        assertTrue(done.compareAndSet(false, true));
+
+        guardedResponse.setStatus(201);
+        guardedResponse.setHeader("ETag", "W/\"1\"");
+        guardedResponse.getOutputStream().write(new byte[] { 'o', 'k' });
+        guardedResponse.getWriter().println("late");
+        guardedResponse.getWriter().flush();
+
+        assertFalse(guardedResponse.claim());
+        assertTrue(this.calls.isEmpty());
+        assertEquals(0, this.body.size());
+    }
+}
@@ -0,0 +1,97 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for HealthMonitor.
+ */
+public class HealthMonitorTest extends TestCase {
+
+    private static Properties config(long timeout) {
+
+        Properties config = new Properties();
+        config.setProperty("health.interval", "3600000");
+        config.setProperty("health.timeout", Long.toString(timeout));
+        return config;
+    }
+
+    private static HashMap<String, String> result(String dependency, String state) {
+
+        HashMap<String, String> result = new HashMap<String, String>();
+        result.put(dependency, state);
+        return result;
+    }
+
+    public void testServesSnapshotWithoutCallingDependency() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+
+        Map<String, Callable<HashMap<String, String>>> checks = new LinkedHashMap<String, Callable<HashMap<String, String>>>();
+        checks.put("ils", () -> {
+            calls.incrementAndGet();
+            return result("aleph", "ok");
+        });
+
+        HealthMonitor healthMonitor = new HealthMonitor(config(1000), checks);
+        healthMonitor.check();
+
+        int before = calls.get();
+        for (int i = 0; i < 100; i++) {
+            healthMonitor.getSnapshot();
+        }
+
+        assertEquals(before, calls.get());
+        assertTrue(healthMonitor.getSnapshot().isCurrent());
+        assertTrue(healthMonitor.getSnapshot().isHealthy());
+        assertEquals("ok", healthMonitor.getSnapshot().getDependencies().get("aleph"));
+    }
+
+    public void testMarksHangingDependencyAsFailed() throws Exception {
+
+        Map<String, Callable<HashMap<String, String>>> checks = new LinkedHashMap<String, Callable<HashMap<String, String>>>();
+        checks.put("auth", () -> {
+            Thread.sleep(10000);
+            return result("oauth", "ok");
+        });
+        checks.put("ils", () -> result("aleph", "ok"));
+
+        HealthMonitor healthMonitor = new HealthMonitor(config(50), checks);
+        healthMonitor.check();
+
+        HealthMonitor.Snapshot snapshot = healthMonitor.getSnapshot();
+        assertFalse(snapshot.isHealthy());
+        assertEquals("timeout", snapshot.getProbes().get("auth").getStatus());
+        assertEquals("failed", snapshot.getDependencies().get("auth"));
+        assertEquals("ok", snapshot.getProbes().get("ils").getStatus());
+
+        // the hanging check is not started a second time
+        healthMonitor.check();
+        assertEquals("timeout", healthMonitor.getSnapshot().getProbes().get("auth").getStatus());
+    }
+
+    public void testLastReleaseStopsSharedMonitor() throws Exception {
+
+        HealthMonitor healthMonitor = HealthMonitor.init(config(1000));
+        assertSame(healthMonitor, HealthMonitor.init(config(1000)));
+
+        // one servlet is destroyed, the other one still gets the running monitor
+        HealthMonitor.release();
+        assertSame(healthMonitor, HealthMonitor.init(config(1000)));
+        HealthMonitor.release();
+        assertSame(healthMonitor.getSnapshot(), HealthMonitor.latest());
+
+        HealthMonitor.release();
+        assertFalse(HealthMonitor.latest().isCurrent());
+
+        HealthMonitor restarted = HealthMonitor.init(config(1000));
+        assertNotSame(healthMonitor, restarted);
+        HealthMonitor.release();
+    }
+}
@@ -0,0 +1,101 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import junit.framework.TestCase;
+
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Unit test for IdempotencyCache.
+ */
+public class IdempotencyCacheTest extends TestCase {
+
+    private static BufferedResponse response(int status) {
+
+        HttpServletResponse httpServletResponse = (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> null);
+
+        BufferedResponse bufferedResponse = new BufferedResponse(httpServletResponse);
+        bufferedResponse.setStatus(status);
+
+        return bufferedResponse;
+    }
+
+    public void testDuplicatesShareTheFirstExecution() throws Exception {
+
+        IdempotencyCache cache = new IdempotencyCache(100, 60000);
+
+        CompletableFuture<BufferedResponse> first = new CompletableFuture<BufferedResponse>();
+        assertNull(cache.putIfAbsent("token newfee 4711 abc", first));
+
+        CompletableFuture<BufferedResponse> inFlight = cache.putIfAbsent("token newfee 4711 abc", new CompletableFuture<BufferedResponse>());
+        assertSame(first, inFlight);
+        assertFalse(inFlight.isDone());
+
+        BufferedResponse response = response(201);
+        cache.complete("token newfee 4711 abc", first, response);
+
+        assertSame(response, inFlight.get());
+        assertSame(response, cache.putIfAbsent("token newfee 4711 abc", new CompletableFuture<BufferedResponse>()).get());
+        assertNull(cache.putIfAbsent("token newfee 4711 xyz", new CompletableFuture<BufferedResponse>()));
+    }
+
+    public void testRunningExecutionsAreNotEvicted() throws Exception {
+
+        // one response per segment
+        IdempotencyCache cache = new IdempotencyCache(16, 60000);
+
+        CompletableFuture<BufferedResponse> first = new CompletableFuture<BufferedResponse>();
+        assertNull(cache.putIfAbsent("token newfee 4711 abc", first));
+
+        for (int i = 0; i < 1000; i++) {
+
+            CompletableFuture<BufferedResponse> future = new CompletableFuture<BufferedResponse>();
+            cache.putIfAbsent("key " + i, future);
+            cache.complete("key " + i, future, response(201));
+        }
+
+        assertTrue(cache.getEvictions() > 0);
+        assertSame(first, cache.putIfAbsent("token newfee 4711 abc", new CompletableFuture<BufferedResponse>()));
+
+        BufferedResponse response = response(201);
+        cache.complete("token newfee 4711 abc", first, response);
+
+        assertSame(response, cache.putIfAbsent("token newfee 4711 abc", new CompletableFuture<BufferedResponse>()).get());
+    }
+
+    public void testServerErrorsAreNotKept() throws Exception {
+
+        IdempotencyCache cache = new IdempotencyCache(100, 60000);
+
+        CompletableFuture<BufferedResponse> first = new CompletableFuture<BufferedResponse>();
+        cache.putIfAbsent("key", first);
+        cache.complete("key", first, response(503));
+
+        assertEquals(503, first.get().getStatus());
+        assertNull(cache.putIfAbsent("key", new CompletableFuture<BufferedResponse>()));
+
+        CompletableFuture<BufferedResponse> failed = new CompletableFuture<BufferedResponse>();
+        cache.putIfAbsent("other", failed);
+        cache.complete("other", failed, null);
+
+        assertNull(failed.get());
+        assertNull(cache.putIfAbsent("other", new CompletableFuture<BufferedResponse>()));
+    }
+
+    public void testResponsesExpire() throws Exception {
+
+        IdempotencyCache cache = new IdempotencyCache(100, 50);
+
+        CompletableFuture<BufferedResponse> first = new CompletableFuture<BufferedResponse>();
+        cache.putIfAbsent("key", first);
+        cache.complete("key", first, response(200));
+
+        assertNotNull(cache.putIfAbsent("key", new CompletableFuture<BufferedResponse>()));
+
+        Thread.sleep(100);
+
+        assertNull(cache.putIfAbsent("key", new CompletableFuture<BufferedResponse>()));
+    }
+}
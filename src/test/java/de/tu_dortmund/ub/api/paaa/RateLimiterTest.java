@@ -0,0 +1,108 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import junit.framework.TestCase;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+
+/**
+ * Unit test for RateLimiter.
+ */
+public class RateLimiterTest extends TestCase {
+
+    private static RateLimiter create(String... properties) {
+
+        Properties config = new Properties();
+        config.setProperty("ratelimit.eviction-interval", "0");
+
+        for (int i = 0; i < properties.length; i += 2) {
+            config.setProperty(properties[i], properties[i + 1]);
+        }
+
+        return new RateLimiter(config);
+    }
+
+    private static HttpServletRequest request(String remoteAddr, String authorization) {
+
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+
+                    switch (method.getName()) {
+                        case "getRemoteAddr":
+                            return remoteAddr;
+                        case "getHeader":
+                            return "Authorization".equals(args[0]) ? authorization : null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    public void testBurstThenReject() {
+
+        RateLimiter rateLimiter = create("ratelimit.rate", "1", "ratelimit.burst", "3");
+
+        assertEquals(0, rateLimiter.acquire("token", "newfee"));
+        assertEquals(0, rateLimiter.acquire("token", "newfee"));
+        assertEquals(0, rateLimiter.acquire("token", "newfee"));
+
+        long retryAfter = rateLimiter.acquire("token", "newfee");
+        assertTrue(retryAfter > 900 && retryAfter <= 1001);
+
+        // other clients and services have their own buckets
+        assertEquals(0, rateLimiter.acquire("other", "newfee"));
+        assertEquals(0, rateLimiter.acquire("token", "newpatron"));
+
+        rateLimiter.shutdown();
+    }
+
+    public void testRotatingTokensShareTheBucketOfTheAddress() {
+
+        RateLimiter rateLimiter = create("ratelimit.rate", "1", "ratelimit.burst", "3");
+
+        assertEquals(0, rateLimiter.acquire(request("10.0.0.1", "Bearer token-1"), "newfee"));
+        assertEquals(0, rateLimiter.acquire(request("10.0.0.1", "Bearer token-2"), "newfee"));
+        assertEquals(0, rateLimiter.acquire(request("10.0.0.1", "Bearer token-3"), "newfee"));
+        assertTrue(rateLimiter.acquire(request("10.0.0.1", "Bearer token-4"), "newfee") > 0);
+
+        assertEquals(0, rateLimiter.acquire(request("10.0.0.2", "Bearer token-4"), "newfee"));
+        assertEquals(2, rateLimiter.size());
+
+        rateLimiter.shutdown();
+    }
+
+    public void testServiceLimitAndUnlimited() throws Exception {
+
+        RateLimiter rateLimiter = create("ratelimit.newfee.rate", "20", "ratelimit.newfee.burst", "1");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, rateLimiter.acquire("token", "updatepatron"));
+        }
+
+        assertEquals(0, rateLimiter.acquire("token", "newfee"));
+        assertTrue(rateLimiter.acquire("token", "newfee") > 0);
+
+        Thread.sleep(60);
+
+        assertEquals(0, rateLimiter.acquire("token", "newfee"));
+
+        rateLimiter.shutdown();
+    }
+
+    public void testEvictsFullBuckets() throws Exception {
+
+        RateLimiter rateLimiter = create("ratelimit.rate", "100");
+
+        rateLimiter.acquire("a", "newfee");
+        rateLimiter.acquire("b", "newfee");
+        assertEquals(2, rateLimiter.size());
+
+        Thread.sleep(30);
+        rateLimiter.evict();
+
+        assertEquals(0, rateLimiter.size());
+
+        rateLimiter.shutdown();
+    }
+}
@@ -0,0 +1,78 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for Router.
+ */
+public class RouterTest extends TestCase {
+
+    private final Router router = new Router()
+            .route("POST", "newpatron", true, Patron.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, patron) -> patron)
+            .route("POST", "blockpatron", true, Block.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, block) -> null)
+            .route("DELETE", "deletepatron", true, Void.class, JsonMapper.PATRON_WRITER, (integratedLibrarySystem, patronid, none) -> null)
+            .defaultService("DELETE", "deletepatron")
+            .bulk("POST", "newpatron");
+
+    public void testService() {
+
+        Router.Match match = this.router.match("POST", "/4711/blockpatron");
+
+        assertEquals("4711", match.getPatronid());
+        assertEquals("blockpatron", match.getService());
+        assertEquals("blockpatron", match.getRoute().getName());
+        assertNotNull(match.getRoute().getReader());
+        assertNotNull(match.getRoute().getSmileReader());
+        assertFalse(match.getRoute().isBulk());
+
+        // trailing slash
+        assertEquals("blockpatron", this.router.match("POST", "/4711/blockpatron/").getRoute().getService());
+    }
+
+    public void testPatronidPlaceholder() {
+
+        Router.Match match = this.router.match("POST", "/patronid/newpatron");
+
+        assertEquals("", match.getPatronid());
+        assertEquals("newpatron", match.getRoute().getService());
+    }
+
+    public void testDefaultService() {
+
+        Router.Match match = this.router.match("DELETE", "/4711");
+
+        assertEquals("4711", match.getPatronid());
+        assertEquals("deletepatron", match.getRoute().getService());
+        assertNull(match.getRoute().getReader());
+        assertNull(match.getRoute().getSmileReader());
+
+        // no default service for POST
+        match = this.router.match("POST", "/4711");
+
+        assertEquals("patron", match.getService());
+        assertNull(match.getRoute());
+    }
+
+    public void testBulk() {
+
+        Router.Match match = this.router.match("POST", "/bulk/newpatron");
+
+        assertEquals("", match.getPatronid());
+        assertTrue(match.getRoute().isBulk());
+        assertEquals("newpatron", match.getRoute().getService());
+        assertEquals("bulk/newpatron", match.getRoute().getName());
+
+        // no bulk variant: not the single service for patron 'bulk'
+        assertNull(this.router.match("POST", "/bulk/blockpatron").getRoute());
+    }
+
+    public void testNoRoute() {
+
+        assertNull(this.router.match("GET", "/4711/newpatron").getRoute());
+        assertNull(this.router.match("POST", "/4711/signup").getRoute());
+        assertNull(this.router.match("POST", "/4711/newpatron/x").getRoute());
+        assertNull(this.router.match("POST", null).getRoute());
+    }
+}
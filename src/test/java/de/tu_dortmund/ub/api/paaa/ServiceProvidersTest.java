@@ -0,0 +1,57 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.util.impl.ConfigurationStore;
+import junit.framework.TestCase;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Unit test for ServiceProviders.
+ */
+public class ServiceProvidersTest extends TestCase {
+
+    private File file;
+
+    protected void setUp() throws Exception {
+
+        this.file = File.createTempFile("paaa", ".properties");
+        Files.write(this.file.toPath(), "service.name=PAAA\nservice.config.watch=false\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected void tearDown() throws Exception {
+
+        this.file.delete();
+    }
+
+    private static boolean isRegistered() throws Exception {
+
+        return ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(ServiceProviders.OBJECT_NAME));
+    }
+
+    public void testLastShutdownStopsSharedProviders() throws Exception {
+
+        ConfigurationStore configurationStore = ConfigurationStore.of(this.file.getPath());
+
+        // PaaaEndpoint, HealthEndpoint
+        ServiceProviders.init(configurationStore);
+        ServiceProviders.init(configurationStore);
+        assertTrue(isRegistered());
+
+        ServiceProviders.shutdown();
+        assertTrue(isRegistered());
+
+        ServiceProviders.shutdown();
+        assertFalse(isRegistered());
+
+        // no effect once stopped
+        ServiceProviders.shutdown();
+        ServiceProviders.init(configurationStore);
+        assertTrue(isRegistered());
+        ServiceProviders.shutdown();
+        assertFalse(isRegistered());
+    }
+}
@@ -0,0 +1,193 @@
+package de.tu_dortmund.ub.api.paaa;
+
+import de.tu_dortmund.ub.api.paaa.ils.ILSException;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for UpdateCoalescer.
+ */
+public class UpdateCoalescerTest extends TestCase {
+
+    private static class RecordingUpdate implements UpdateCoalescer.Update {
+
+        final List<Patron> patches = new CopyOnWriteArrayList<Patron>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile String error = null;
+        volatile Error fatal = null;
+
+        public Patron update(Patron patron) throws ILSException {
+
+            this.patches.add(patron);
+            this.started.countDown();
+
+            try {
+                this.release.await();
+            }
+            catch (InterruptedException e) {
+                throw new ILSException("interrupted");
+            }
+
+            if (this.error != null) {
+                throw new ILSException(this.error);
+            }
+
+            Error fatal = this.fatal;
+            if (fatal != null) {
+                this.fatal = null;
+                throw fatal;
+            }
+
+            return patron;
+        }
+    }
+
+    private static Patron patron(String account, String city, String phone) {
+
+        Patron patron = new Patron();
+        patron.setAccount(account);
+        patron.setCity(city);
+        patron.setPhone(phone);
+        return patron;
+    }
+
+    private static Thread update(final UpdateCoalescer coalescer, final Patron patron, final RecordingUpdate update, final List<Object> results) {
+
+        Thread thread = new Thread(() -> {
+            try {
+                results.add(coalescer.update(patron, update));
+            }
+            catch (ILSException | Error e) {
+                results.add(e);
+            }
+        });
+        thread.start();
+
+        return thread;
+    }
+
+    public void testMergesConcurrentUpdatesIntoOneCall() throws Exception {
+
+        UpdateCoalescer coalescer = new UpdateCoalescer(4);
+        RecordingUpdate update = new RecordingUpdate();
+        List<Object> results = new CopyOnWriteArrayList<Object>();
+
+        Thread first = update(coalescer, patron("4711", "Dortmund", null), update, results);
+        assertTrue(update.started.await(5, TimeUnit.SECONDS));
+
+        // the second caller leads the follow-up patch, the third one is merged into it
+        Thread second = update(coalescer, patron("4711", "Bochum", "0231"), update, results);
+        Thread.sleep(50);
+        Thread third = update(coalescer, patron("4711", "Essen", null), update, results);
+        while (coalescer.getCoalesced() == 0) {
+            Thread.sleep(5);
+        }
+
+        update.release.countDown();
+        first.join();
+        second.join();
+        third.join();
+
+        assertEquals(2, update.patches.size());
+        assertEquals(2, coalescer.getCalls());
+        assertEquals(1, coalescer.getCoalesced());
+
+        Patron merged = update.patches.get(1);
+        assertEquals("Essen", merged.getCity());
+        assertEquals("0231", merged.getPhone());
+
+        assertEquals(3, results.size());
+    }
+
+    public void testFailureReachesEveryMergedCaller() throws Exception {
+
+        UpdateCoalescer coalescer = new UpdateCoalescer(4);
+        RecordingUpdate update = new RecordingUpdate();
+        List<Object> results = new CopyOnWriteArrayList<Object>();
+
+        Thread first = update(coalescer, patron("4711", "Dortmund", null), update, results);
+        assertTrue(update.started.await(5, TimeUnit.SECONDS));
+
+        Thread second = update(coalescer, patron("4711", "Bochum", null), update, results);
+        Thread.sleep(50);
+        Thread third = update(coalescer, patron("4711", "Essen", null), update, results);
+        while (coalescer.getCoalesced() == 0) {
+            Thread.sleep(5);
+        }
+
+        update.error = "Connection refused";
+        update.release.countDown();
+        first.join();
+        second.join();
+        third.join();
+
+        assertEquals(3, results.size());
+        for (Object result : results) {
+            assertTrue(result instanceof ILSException);
+        }
+    }
+
+    public void testErrorDoesNotBlockTheFollowUp() throws Exception {
+
+        UpdateCoalescer coalescer = new UpdateCoalescer(4);
+        RecordingUpdate update = new RecordingUpdate();
+        List<Object> results = new CopyOnWriteArrayList<Object>();
+
+        Thread first = update(coalescer, patron("4711", "Dortmund", null), update, results);
+        assertTrue(update.started.await(5, TimeUnit.SECONDS));
+
+        Thread second = update(coalescer, patron("4711", "Bochum", null), update, results);
+        Thread.sleep(50);
+        Thread third = update(coalescer, patron("4711", "Essen", null), update, results);
+        while (coalescer.getCoalesced() == 0) {
+            Thread.sleep(5);
+        }
+
+        update.fatal = new StackOverflowError();
+        update.release.countDown();
+        first.join(5000);
+        second.join(5000);
+        third.join(5000);
+
+        assertEquals(3, results.size());
+        assertEquals(2, update.patches.size());
+
+        // the Error reaches its caller only, the merged patch is written for the other two
+        int errors = 0;
+        for (Object result : results) {
+            if (result instanceof StackOverflowError) {
+                errors++;
+            }
+            else {
+                assertEquals("Essen", ((Patron) result).getCity());
+            }
+        }
+        assertEquals(1, errors);
+    }
+
+    public void testDifferentAccountsDoNotWait() throws Exception {
+
+        UpdateCoalescer coalescer = new UpdateCoalescer(1);
+        RecordingUpdate blocking = new RecordingUpdate();
+        List<Object> results = new CopyOnWriteArrayList<Object>();
+
+        Thread first = update(coalescer, patron("4711", "Dortmund", null), blocking, results);
+        assertTrue(blocking.started.await(5, TimeUnit.SECONDS));
+
+        RecordingUpdate direct = new RecordingUpdate();
+        direct.release.countDown();
+
+        assertEquals("Bochum", coalescer.update(patron("4712", "Bochum", null), direct).getCity());
+
+        blocking.release.countDown();
+        first.join();
+
+        assertEquals(0, coalescer.getCoalesced());
+    }
+}
@@ -0,0 +1,91 @@
+package de.tu_dortmund.ub.api.paaa.auth;
+
+import junit.framework.TestCase;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for CachingAuthorizationInterface.
+ */
+public class CachingAuthorizationInterfaceTest extends TestCase {
+
+    private static class CountingAuthorization implements AuthorizationInterface {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile long expiresIn = TokenValidation.EXPIRES_IN_UNKNOWN;
+
+        public void init(Properties properties) {
+        }
+
+        public HashMap<String, String> health(Properties properties) {
+            return new HashMap<String, String>();
+        }
+
+        public boolean isTokenValid(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+            return this.validateToken(httpServletResponse, service, patronid, access_token).isValid();
+        }
+
+        public TokenValidation validateToken(HttpServletResponse httpServletResponse, String service, String patronid, String access_token) throws AuthorizationException {
+            this.calls.incrementAndGet();
+            return new TokenValidation(access_token.startsWith("valid"), this.expiresIn);
+        }
+    }
+
+    public void testCachesValidTokenPerServiceAndPatron() throws Exception {
+
+        CountingAuthorization delegate = new CountingAuthorization();
+        CachingAuthorizationInterface cache = new CachingAuthorizationInterface(delegate, 100, 60000, 0);
+
+        assertTrue(cache.isTokenValid(null, "newfee", "4711", "valid-token"));
+        assertTrue(cache.isTokenValid(null, "newfee", "4711", "valid-token"));
+        assertTrue(cache.isTokenValid(null, "newpatron", "4711", "valid-token"));
+
+        assertEquals(2, delegate.calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testHonoursExpiresIn() throws Exception {
+
+        CountingAuthorization delegate = new CountingAuthorization();
+        delegate.expiresIn = 0;
+        CachingAuthorizationInterface cache = new CachingAuthorizationInterface(delegate, 100, 60000, 0);
+
+        cache.isTokenValid(null, "newfee", "4711", "valid-token");
+        cache.isTokenValid(null, "newfee", "4711", "valid-token");
+
+        assertEquals(2, delegate.calls.get());
+    }
+
+    public void testNegativeResultsUseOwnTtl() throws Exception {
+
+        CountingAuthorization delegate = new CountingAuthorization();
+        CachingAuthorizationInterface cache = new CachingAuthorizationInterface(delegate, 100, 60000, 60000);
+
+        assertFalse(cache.isTokenValid(null, "newfee", "4711", "revoked-token"));
+        assertFalse(cache.isTokenValid(null, "newfee", "4711", "revoked-token"));
+        assertEquals(1, delegate.calls.get());
+
+        CachingAuthorizationInterface noNegativeCaching = new CachingAuthorizationInterface(delegate, 100, 60000, 0);
+
+        noNegativeCaching.isTokenValid(null, "newfee", "4711", "revoked-token");
+        noNegativeCaching.isTokenValid(null, "newfee", "4711", "revoked-token");
+        assertEquals(3, delegate.calls.get());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+
+        CountingAuthorization delegate = new CountingAuthorization();
+        CachingAuthorizationInterface cache = new CachingAuthorizationInterface(delegate, 16, 60000, 0);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.isTokenValid(null, "newfee", Integer.toString(i), "valid-token");
+        }
+
+        assertTrue(cache.size() <= 16);
+        assertTrue(cache.getEvictions() > 0);
+    }
+}
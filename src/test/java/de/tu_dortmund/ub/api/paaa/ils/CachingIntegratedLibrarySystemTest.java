@@ -0,0 +1,150 @@
+package de.tu_dortmund.ub.api.paaa.ils;
+
+import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.FeeList;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for CachingIntegratedLibrarySystem.
+ */
+public class CachingIntegratedLibrarySystemTest extends TestCase {
+
+    private static class CountingILS implements IntegratedLibrarySystem {
+
+        final AtomicInteger reads = new AtomicInteger();
+        volatile String name = "Mustermann";
+
+        public void init(Properties properties) {
+        }
+
+        public HashMap<String, String> health(Properties properties) {
+            return new HashMap<String, String>();
+        }
+
+        public Patron patron(Patron patron) throws ILSException {
+            this.reads.incrementAndGet();
+            if (patron.getAccount().equals("unknown")) {
+                return null;
+            }
+            return CachingIntegratedLibrarySystemTest.patron(patron.getAccount(), this.name);
+        }
+
+        public FeeList fees(Patron patron) throws ILSException {
+            this.reads.incrementAndGet();
+            FeeList feeList = new FeeList();
+            feeList.setAmount("2.50 EUR");
+            return feeList;
+        }
+
+        public Patron signup(Patron patron) throws ILSException {
+            return patron;
+        }
+
+        public Patron newpatron(Patron patron) throws ILSException {
+            return patron;
+        }
+
+        public Patron updatepatron(Patron patron) throws ILSException {
+            this.name = patron.getName();
+            return patron;
+        }
+
+        public Patron blockpatron(Patron patron, Block block) throws ILSException {
+            throw new ILSException("socket error");
+        }
+
+        public Patron unblockpatron(Patron patron, Block block) throws ILSException {
+            return patron;
+        }
+
+        public Patron deletepatron(Patron patron) throws ILSException {
+            return patron;
+        }
+
+        public Fee newfee(Patron patron, Fee fee) throws ILSException {
+            return fee;
+        }
+    }
+
+    private static Patron patron(String account, String name) {
+
+        Patron patron = new Patron();
+        patron.setAccount(account);
+        patron.setName(name);
+        return patron;
+    }
+
+    public void testCachesReadsPerAccount() throws Exception {
+
+        CountingILS delegate = new CountingILS();
+        CachingIntegratedLibrarySystem cache = new CachingIntegratedLibrarySystem(delegate, 100, 60000);
+
+        Patron first = cache.patron(patron("4711", null));
+        Patron second = cache.patron(patron("4711", null));
+        cache.fees(patron("4711", null));
+        cache.patron(patron("4712", null));
+
+        assertSame(first, second);
+        assertEquals(3, delegate.reads.get());
+        assertEquals(1, cache.getHits());
+        assertNotNull(cache.get(CachingIntegratedLibrarySystem.PATRON, "4711").getETag());
+        assertNull(cache.get(CachingIntegratedLibrarySystem.PATRON, "4713"));
+    }
+
+    public void testWritesInvalidate() throws Exception {
+
+        CountingILS delegate = new CountingILS();
+        CachingIntegratedLibrarySystem cache = new CachingIntegratedLibrarySystem(delegate, 100, 60000);
+
+        cache.patron(patron("4711", null));
+        cache.fees(patron("4711", null));
+        String etag = cache.get(CachingIntegratedLibrarySystem.PATRON, "4711").getETag();
+
+        cache.updatepatron(patron("4711", "Musterfrau"));
+
+        assertNull(cache.get(CachingIntegratedLibrarySystem.PATRON, "4711"));
+        assertNull(cache.get(CachingIntegratedLibrarySystem.FEES, "4711"));
+        assertEquals("Musterfrau", cache.patron(patron("4711", null)).getName());
+        assertFalse(etag.equals(cache.get(CachingIntegratedLibrarySystem.PATRON, "4711").getETag()));
+
+        // failed writes invalidate as well
+        try {
+            cache.blockpatron(patron("4711", null), new Block());
+            fail();
+        }
+        catch (ILSException e) {
+            assertNull(cache.get(CachingIntegratedLibrarySystem.PATRON, "4711"));
+        }
+
+        // bulk writes
+        cache.patron(patron("4712", null));
+        cache.updatepatrons(Arrays.asList(patron("4712", "Musterfrau")));
+        assertNull(cache.get(CachingIntegratedLibrarySystem.PATRON, "4712"));
+    }
+
+    public void testSameContentSameETag() throws Exception {
+
+        assertEquals(CachingIntegratedLibrarySystem.etag(patron("4711", "Mustermann")), CachingIntegratedLibrarySystem.etag(patron("4711", "Mustermann")));
+        assertFalse(CachingIntegratedLibrarySystem.etag(patron("4711", "Mustermann")).equals(CachingIntegratedLibrarySystem.etag(patron("4711", "Musterfrau"))));
+        assertTrue(CachingIntegratedLibrarySystem.etag(patron("4711", "Mustermann")).startsWith("W/\""));
+    }
+
+    public void testNullNotCached() throws Exception {
+
+        CountingILS delegate = new CountingILS();
+        CachingIntegratedLibrarySystem cache = new CachingIntegratedLibrarySystem(delegate, 100, 60000);
+
+        assertNull(cache.patron(patron("unknown", null)));
+        assertNull(cache.patron(patron("unknown", null)));
+
+        assertEquals(2, delegate.reads.get());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,160 @@
+package de.tu_dortmund.ub.api.paaa.ils;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for ILSConnectionPool.
+ */
+public class ILSConnectionPoolTest extends TestCase {
+
+    private static class CountingFactory implements ILSConnectionPool.ConnectionFactory<Integer> {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+        volatile boolean valid = true;
+        volatile Error validateError;
+
+        public Integer create() throws ILSException {
+            return this.created.incrementAndGet();
+        }
+
+        public boolean validate(Integer connection) {
+            if (this.validateError != null) {
+                throw this.validateError;
+            }
+            return this.valid;
+        }
+
+        public void destroy(Integer connection) {
+            this.destroyed.incrementAndGet();
+        }
+    }
+
+    public void testReusesReleasedConnection() throws Exception {
+
+        CountingFactory factory = new CountingFactory();
+        ILSConnectionPool<Integer> pool = new ILSConnectionPool<Integer>(factory, 2, 2, 100, 0, 0, true);
+
+        Integer first = pool.borrow();
+        pool.release(first);
+        Integer second = pool.borrow();
+
+        assertEquals(first, second);
+        assertEquals(1, factory.created.get());
+        assertEquals(1, pool.getActive());
+
+        pool.release(second);
+        pool.close();
+
+        assertEquals(1, factory.destroyed.get());
+    }
+
+    public void testBorrowFailsWhenExhausted() throws Exception {
+
+        ILSConnectionPool<Integer> pool = new ILSConnectionPool<Integer>(new CountingFactory(), 1, 1, 50, 0, 0, true);
+
+        pool.borrow();
+
+        try {
+            pool.borrow();
+            fail("expected ILSUnavailableException");
+        }
+        catch (ILSUnavailableException e) {
+            assertTrue(e.getRetryAfter() > 0);
+            assertEquals(1, pool.getActive());
+        }
+
+        pool.close();
+    }
+
+    public void testDiscardsInvalidConnectionOnBorrow() throws Exception {
+
+        CountingFactory factory = new CountingFactory();
+        ILSConnectionPool<Integer> pool = new ILSConnectionPool<Integer>(factory, 1, 1, 50, 0, 0, true);
+
+        pool.release(pool.borrow());
+        factory.valid = false;
+
+        assertEquals(Integer.valueOf(2), pool.borrow());
+        assertEquals(1, factory.destroyed.get());
+
+        pool.close();
+    }
+
+    public void testEvictsIdleConnections() throws Exception {
+
+        CountingFactory factory = new CountingFactory();
+        ILSConnectionPool<Integer> pool = new ILSConnectionPool<Integer>(factory, 2, 2, 50, 1, 0, true);
+
+        Integer first = pool.borrow();
+        Integer second = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+
+        Thread.sleep(10);
+        pool.evict();
+
+        assertEquals(0, pool.getIdle());
+        assertEquals(2, factory.destroyed.get());
+
+        pool.close();
+    }
+
+    public void testErrorInCallbackInvalidatesConnection() throws Exception {
+
+        CountingFactory factory = new CountingFactory();
+        ILSConnectionPool<Integer> pool = new ILSConnectionPool<Integer>(factory, 1, 1, 50, 0, 0, true);
+
+        try {
+            pool.execute(connection -> { throw new StackOverflowError(); });
+            fail("expected StackOverflowError");
+        }
+        catch (StackOverflowError e) {
+            assertEquals(0, pool.getActive());
+            assertEquals(0, pool.getIdle());
+            assertEquals(1, factory.destroyed.get());
+        }
+
+        assertEquals(Integer.valueOf(2), pool.execute(connection -> connection));
+
+        pool.close();
+    }
+
+    public void testErrorInValidateFreesPermit() throws Exception {
+
+        CountingFactory factory = new CountingFactory();
+        ILSConnectionPool<Integer> pool = new ILSConnectionPool<Integer>(factory, 1, 1, 50, 0, 0, true);
+
+        pool.release(pool.borrow());
+        factory.validateError = new LinkageError("driver gone");
+
+        try {
+            pool.borrow();
+            fail("expected LinkageError");
+        }
+        catch (LinkageError e) {
+            assertEquals(0, pool.getActive());
+            assertEquals(1, factory.destroyed.get());
+        }
+
+        factory.validateError = null;
+        assertEquals(Integer.valueOf(2), pool.borrow());
+
+        pool.close();
+    }
+
+    public void testInvalidateFreesPermit() throws Exception {
+
+        CountingFactory factory = new CountingFactory();
+        ILSConnectionPool<Integer> pool = new ILSConnectionPool<Integer>(factory, 1, 1, 50, 0, 0, true);
+
+        pool.invalidate(pool.borrow());
+
+        assertEquals(0, pool.getActive());
+        assertEquals(Integer.valueOf(2), pool.borrow());
+
+        pool.close();
+    }
+}
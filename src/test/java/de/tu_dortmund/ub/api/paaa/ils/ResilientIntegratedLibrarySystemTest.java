@@ -0,0 +1,290 @@
+package de.tu_dortmund.ub.api.paaa.ils;
+
+import de.tu_dortmund.ub.api.paaa.model.Block;
+import de.tu_dortmund.ub.api.paaa.model.BulkResult;
+import de.tu_dortmund.ub.api.paaa.model.Fee;
+import de.tu_dortmund.ub.api.paaa.model.Patron;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for ResilientIntegratedLibrarySystem.
+ */
+public class ResilientIntegratedLibrarySystemTest extends TestCase {
+
+    private static class StubILS implements IntegratedLibrarySystem {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile String error = null;
+        volatile ILSException exception = null;
+        volatile Error fatal = null;
+        volatile CountDownLatch block = null;
+
+        public void init(Properties properties) {
+        }
+
+        public HashMap<String, String> health(Properties properties) {
+            return new HashMap<String, String>();
+        }
+
+        public Patron signup(Patron patron) throws ILSException {
+            return this.answer(patron);
+        }
+
+        public Patron newpatron(Patron patron) throws ILSException {
+            return this.answer(patron);
+        }
+
+        public Patron updatepatron(Patron patron) throws ILSException {
+            return this.answer(patron);
+        }
+
+        public Patron blockpatron(Patron patron, Block block) throws ILSException {
+            return this.answer(patron);
+        }
+
+        public Patron unblockpatron(Patron patron, Block block) throws ILSException {
+            return this.answer(patron);
+        }
+
+        public Patron deletepatron(Patron patron) throws ILSException {
+            return this.answer(patron);
+        }
+
+        public Fee newfee(Patron patron, Fee fee) throws ILSException {
+            this.answer(patron);
+            return fee;
+        }
+
+        private Patron answer(Patron patron) throws ILSException {
+
+            this.calls.incrementAndGet();
+
+            if (this.block != null) {
+                try {
+                    this.block.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (this.error != null) {
+                throw new ILSException(this.error);
+            }
+
+            if (this.exception != null) {
+                throw this.exception;
+            }
+
+            if (this.fatal != null) {
+                throw this.fatal;
+            }
+
+            return patron;
+        }
+    }
+
+    private static ResilientIntegratedLibrarySystem create(StubILS ils, String maxConcurrent) {
+
+        Properties properties = new Properties();
+        properties.setProperty("ils.circuit.failure-threshold", "3");
+        properties.setProperty("ils.circuit.open-duration", "100");
+        properties.setProperty("ils.bulkhead.max-concurrent", maxConcurrent);
+
+        return new ResilientIntegratedLibrarySystem(ils, properties);
+    }
+
+    private static Patron patron(String account) {
+
+        Patron patron = new Patron();
+        patron.setAccount(account);
+        return patron;
+    }
+
+    public void testOpensAfterConsecutiveFailuresAndRecovers() throws Exception {
+
+        StubILS ils = new StubILS();
+        ResilientIntegratedLibrarySystem resilient = create(ils, "10");
+
+        ils.error = "Connection refused";
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                resilient.newpatron(patron("4711"));
+                fail("expected ILSException");
+            }
+            catch (ILSUnavailableException e) {
+                fail("circuit opened too early");
+            }
+            catch (ILSException e) {
+                // expected
+            }
+        }
+
+        assertEquals(ResilientIntegratedLibrarySystem.State.OPEN, resilient.getCircuits().get("newpatron").getState());
+
+        try {
+            resilient.newpatron(patron("4711"));
+            fail("expected ILSUnavailableException");
+        }
+        catch (ILSUnavailableException e) {
+            assertTrue(e.getRetryAfter() > 0);
+        }
+
+        assertEquals(3, ils.calls.get());
+        assertEquals(ResilientIntegratedLibrarySystem.State.CLOSED, resilient.getCircuits().get("newfee").getState());
+
+        // half-open after 'ils.circuit.open-duration', a successful trial closes the circuit
+        Thread.sleep(150);
+        ils.error = null;
+
+        assertNotNull(resilient.newpatron(patron("4711")));
+        assertEquals(ResilientIntegratedLibrarySystem.State.CLOSED, resilient.getCircuits().get("newpatron").getState());
+        assertEquals(0, resilient.getCircuits().get("newpatron").getFailures());
+    }
+
+    public void testForbiddenIsNoFailure() throws Exception {
+
+        StubILS ils = new StubILS();
+        ResilientIntegratedLibrarySystem resilient = create(ils, "10");
+
+        ils.error = "403";
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                resilient.updatepatron(patron("4711"));
+                fail("expected ILSException");
+            }
+            catch (ILSException e) {
+                assertEquals("403", e.getMessage());
+            }
+        }
+
+        assertEquals(ResilientIntegratedLibrarySystem.State.CLOSED, resilient.getCircuits().get("updatepatron").getState());
+    }
+
+    public void testErrorInTrialReopensCircuit() throws Exception {
+
+        StubILS ils = new StubILS();
+        ResilientIntegratedLibrarySystem resilient = create(ils, "10");
+
+        ils.error = "Connection refused";
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                resilient.blockpatron(patron("4711"), new Block());
+                fail("expected ILSException");
+            }
+            catch (ILSException e) {
+                // expected
+            }
+        }
+
+        Thread.sleep(150);
+        ils.error = null;
+        ils.fatal = new OutOfMemoryError("trial");
+
+        try {
+            resilient.blockpatron(patron("4711"), new Block());
+            fail("expected OutOfMemoryError");
+        }
+        catch (OutOfMemoryError e) {
+            // expected
+        }
+
+        assertEquals(ResilientIntegratedLibrarySystem.State.OPEN, resilient.getCircuits().get("blockpatron").getState());
+
+        // the next trial is let through and closes the circuit
+        Thread.sleep(150);
+        ils.fatal = null;
+
+        assertNotNull(resilient.blockpatron(patron("4711"), new Block()));
+        assertEquals(ResilientIntegratedLibrarySystem.State.CLOSED, resilient.getCircuits().get("blockpatron").getState());
+    }
+
+    public void testUnavailableIsNoFailure() throws Exception {
+
+        StubILS ils = new StubILS();
+        ResilientIntegratedLibrarySystem resilient = create(ils, "10");
+
+        ils.exception = new ILSUnavailableException("ILS connection pool exhausted", 1000);
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                resilient.deletepatron(patron("4711"));
+                fail("expected ILSUnavailableException");
+            }
+            catch (ILSUnavailableException e) {
+                assertEquals(1000, e.getRetryAfter());
+            }
+        }
+
+        assertEquals(5, ils.calls.get());
+        assertEquals(ResilientIntegratedLibrarySystem.State.CLOSED, resilient.getCircuits().get("deletepatron").getState());
+        assertEquals(0, resilient.getCircuits().get("deletepatron").getFailures());
+    }
+
+    public void testBulkheadRejectsWhenFull() throws Exception {
+
+        final StubILS ils = new StubILS();
+        final ResilientIntegratedLibrarySystem resilient = create(ils, "1");
+
+        ils.block = new CountDownLatch(1);
+
+        Thread thread = new Thread(() -> {
+            try {
+                resilient.newfee(patron("4711"), new Fee());
+            }
+            catch (ILSException e) {
+                // ignore
+            }
+        });
+        thread.start();
+
+        while (resilient.getCircuits().get("newfee").getInFlight() == 0) {
+            Thread.sleep(5);
+        }
+
+        try {
+            resilient.newfee(patron("4712"), new Fee());
+            fail("expected ILSUnavailableException");
+        }
+        catch (ILSUnavailableException e) {
+            // expected
+        }
+
+        ils.block.countDown();
+        thread.join();
+
+        assertEquals(1, resilient.getCircuits().get("newfee").getRejected());
+        assertEquals(0, resilient.getCircuits().get("newfee").getInFlight());
+    }
+
+    public void testBulkFailsEveryRecordWhileOpen() throws Exception {
+
+        StubILS ils = new StubILS();
+        ResilientIntegratedLibrarySystem resilient = create(ils, "10");
+
+        ils.error = "Connection refused";
+
+        List<Patron> patrons = Arrays.asList(patron("1"), patron("2"));
+
+        for (int i = 0; i < 3; i++) {
+            resilient.newpatrons(patrons);
+        }
+
+        List<BulkResult> results = resilient.newpatrons(patrons);
+
+        assertEquals(2, results.size());
+        assertEquals(503, results.get(0).getCode());
+        assertEquals("2", results.get(1).getAccount());
+        assertEquals(6, ils.calls.get());
+    }
+}
@@ -0,0 +1,138 @@
+package de.tu_dortmund.ub.util.impl;
+
+import junit.framework.TestCase;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Unit test for AsyncLogAppender and ServiceLogger.
+ */
+public class AsyncLogAppenderTest extends TestCase {
+
+    private static class RecordingAppender extends AppenderSkeleton {
+
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+        final List<Throwable> throwables = new CopyOnWriteArrayList<Throwable>();
+        final List<String> locations = new CopyOnWriteArrayList<String>();
+
+        protected void append(LoggingEvent event) {
+            this.messages.add(event.getRenderedMessage());
+            this.threads.add(event.getThreadName());
+            this.locations.add(event.locationInformationExists() ? event.getLocationInformation().getClassName() : "-");
+            if (event.getThrowableInformation() != null) {
+                this.throwables.add(event.getThrowableInformation().getThrowable());
+            }
+        }
+
+        public void close() {
+        }
+
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+
+    private Logger logger;
+    private RecordingAppender recorder;
+    private AsyncLogAppender appender;
+
+    protected void setUp() throws Exception {
+
+        this.recorder = new RecordingAppender();
+        this.appender = new AsyncLogAppender(100, 60000);
+        this.appender.addAppender(this.recorder);
+
+        this.logger = Logger.getLogger(AsyncLogAppenderTest.class.getName());
+        this.logger.removeAllAppenders();
+        this.logger.setAdditivity(false);
+        this.logger.setLevel(Level.DEBUG);
+        this.logger.addAppender(this.appender);
+    }
+
+    public void testWritesInBackgroundWithCallerThread() throws Exception {
+
+        ServiceLogger serviceLogger = ServiceLogger.getLogger(AsyncLogAppenderTest.class, "PAAA");
+
+        serviceLogger.info("Patron: {}", "1234");
+        serviceLogger.debug("'{}' for patron '{}' took {} ms", "newfee", "1234", 12);
+
+        this.appender.close();
+
+        assertEquals(2, this.recorder.messages.size());
+        assertEquals("[PAAA] Patron: 1234", this.recorder.messages.get(0));
+        assertEquals("[PAAA] 'newfee' for patron '1234' took 12 ms", this.recorder.messages.get(1));
+        assertEquals(Thread.currentThread().getName(), this.recorder.threads.get(0));
+    }
+
+    public void testSuppressesIdenticalErrorsWithinWindow() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+            this.logger.error("[PAAA] 500: ILS Error! timeout");
+        }
+        this.logger.error("[PAAA] 503: ILS!");
+        this.logger.info("[PAAA] not deduplicated");
+        this.logger.info("[PAAA] not deduplicated");
+
+        this.appender.close();
+
+        assertEquals(4, this.appender.getDeduplicated());
+        assertEquals(5, this.recorder.messages.size());
+        assertEquals("[PAAA] 500: ILS Error! timeout", this.recorder.messages.get(0));
+        assertEquals("[PAAA] 500: ILS Error! timeout (repeated 4 times)", this.recorder.messages.get(4));
+    }
+
+    public void testKeepsLocationOfCallerIfLayoutPrintsIt() throws Exception {
+
+        this.appender.removeAllAppenders();
+        this.recorder.setLayout(new PatternLayout("%d %-5p %C{1}:%L - %m%n"));
+        this.appender.addAppender(this.recorder);
+
+        this.logger.error("[PAAA] 500: ILS Error! timeout");
+        this.logger.error("[PAAA] 500: ILS Error! timeout");
+
+        this.appender.close();
+
+        assertEquals("[PAAA] 500: ILS Error! timeout (repeated 1 times)", this.recorder.messages.get(1));
+        assertEquals(AsyncLogAppenderTest.class.getName(), this.recorder.locations.get(0));
+        assertEquals(AsyncLogAppenderTest.class.getName(), this.recorder.locations.get(1));
+    }
+
+    public void testSkipsLocationIfLayoutDoesNotPrintIt() throws Exception {
+
+        this.logger.info("[PAAA] no location");
+
+        this.appender.close();
+
+        assertEquals("-", this.recorder.locations.get(0));
+    }
+
+    public void testLogsTrailingThrowableWithStackTrace() throws Exception {
+
+        ServiceLogger serviceLogger = ServiceLogger.getLogger(AsyncLogAppenderTest.class, "PAAA");
+        IllegalStateException exception = new IllegalStateException("boom");
+
+        serviceLogger.error("Service '{}' failed: {}", "newfee", exception.getMessage(), exception);
+        serviceLogger.warn("{} - {}", "used as argument", exception);
+
+        this.appender.close();
+
+        assertEquals("[PAAA] Service 'newfee' failed: boom", this.recorder.messages.get(0));
+        assertEquals("[PAAA] used as argument - java.lang.IllegalStateException: boom", this.recorder.messages.get(1));
+        assertEquals(1, this.recorder.throwables.size());
+        assertSame(exception, this.recorder.throwables.get(0));
+    }
+
+    public void testFormatsOnlyAsManyPlaceholdersAsArguments() {
+
+        assertEquals("a 1 b {}", ServiceLogger.format("a {} b {}", 1, null, null, 1));
+        assertEquals("1 2 3", ServiceLogger.format("{} {} {}", 1, 2, 3, 3));
+        assertEquals("no placeholder", ServiceLogger.format("no placeholder", 1, null, null, 1));
+    }
+}
@@ -0,0 +1,99 @@
+package de.tu_dortmund.ub.util.impl;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Unit test for ConfigurationStore and Configuration.
+ */
+public class ConfigurationStoreTest extends TestCase {
+
+    private File file;
+
+    protected void setUp() throws Exception {
+
+        this.file = File.createTempFile("paaa", ".properties");
+        this.write("service.name=PAAA\nils.timeout=1000\nils.coalesce.enabled=false\nAccess-Control-Allow-Origin=*\n");
+    }
+
+    protected void tearDown() throws Exception {
+
+        this.file.delete();
+    }
+
+    private void write(String content) throws Exception {
+
+        Files.write(this.file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void testReadsFileOnceAndParsesValues() {
+
+        ConfigurationStore store = ConfigurationStore.of(this.file.getPath());
+        assertSame(store, ConfigurationStore.of(this.file.getAbsolutePath()));
+
+        Configuration configuration = store.get();
+        assertEquals("PAAA", configuration.getServiceName());
+        assertEquals("*", configuration.getAccessControlAllowOrigin());
+        assertEquals(1000, configuration.getLong("ils.timeout", 30000));
+        assertEquals(16, configuration.getInt("ils.executor.threads", 16));
+        assertFalse(configuration.getBoolean("ils.coalesce.enabled", true));
+        assertEquals("PAAA", configuration.getProperties().getProperty("service.name"));
+
+        // adapters get a copy they may modify
+        Properties properties = configuration.getProperties();
+        properties.setProperty("service.name", "other");
+        properties.putIfAbsent("ils.timeout", "5");
+
+        assertEquals("PAAA", configuration.getServiceName());
+        assertEquals("PAAA", configuration.getProperties().getProperty("service.name"));
+        assertEquals(1000, configuration.getLong("ils.timeout", 30000));
+    }
+
+    public void testReloadReplacesSnapshotAndNotifiesListeners() throws Exception {
+
+        ConfigurationStore store = ConfigurationStore.of(this.file.getPath());
+        Configuration before = store.get();
+
+        List<Configuration> applied = new CopyOnWriteArrayList<Configuration>();
+        Consumer<Configuration> listener = applied::add;
+        store.addListener(listener);
+
+        this.write("service.name=PAAA-2\n");
+        Configuration after = store.reload();
+
+        assertSame(after, store.get());
+        assertEquals("PAAA-2", after.getServiceName());
+        assertEquals("PAAA", before.getServiceName());
+        assertEquals(1, applied.size());
+
+        store.removeListener(listener);
+        this.write("service.name=PAAA-3\n");
+        store.reload();
+        assertEquals(1, applied.size());
+
+        this.file.delete();
+        assertSame(store.get(), store.reload());
+    }
+
+    public void testWatcherPicksUpChanges() throws Exception {
+
+        ConfigurationStore store = ConfigurationStore.of(this.file.getPath());
+        store.watch();
+
+        this.write("service.name=PAAA-3\n");
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!"PAAA-3".equals(store.get().getServiceName()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals("PAAA-3", store.get().getServiceName());
+    }
+}
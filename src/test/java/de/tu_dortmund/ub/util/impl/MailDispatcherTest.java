@@ -0,0 +1,93 @@
+package de.tu_dortmund.ub.util.impl;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for MailDispatcher.
+ */
+public class MailDispatcherTest extends TestCase {
+
+    private static class RecordingSender implements MailDispatcher.Sender {
+
+        final List<String> subjects = new CopyOnWriteArrayList<String>();
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+
+        public void send(String subject, String message) {
+            this.subjects.add(subject);
+            this.messages.add(message);
+        }
+    }
+
+    public void testSuppressesDuplicatesWithinWindow() throws Exception {
+
+        RecordingSender sender = new RecordingSender();
+        MailDispatcher dispatcher = new MailDispatcher(sender, 10, 60000, 0, 10);
+
+        assertTrue(dispatcher.submit("ILS Error! timeout", "1"));
+        assertFalse(dispatcher.submit("ILS Error! timeout", "2"));
+        assertFalse(dispatcher.submit("ILS Error! timeout", "3"));
+        assertTrue(dispatcher.submit("ILS Error! refused", "4"));
+
+        dispatcher.close();
+
+        assertEquals(2, dispatcher.getDeduplicated());
+        assertEquals(4, dispatcher.getSubmitted());
+        assertEquals(2, countMessages(sender));
+    }
+
+    public void testCollectsDigest() throws Exception {
+
+        RecordingSender sender = new RecordingSender();
+        MailDispatcher dispatcher = new MailDispatcher(sender, 10, 0, 60000, 3);
+
+        dispatcher.submit("a", "1");
+        dispatcher.submit("b", "2");
+        dispatcher.submit("c", "3");
+
+        dispatcher.close();
+
+        assertEquals(1, sender.subjects.size());
+        assertEquals("a (+2 more)", sender.subjects.get(0));
+        assertEquals(1, dispatcher.getSent());
+    }
+
+    public void testDropsWhenQueueIsFull() throws Exception {
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        MailDispatcher dispatcher = new MailDispatcher((subject, message) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 0, 0, 1);
+
+        dispatcher.submit("a", "1");
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        assertTrue(dispatcher.submit("b", "2"));
+        assertFalse(dispatcher.submit("c", "3"));
+        assertEquals(1, dispatcher.getDropped());
+
+        release.countDown();
+        dispatcher.close();
+    }
+
+    private static int countMessages(RecordingSender sender) {
+
+        int count = 0;
+        for (String subject : sender.subjects) {
+            count += subject.endsWith("more)") ? Integer.parseInt(subject.replaceAll(".*\\(\\+(\\d+) more\\)", "$1")) + 1 : 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+package de.tu_dortmund.ub.util.impl;
+
+import junit.framework.TestCase;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for MetricsRegistry and Histogram.
+ */
+public class MetricsRegistryTest extends TestCase {
+
+    protected void tearDown() {
+
+        MetricsRegistry.getInstance().clear();
+    }
+
+    public void testHistogramBuckets() {
+
+        Histogram histogram = new Histogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(80));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.SECONDS.toNanos(90));
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(TimeUnit.SECONDS.toMicros(90), histogram.getMax());
+
+        long[] counts = histogram.getCumulativeCounts();
+        assertEquals(1, counts[0]);
+        assertEquals(3, counts[5]);
+        assertEquals(3, counts[Histogram.BOUNDS.length - 1]);
+        assertEquals(4, counts[Histogram.BOUNDS.length]);
+
+        assertEquals(5000, histogram.getQuantile(0.5));
+        assertEquals(TimeUnit.SECONDS.toMicros(90), histogram.getQuantile(1.0));
+    }
+
+    public void testPrometheusFormat() throws Exception {
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        metricsRegistry.counter("paaa_requests_total", "Requests", "service", "newfee", "status", "200").increment();
+        metricsRegistry.counter("paaa_requests_total", "Requests", "service", "newfee", "status", "200").increment();
+        metricsRegistry.gauge("paaa_queued", "Queued", () -> 7);
+        metricsRegistry.histogram("paaa_duration_seconds", "Duration", "service", "newfee").record(TimeUnit.MILLISECONDS.toNanos(2));
+
+        StringWriter writer = new StringWriter();
+        metricsRegistry.write(writer);
+        String text = writer.toString();
+
+        assertTrue(text.contains("# TYPE paaa_requests_total counter\n"));
+        assertTrue(text.contains("paaa_requests_total{service=\"newfee\",status=\"200\"} 2\n"));
+        assertTrue(text.contains("paaa_queued 7\n"));
+        assertTrue(text.contains("paaa_duration_seconds_bucket{service=\"newfee\",le=\"0.001\"} 0\n"));
+        assertTrue(text.contains("paaa_duration_seconds_bucket{service=\"newfee\",le=\"0.0025\"} 1\n"));
+        assertTrue(text.contains("paaa_duration_seconds_bucket{service=\"newfee\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("paaa_duration_seconds_count{service=\"newfee\"} 1\n"));
+    }
+
+    public void testTypeConflict() {
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        metricsRegistry.counter("paaa_test", "Test");
+
+        try {
+            metricsRegistry.histogram("paaa_test", "Test");
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package de.tu_dortmund.ub.util.impl;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Unit test for ProviderRegistry.
+ */
+public class ProviderRegistryTest extends TestCase {
+
+    public interface Provider {
+    }
+
+    /**
+     * Registered in META-INF/services of the test resources.
+     */
+    public static class Counter implements Provider {
+    }
+
+    private final List<Provider> disposed = new CopyOnWriteArrayList<Provider>();
+
+    private ProviderRegistry registry;
+
+    protected void setUp() throws Exception {
+
+        this.registry = ProviderRegistry.getInstance();
+        this.registry.register(Provider.class, provider -> provider, this.disposed::add);
+    }
+
+    protected void tearDown() throws Exception {
+
+        this.registry.shutdown();
+    }
+
+    public void testReplacedInstanceIsDisposedWhenTheLastLeaseIsClosed() {
+
+        ProviderRegistry.Lease<Provider> lease = this.registry.acquire(Provider.class);
+        Provider previous = lease.get();
+        assertNotNull(previous);
+
+        this.registry.reload();
+
+        assertNotSame(previous, this.registry.get(Provider.class));
+        assertTrue(this.disposed.isEmpty());
+
+        lease.close();
+        lease.close();
+
+        assertEquals(1, this.disposed.size());
+        assertSame(previous, this.disposed.get(0));
+    }
+
+    public void testShutdownWaitsForLeases() {
+
+        ProviderRegistry.Lease<Provider> lease = this.registry.acquire(Provider.class);
+
+        this.registry.shutdown();
+
+        assertNull(this.registry.get(Provider.class));
+        assertNull(this.registry.acquire(Provider.class).get());
+        assertTrue(this.disposed.isEmpty());
+
+        lease.close();
+
+        assertEquals(1, this.disposed.size());
+    }
+}